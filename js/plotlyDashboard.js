@@ -0,0 +1,300 @@
+// One chart of a dashboard, drawn in its own graph div
+PlotlyDashboardCell = function(dashboard, id) {
+
+	this.dashboard = dashboard;
+	this.id = id;
+	this.dirty = true;
+	this.plotted = false;
+
+	this.element = PlotlyUtils.registry.register(this, dashboard.element);
+	PlotlyUtils.visibility.observe(this);
+};
+
+PlotlyDashboardCell.prototype = {
+
+	setSpec : function(spec) {
+		this.inputs = spec.inputs;
+		this.layout = spec.layout;
+		this.options = spec.options;
+		this.dirty = true;
+	},
+
+	setValue : function(trace, key, value) {
+		if (this.inputs && this.inputs[trace]) {
+			this.inputs[trace][key] = value;
+			this.dirty = true;
+		}
+	},
+
+	draw : function() {
+		if (!this.dirty || this.resolving || this.destroyed || !this.inputs) {
+			return;
+		}
+		var those = this;
+
+		// Numeric blocks not in the memory cache are searched in IndexedDB,
+		// then asked again to the server
+		if (!PlotlyUtils.blocks.resolve(this.inputs, function(missing) {
+			those.resolving = false;
+			if (missing.length > 0) {
+				those.dashboard.notify("BlockMiss", {
+					chart : those.id,
+					hashes : missing
+				});
+			} else {
+				those.draw();
+			}
+		})) {
+			this.resolving = true;
+			return;
+		}
+
+		// Offscreen charts keep their pending spec until they are visible
+		if (!this.visible) {
+			return;
+		}
+		this.size = [ this.width, this.height ];
+		try {
+			if (this.plotted) {
+				// Partial update : the graph div and its listeners are kept
+				Plotly.react(this.element, this.inputs, this.layout,
+						this.options);
+			} else {
+				Plotly.newPlot(this.element, this.inputs, this.layout,
+						this.options);
+				this.element.on('plotly_selected', function(data) {
+					those.selected(data);
+				});
+				this.plotted = true;
+			}
+			this.dirty = false;
+		} catch (e) {
+		}
+	},
+
+	selected : function(data) {
+		if (!data) {
+			return;
+		}
+		var points = new Array();
+		for (var i = 0; i < data.points.length; i++) {
+			points[i] = {
+				curveNumber : data.points[i].curveNumber,
+				pointNumber : data.points[i].pointNumber,
+				x : data.points[i].x,
+				y : data.points[i].y
+			};
+		}
+		this.dashboard.notify("Selection", {
+			chart : this.id,
+			selectedPoints : points
+		});
+
+		var elements = this.element.getElementsByClassName("select-outline");
+		while (elements[0]) {
+			elements[0].parentNode.removeChild(elements[0]);
+		}
+	},
+
+	// Called by the dashboard layout
+	resize : function(width, height) {
+		this.width = width;
+		this.height = height;
+		if (!this.plotted || this.dirty) {
+			return;
+		}
+		if (!this.visible) {
+			this.resizePending = true;
+			return;
+		}
+		this.resizePending = false;
+		if (this.size && this.size[0] === width && this.size[1] === height) {
+			return;
+		}
+		this.size = [ width, height ];
+		try {
+			Plotly.relayout(this.element, {
+				width : width,
+				height : height
+			});
+		} catch (e) {
+		}
+	},
+
+	// Called by PlotlyUtils.visibility
+	setVisible : function(visible) {
+		var those = this;
+		var releaseHidden = this.dashboard.releaseHidden;
+		this.visible = visible;
+		clearTimeout(this.releaseTimer);
+		if (visible) {
+			if (this.dirty) {
+				this.draw();
+			} else if (this.resizePending) {
+				this.resize(this.width, this.height);
+			}
+		} else if (releaseHidden > 0 && !this.dirty) {
+			// Long-hidden chart : its graph is freed, its spec is kept
+			this.releaseTimer = setTimeout(function() {
+				if (!those.visible && those.element) {
+					Plotly.purge(those.element);
+					those.plotted = false;
+					those.dirty = true;
+				}
+			}, releaseHidden);
+		}
+	},
+
+	destroy : function() {
+		this.destroyed = true;
+		clearTimeout(this.releaseTimer);
+		PlotlyUtils.visibility.unobserve(this);
+		PlotlyUtils.registry.release(this.element);
+		this.element = null;
+	}
+};
+
+// Many charts behind one remote object : one render listener, one resize
+// listener, one grid layout per animation frame
+PlotlyDashboard = function(parent) {
+
+	this.parent = parent;
+	this.columns = 1;
+	this.releaseHidden = 0;
+	this.cells = {};
+	this.order = [];
+	this.layoutPending = true;
+
+	this.element = PlotlyUtils.registry.register(this, parent);
+
+	// Bound once, so destroy removes the same functions
+	this.drawListener = this.draw.bind(this);
+	this.resizeListener = this.resize.bind(this);
+	rap.on("render", this.drawListener);
+	parent.addListener("Resize", this.resizeListener);
+	PlotlyUtils.debug.live++;
+};
+
+PlotlyDashboard.prototype = {
+
+	notify : function(eventName, properties) {
+		rap.getRemoteObject(this).notify(eventName, properties);
+	},
+
+	draw : function() {
+		if (this.destroyed) {
+			return;
+		}
+		PlotlyUtils.blocks.report(rap.getRemoteObject(this));
+		if (this.layoutPending) {
+			this.layout();
+		}
+		for (var i = 0; i < this.order.length; i++) {
+			this.cells[this.order[i]].draw();
+		}
+	},
+
+	// Resize events are coalesced : one layout per animation frame at most
+	resize : function() {
+		PlotlyUtils.frames.schedule(this);
+	},
+
+	// Called by PlotlyUtils.frames
+	relayout : function() {
+		this.layout();
+	},
+
+	layout : function() {
+		this.layoutPending = false;
+		var count = this.order.length;
+		if (count === 0) {
+			return;
+		}
+		var ar = this.parent.getClientArea();
+		var columns = Math.max(1, Math.min(this.columns, count));
+		var rows = Math.ceil(count / columns);
+		var width = Math.floor(ar[2] / columns);
+		var height = Math.floor(ar[3] / rows);
+		for (var i = 0; i < count; i++) {
+			var cell = this.cells[this.order[i]];
+			var style = cell.element.style;
+			style.left = (i % columns) * width + "px";
+			style.top = Math.floor(i / columns) * height + "px";
+			style.width = width + "px";
+			style.height = height + "px";
+			cell.resize(width, height);
+		}
+	},
+
+	// Add or replace a chart
+	setChart : function(properties) {
+		var cell = this.cells[properties.chart];
+		if (!cell) {
+			cell = new PlotlyDashboardCell(this, properties.chart);
+			this.cells[properties.chart] = cell;
+			this.order.push(properties.chart);
+			this.layoutPending = true;
+		}
+		cell.setSpec(properties.spec);
+	},
+
+	setData : function(properties) {
+		var cell = this.cells[properties.chart];
+		if (cell) {
+			cell.setValue(properties.trace, properties.key, properties.value);
+		}
+	},
+
+	removeChart : function(properties) {
+		var cell = this.cells[properties.chart];
+		if (cell) {
+			cell.destroy();
+			delete this.cells[properties.chart];
+			this.order.splice(this.order.indexOf(properties.chart), 1);
+			this.layoutPending = true;
+		}
+	},
+
+	setColumns : function(columns) {
+		this.columns = columns;
+		this.layoutPending = true;
+	},
+
+	// Delay (ms) after which the graph of a hidden chart is freed, 0 : never
+	setReleaseHidden : function(releaseHidden) {
+		this.releaseHidden = releaseHidden;
+	},
+
+	destroy : function() {
+		this.destroyed = true;
+		rap.off("render", this.drawListener);
+		this.parent.removeListener("Resize", this.resizeListener);
+		for (var i = 0; i < this.order.length; i++) {
+			this.cells[this.order[i]].destroy();
+		}
+		this.cells = {};
+		this.order = [];
+		PlotlyUtils.registry.release(this.element);
+		this.element = null;
+		PlotlyUtils.debug.live--;
+	}
+};
+
+rap.registerTypeHandler("PlotlyDashboard", {
+
+	factory : function(properties) {
+
+		var parent = rap.getObject(properties.parent);
+
+		return new PlotlyDashboard(parent);
+	},
+
+	destructor : "destroy",
+
+	properties : [ "columns", "releaseHidden" ],
+
+	methods : [ "setChart", "setData", "removeChart" ],
+
+	events : [ "Selection", "BlockMiss" ]
+
+});
@@ -1,26 +1,10 @@
-var divGraphID = 0;
-var currentdate = new Date();
-var datetime = "time:" + currentdate.getDate() + "/" + currentdate.getMonth()
-		+ "/" + currentdate.getFullYear() + " @ " + currentdate.getHours()
-		+ ":" + currentdate.getMinutes() + ":" + currentdate.getSeconds() + "."
-		+ currentdate.getMilliseconds();
-
 PlotlyGraphBlank = function(parent) {
 
 	console.log('Creation of PlotlyGGraphBlank');
 
+	// Graph div taken from PlotlyUtils.registry, with a short unique id
 	this.createElement = function(parent) {
-		divGraphID = divGraphID + 1;
-		datetime = datetime + "_" + divGraphID;
-		var element = document.createElement("div");
-		element.id = "divGraph_at_" + datetime;
-		element.style.position = "absolute";
-		element.style.left = "0";
-		element.style.top = "0";
-		element.style.width = "100%";
-		element.style.height = "100%";
-		parent.append(element);
-		return element;
+		return PlotlyUtils.registry.register(this, parent);
 	},
 
 	this.dirty = true;
@@ -29,37 +13,50 @@ PlotlyGraphBlank = function(parent) {
 	this.glow = true;
 
 	this.draw = function() {
-		if (!this.dirty) {
+		if (!this.dirty || this.resolving || this.destroyed) {
 			return;
 		}
 		var those = this;
 		try {
+			PlotlyUtils.blocks.report(rap.getRemoteObject(this));
+
+			// Numeric blocks not in the memory cache are searched in IndexedDB,
+			// then asked again to the server
+			if (!PlotlyUtils.blocks.resolve(this.traces, function(missing) {
+				those.resolving = false;
+				if (missing.length > 0) {
+					rap.getRemoteObject(those).notify("BlockMiss", {
+						hashes : missing
+					});
+				} else {
+					those.draw();
+				}
+			})) {
+				this.resolving = true;
+				return;
+			}
+
 			if (!this.element) {
 				this.element = this.createElement(this.parent);
+				PlotlyUtils.visibility.observe(this);
 			}
-			var ar = this.parent.getClientArea();
-			var width = ar[2];
-			var height = ar[3];
-
-			// Construct the chart
-			if (document.getElementById(this.element.id)) {
-
-				Plotly.newPlot(this.element.id, this.traces, this.layout,
-						this.options);
 
-			} else {
-				setTimeout(function() {
-					those.draw();
-				}, 150);
+			// Offscreen charts keep their pending spec until they are visible
+			if (!this.visible) {
 				return;
 			}
+			var ar = this.parent.getClientArea();
+			this.size = [ ar[2], ar[3] ];
+
+			// Construct the chart
+			Plotly.newPlot(this.element, this.traces, this.layout,
+					this.options);
 
 			if (this.glow) {
-				this.glowit(this.element.id);
+				this.glowit(this.element);
 			}
 
-			document
-					.getElementById(this.element.id)
+			this.element
 					.on(
 							'plotly_selected',
 							function(data) {
@@ -99,13 +96,30 @@ PlotlyGraphBlank = function(parent) {
 		}
 	}
 
+	// Resize events are coalesced : one relayout per animation frame at most
 	this.resize = function() {
-		console.log('resize');
+		PlotlyUtils.frames.schedule(this);
+	}
+
+	// Called by PlotlyUtils.frames
+	this.relayout = function() {
+		if (!this.element || this.dirty) {
+			return;
+		}
+		if (!this.visible) {
+			this.resizePending = true;
+			return;
+		}
+		this.resizePending = false;
 		var ar = this.parent.getClientArea();
 		var width = ar[2];
 		var height = ar[3];
+		if (this.size && this.size[0] === width && this.size[1] === height) {
+			return;
+		}
+		this.size = [ width, height ];
 		try {
-			Plotly.relayout(this.element.id, {
+			Plotly.relayout(this.element, {
 				width : width,
 				height : height
 			});
@@ -115,12 +129,17 @@ PlotlyGraphBlank = function(parent) {
 
 	this.destroy = function() {
 		console.log('destroy');
-		rap.off("render", this.draw);
-		parent.removeListener("Resize", this.resize);
-		var element = this.element;
-		if (element.parentNode) {
-			element.parentNode.removeChild(element);
+		this.destroyed = true;
+		clearTimeout(this.releaseTimer);
+		rap.off("render", this.drawListener);
+		parent.removeListener("Resize", this.resizeListener);
+		if (this.element) {
+			PlotlyUtils.visibility.unobserve(this);
+			// Purged (listeners, WebGL contexts, data) and kept for reuse
+			PlotlyUtils.registry.release(this.element);
+			this.element = null;
 		}
+		PlotlyUtils.debug.live--;
 	}
 
 	// Scan and found the different param of the introduced object
@@ -143,8 +162,39 @@ PlotlyGraphBlank = function(parent) {
 		this.dirty = true;
 	}
 
-	rap.on("render", this.draw.bind(this));
-	parent.addListener("Resize", this.resize.bind(this));
+	// Called by PlotlyUtils.visibility
+	this.setVisible = function(visible) {
+		var those = this;
+		this.visible = visible;
+		clearTimeout(this.releaseTimer);
+		if (visible) {
+			if (this.dirty) {
+				this.draw();
+			} else if (this.resizePending) {
+				this.resize();
+			}
+		} else if (this.releaseHidden > 0 && !this.dirty) {
+			// Long-hidden chart : its graph is freed, its spec is kept
+			this.releaseTimer = setTimeout(function() {
+				if (!those.visible && those.element) {
+					Plotly.purge(those.element);
+					those.dirty = true;
+				}
+			}, this.releaseHidden);
+		}
+	}
+
+	// Delay (ms) after which the graph of a hidden chart is freed, 0 : never
+	this.setReleaseHidden = function(releaseHidden) {
+		this.releaseHidden = releaseHidden;
+	}
+
+	// Bound once, so destroy removes the same functions
+	this.drawListener = this.draw.bind(this);
+	this.resizeListener = this.resize.bind(this);
+	rap.on("render", this.drawListener);
+	parent.addListener("Resize", this.resizeListener);
+	PlotlyUtils.debug.live++;
 };
 
 rap.registerTypeHandler("PlotlyGraphBlank", {
@@ -156,8 +206,8 @@ rap.registerTypeHandler("PlotlyGraphBlank", {
 
 	destructor : "destroy",
 
-	properties : [ "options" ],
+	properties : [ "options", "releaseHidden" ],
 
-	events : [ "Selection" ]
+	events : [ "Selection", "BlockMiss" ]
 
 });
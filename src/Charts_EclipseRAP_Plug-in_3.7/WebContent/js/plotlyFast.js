@@ -1,65 +1,66 @@
-var divGraphID = 0;
-
-var currentdate = new Date();
-var datetime = "time:" + currentdate.getDate() + "/" + currentdate.getMonth()
-		+ "/" + currentdate.getFullYear() + " @ " + currentdate.getHours()
-		+ ":" + currentdate.getMinutes() + ":" + currentdate.getSeconds() + "."
-		+ currentdate.getMilliseconds();
-
 PlotlyGraphFast = function(parent) {
 
 	console.log('Creation of PlotlyFast');
 
+	// Graph div taken from PlotlyUtils.registry, with a short unique id
 	this.createElement = function(parent) {
-		divGraphID = divGraphID + 1;
-		datetime = datetime + "_" + divGraphID;
-		var element = document.createElement("div");
-		element.id = "divGraph_at_" + datetime;
-		element.style.position = "absolute";
-		element.style.left = "0";
-		element.style.top = "0";
-		element.style.width = "100%";
-		element.style.height = "100%";
-		parent.append(element);
-		return element;
+		return PlotlyUtils.registry.register(this, parent);
 	},
 
 	this.dirty = true;
 	this.parent = parent;
 
+	// Hover texts of the traces, formatted again when their columns change
+	this.hovers = [];
+
 	this.glow = true;
 
 	this.draw = function() {
-		if (!this.dirty) {
+		if (!this.dirty || this.resolving || this.destroyed) {
 			return;
 		}
 		var those = this;
 		try {
+			PlotlyUtils.blocks.report(rap.getRemoteObject(this));
+
+			// Numeric blocks not in the memory cache are searched in IndexedDB,
+			// then asked again to the server
+			if (!PlotlyUtils.blocks.resolve(this.inputs, function(missing) {
+				those.resolving = false;
+				if (missing.length > 0) {
+					rap.getRemoteObject(those).notify("BlockMiss", {
+						hashes : missing
+					});
+				} else {
+					those.draw();
+				}
+			})) {
+				this.resolving = true;
+				return;
+			}
+
 			if (!this.element) {
 				this.element = this.createElement(this.parent);
+				PlotlyUtils.visibility.observe(this);
 			}
-			var ar = this.parent.getClientArea();
-			var width = ar[2];
-			var height = ar[3];
 
-			// Construct the chart
-			if (document.getElementById(this.element.id)) {
-
-				Plotly.newPlot(this.element.id, this.inputs, this.layout,
-						this.optionsStr);
-			} else {
-				setTimeout(function() {
-					those.draw();
-				}, 150);
+			// Offscreen charts keep their pending spec until they are visible
+			if (!this.visible) {
 				return;
 			}
+			var ar = this.parent.getClientArea();
+			this.size = [ ar[2], ar[3] ];
+
+			// Construct the chart
+			PlotlyUtils.hover.apply(this.inputs, this.hovers);
+			Plotly.newPlot(this.element, this.inputs, this.layout,
+					this.optionsStr);
 
 			if (this.glow) {
-				this.glowit(this.element.id);
+				this.glowit(this.element);
 			}
 
-			document
-					.getElementById(this.element.id)
+			this.element
 					.on(
 							'plotly_selected',
 							function(data) {
@@ -94,18 +95,47 @@ PlotlyGraphFast = function(parent) {
 									}
 
 							});
+
+			// Pooled heatmap : the zoomed window is asked with more details
+			if (this.pooling || this.pyramid) {
+				this.element.on('plotly_relayout', function(event) {
+					those.zoomed(event);
+				});
+			}
 			this.dirty = false;
+
+			// Progressive chart : the preview is drawn, the full data follows
+			if (this.progressive && this.refineNext === 0) {
+				this.requestChunk();
+			}
 		} catch (e) {
 		}
 	}
 
+	// Resize events are coalesced : one relayout per animation frame at most
 	this.resize = function() {
-		console.log('resize');
+		PlotlyUtils.frames.schedule(this);
+	}
+
+	// Called by PlotlyUtils.frames
+	this.relayout = function() {
+		if (!this.element || this.dirty) {
+			return;
+		}
+		if (!this.visible) {
+			this.resizePending = true;
+			return;
+		}
+		this.resizePending = false;
 		var ar = this.parent.getClientArea();
 		var width = ar[2];
 		var height = ar[3];
+		if (this.size && this.size[0] === width && this.size[1] === height) {
+			return;
+		}
+		this.size = [ width, height ];
 		try {
-			Plotly.relayout(this.element.id, {
+			Plotly.relayout(this.element, {
 				width : width,
 				height : height
 			});
@@ -115,11 +145,428 @@ PlotlyGraphFast = function(parent) {
 
 	this.destroy = function() {
 		console.log('destroy');
-		rap.off("render", this.draw);
-		parent.removeListener("Resize", this.resize);
-		var element = this.element;
-		if (element.parentNode) {
-			element.parentNode.removeChild(element);
+		this.destroyed = true;
+		clearTimeout(this.releaseTimer);
+		rap.off("render", this.drawListener);
+		parent.removeListener("Resize", this.resizeListener);
+		if (this.element) {
+			PlotlyUtils.visibility.unobserve(this);
+			// Purged (listeners, WebGL contexts, data) and kept for reuse
+			PlotlyUtils.registry.release(this.element);
+			this.element = null;
+		}
+		PlotlyUtils.debug.live--;
+	}
+
+	this.requestChunk = function() {
+		rap.getRemoteObject(this).notify("Refine", {
+			version : this.progressive.version,
+			chunk : this.refineNext
+		});
+	}
+
+	// Chunk of the full data of a progressive chart
+	// (plotly.encoding.Progressive), a block out of the cache
+	this.refine = function(chunk) {
+		var progressive = this.progressive;
+		if (!progressive || chunk.version !== progressive.version
+				|| this.destroyed) {
+			return;
+		}
+
+		var values = PlotlyUtils.blocks.values(PlotlyUtils.blocks
+				.decode(chunk.value));
+		var full = progressive.full = progressive.full || {};
+		var name = chunk.trace + ":" + chunk.key;
+		if (!full[name]) {
+			full[name] = {
+				trace : chunk.trace,
+				key : chunk.key,
+				received : 0,
+				values : chunk.rows ? new Array(chunk.total) : new Float64Array(
+						chunk.total),
+				preview : this.inputs[chunk.trace][chunk.key]
+			};
+		}
+		var array = full[name];
+		if (chunk.rows) {
+			for (var i = 0; i < values.length; i++) {
+				array.values[chunk.offset + i] = values[i];
+			}
+		} else {
+			array.values.set(values, chunk.offset);
+		}
+		array.received = chunk.offset + values.length;
+
+		this.refineNext = chunk.chunk + 1;
+		if (this.refineNext >= progressive.chunks) {
+			// Full data : full arrays, and trace attributes of the full data
+			for (name in full) {
+				this.inputs[full[name].trace][full[name].key] = full[name].values;
+			}
+			for (var t = 0; t < progressive.finish.length; t++) {
+				for ( var key in progressive.finish[t]) {
+					this.inputs[t][key] = progressive.finish[t][key];
+				}
+			}
+			for (var t = 0; t < progressive.remove.length; t++) {
+				for (var k = 0; k < progressive.remove[t].length; k++) {
+					delete this.inputs[t][progressive.remove[t][k]];
+				}
+			}
+			this.progressive = null;
+		} else if (!chunk.rows) {
+			this.merge(progressive, chunk.trace);
+		}
+		this.react();
+
+		if (this.progressive) {
+			this.requestChunk();
+		}
+	}
+
+	// Points : the full points received, then the preview points after them
+	this.merge = function(progressive, trace) {
+		var arrays = [];
+		var received = Infinity;
+		for ( var name in progressive.full) {
+			if (progressive.full[name].trace === trace) {
+				arrays.push(progressive.full[name]);
+				received = Math.min(received, progressive.full[name].received);
+			}
+		}
+		if (arrays.length < progressive.keys[trace].length) {
+			return;
+		}
+		var start = Math.ceil(received / progressive.stride);
+		for (var i = 0; i < arrays.length; i++) {
+			var preview = arrays[i].preview;
+			var rest = Math.max(preview.length - start, 0);
+			var merged = new Float64Array(received + rest);
+			merged.set(arrays[i].values.subarray(0, received));
+			if (rest > 0) {
+				merged.set(preview.slice(start), received);
+			}
+			this.inputs[trace][arrays[i].key] = merged;
+		}
+	}
+
+	this.zoomed = function(event) {
+		var trace = this.inputs[0];
+		if (event["xaxis.autorange"] || event["yaxis.autorange"]) {
+			// Back to the pooled matrix of the whole chart
+			if (this.overview) {
+				trace.x = this.overview.x;
+				trace.y = this.overview.y;
+				trace.z = this.overview.z;
+				this.overview = null;
+				this.react();
+			}
+			return;
+		}
+		if (event["xaxis.range[0]"] === undefined
+				&& event["yaxis.range[0]"] === undefined) {
+			return;
+		}
+		if (this.pyramid) {
+			this.showTiles();
+			return;
+		}
+		var layout = this.element._fullLayout;
+		rap.getRemoteObject(this).notify("Zoom", {
+			x : layout.xaxis.range.slice(),
+			y : layout.yaxis.range.slice()
+		});
+	}
+
+	// Zoomed window of a pooled heatmap (a block out of the cache)
+	this.zoom = function(data) {
+		var trace = this.inputs[0];
+		if (!this.overview) {
+			this.overview = {
+				x : trace.x,
+				y : trace.y,
+				z : trace.z
+			};
+		}
+		trace.x = data.x;
+		trace.y = data.y;
+		trace.z = PlotlyUtils.blocks.values(PlotlyUtils.blocks.decode(data.z));
+		this.react();
+	}
+
+	// Tiles of the pyramid under the axes ranges, at the coarsest level showing
+	// at least one cell per pixel
+	this.showTiles = function() {
+		var pyramid = this.pyramid;
+		var layout = this.element._fullLayout;
+		var x = layout.xaxis.range;
+		var y = layout.yaxis.range;
+		var width = Math.abs(x[1] - x[0]);
+		var height = Math.abs(y[1] - y[0]);
+
+		var levels = pyramid.levels;
+		var level = 0;
+		while (level + 1 < levels.length
+				&& width * levels[level + 1][1] / pyramid.columns >= this.size[0]
+				&& height * levels[level + 1][0] / pyramid.rows >= this.size[1]) {
+			level++;
+		}
+
+		// Tile holding the cell of the level under an axis value
+		var tile = function(value, length, count) {
+			var index = Math.floor((value + 0.5) * count / length);
+			index = Math.max(0, Math.min(count - 1, index));
+			return Math.floor(index / pyramid.tile);
+		};
+		var view = {
+			level : level,
+			row0 : tile(Math.min(y[0], y[1]), pyramid.rows, levels[level][0]),
+			row1 : tile(Math.max(y[0], y[1]), pyramid.rows, levels[level][0]),
+			column0 : tile(Math.min(x[0], x[1]), pyramid.columns,
+					levels[level][1]),
+			column1 : tile(Math.max(x[0], x[1]), pyramid.columns,
+					levels[level][1])
+		};
+		this.tileView = view;
+
+		var missing = [];
+		for (var r = view.row0; r <= view.row1; r++) {
+			for (var c = view.column0; c <= view.column1; c++) {
+				if (!PlotlyUtils.tiles.get(PlotlyUtils.tiles.key(
+						pyramid.version, level, r, c))) {
+					missing.push([ r, c ]);
+				}
+			}
+		}
+		if (missing.length > 0) {
+			rap.getRemoteObject(this).notify("Tiles", {
+				version : pyramid.version,
+				level : level,
+				tiles : missing
+			});
+		} else {
+			this.composeTiles();
+		}
+	}
+
+	// Tiles asked by showTiles
+	this.tiles = function(data) {
+		if (!this.pyramid || data.version !== this.pyramid.version) {
+			return;
+		}
+		for (var i = 0; i < data.tiles.length; i++) {
+			var tile = data.tiles[i];
+			PlotlyUtils.tiles.put(PlotlyUtils.tiles.key(data.version,
+					data.level, tile.row, tile.column), PlotlyUtils.blocks
+					.values(PlotlyUtils.blocks.decode(tile.z)));
+		}
+		if (this.tileView && this.tileView.level === data.level) {
+			this.composeTiles();
+		}
+	}
+
+	// One matrix from the tiles of the view, the cells placed at the center of
+	// their range of the full matrix
+	this.composeTiles = function() {
+		var pyramid = this.pyramid;
+		var view = this.tileView;
+		var rows = pyramid.levels[view.level][0];
+		var columns = pyramid.levels[view.level][1];
+		var tile = pyramid.tile;
+		var row0 = view.row0 * tile;
+		var row1 = Math.min(rows, (view.row1 + 1) * tile);
+		var column0 = view.column0 * tile;
+		var column1 = Math.min(columns, (view.column1 + 1) * tile);
+
+		var z = new Array(row1 - row0);
+		for (var i = 0; i < z.length; i++) {
+			z[i] = new Float64Array(column1 - column0);
+		}
+		for (var r = view.row0; r <= view.row1; r++) {
+			for (var c = view.column0; c <= view.column1; c++) {
+				var cut = PlotlyUtils.tiles.get(PlotlyUtils.tiles.key(
+						pyramid.version, view.level, r, c));
+				if (!cut) {
+					// Evicted meanwhile : asked again
+					this.showTiles();
+					return;
+				}
+				for (var i = 0; i < cut.length; i++) {
+					z[r * tile + i - row0].set(cut[i], c * tile - column0);
+				}
+			}
+		}
+
+		// Cell j of the level pools the cells from j 2^level of the matrix
+		var factor = Math.pow(2, view.level);
+		var centers = function(start, end, length) {
+			var axis = new Array(end - start);
+			for (var j = start; j < end; j++) {
+				axis[j - start] = (j * factor
+						+ Math.min((j + 1) * factor, length) - 1) / 2;
+			}
+			return axis;
+		};
+
+		var trace = this.inputs[0];
+		if (!this.overview) {
+			this.overview = {
+				x : trace.x,
+				y : trace.y,
+				z : trace.z
+			};
+		}
+		trace.x = centers(column0, column1, pyramid.columns);
+		trace.y = centers(row0, row1, pyramid.rows);
+		trace.z = z;
+		this.react();
+	}
+
+	// Rows of a streaming heatmap : appended after the last rows, the oldest
+	// rows are dropped past the capacity
+	this.appendRows = function(data) {
+		var those = this;
+		var holder = [ this.inputs[0] ];
+		if (!PlotlyUtils.blocks.resolve(holder, function(missing) {
+			if (missing.length > 0) {
+				rap.getRemoteObject(those).notify("BlockMiss", {
+					hashes : missing
+				});
+			} else {
+				those.appendRows(data);
+			}
+		})) {
+			return;
+		}
+		var rows = PlotlyUtils.blocks.values(PlotlyUtils.blocks
+				.decode(data.rows));
+		var z = this.inputs[0].z || [];
+		var drop = Math.max(0, z.length + rows.length - data.capacity);
+		this.inputs[0].z = z.slice(Math.min(drop, z.length)).concat(
+				rows.slice(Math.max(0, rows.length - data.capacity)));
+		this.react();
+	}
+
+	// Changed regions of the matrix, written into copies of its rows : the
+	// rows of a cached block are left as they are
+	this.patch = function(data) {
+		var those = this;
+		var holder = [ this.inputs[0] ];
+		if (!PlotlyUtils.blocks.resolve(holder, function(missing) {
+			if (missing.length > 0) {
+				rap.getRemoteObject(those).notify("BlockMiss", {
+					hashes : missing
+				});
+			} else {
+				those.patch(data);
+			}
+		})) {
+			return;
+		}
+		var z = this.inputs[0].z.slice();
+		var copied = {};
+		for (var p = 0; p < data.patches.length; p++) {
+			var patch = data.patches[p];
+			var rows = PlotlyUtils.blocks.values(PlotlyUtils.blocks
+					.decode(patch.z));
+			for (var i = 0; i < rows.length; i++) {
+				var r = patch.row + i;
+				if (!copied[r]) {
+					z[r] = z[r].slice();
+					copied[r] = true;
+				}
+				for (var j = 0; j < rows[i].length; j++) {
+					z[r][patch.column + j] = rows[i][j];
+				}
+			}
+		}
+		this.inputs[0].z = z;
+		this.react();
+	}
+
+	// Changes of the dataset (DatasetDiff) : splices applied in order to the
+	// columns of the traces
+	this.update = function(data) {
+		var those = this;
+		if (!PlotlyUtils.blocks.resolve(this.inputs, function(missing) {
+			if (missing.length > 0) {
+				rap.getRemoteObject(those).notify("BlockMiss", {
+					hashes : missing
+				});
+			} else {
+				those.update(data);
+			}
+		})) {
+			return;
+		}
+		for (var o = 0; o < data.operations.length; o++) {
+			var operation = data.operations[o];
+			var trace = this.inputs[operation.trace];
+			// Evenly spaced column : new start and step
+			if (operation.grid) {
+				trace[operation.key + "0"] = operation.grid[0];
+				trace["d" + operation.key] = operation.grid[1];
+				continue;
+			}
+			var column = trace[operation.key] || [];
+			for (var s = 0; s < operation.splices.length; s++) {
+				column = this.splice(column, operation.splices[s]);
+			}
+			trace[operation.key] = column;
+		}
+		// y range of the new dataset, null : autorange
+		if (data.yRange !== undefined) {
+			var yaxis = this.layout.yaxis = this.layout.yaxis || {};
+			if (data.yRange) {
+				yaxis.range = data.yRange;
+				yaxis.autorange = false;
+			} else {
+				delete yaxis.range;
+				yaxis.autorange = true;
+			}
+		}
+		this.react();
+	}
+
+	// New column : remove values replaced at offset by the values of the
+	// splice (a block out of the cache or an array)
+	this.splice = function(column, splice) {
+		var block = splice.values.dtype !== undefined
+				&& splice.values.data !== undefined;
+		var values = block ? PlotlyUtils.blocks.values(PlotlyUtils.blocks
+				.decode(splice.values)) : splice.values;
+		var typed = ArrayBuffer.isView(column)
+				&& (ArrayBuffer.isView(values) || values.every(function(value) {
+					return typeof value === "number";
+				}));
+		var length = column.length - splice.remove + values.length;
+		var result = typed ? new Float64Array(length) : new Array(length);
+		var k = 0;
+		for (var i = 0; i < splice.offset; i++) {
+			result[k++] = column[i];
+		}
+		for (var i = 0; i < values.length; i++) {
+			result[k++] = values[i];
+		}
+		for (var i = splice.offset + splice.remove; i < column.length; i++) {
+			result[k++] = column[i];
+		}
+		return result;
+	}
+
+	// Redraw with the same layout object, which holds the zoom and pan of the
+	// user
+	this.react = function() {
+		if (!this.element || this.dirty || !this.visible) {
+			this.dirty = true;
+			return;
+		}
+		try {
+			PlotlyUtils.hover.apply(this.inputs, this.hovers);
+			Plotly.react(this.element, this.inputs, this.layout,
+					this.optionsStr);
+		} catch (e) {
 		}
 	}
 
@@ -127,17 +574,57 @@ PlotlyGraphFast = function(parent) {
 	this.setOptions = function(data) {
 
 		this.inputs = data.inputs;
+		if (data.dictionary) {
+			PlotlyUtils.dictionary.expand(this.inputs, data.dictionary);
+		}
 		this.layout = data.layout;
 		this.optionsStr = data.options;
 
 		this.ans = data.ans;
 
 		this.glow = data.glow;
+		this.progressive = data.progressive || null;
+		this.refineNext = 0;
+		this.pooling = data.pooling || false;
+		this.pyramid = data.pyramid || null;
+		this.tileView = null;
+		this.overview = null;
 		this.dirty = true;
 	}
 
-	rap.on("render", this.draw.bind(this));
-	parent.addListener("Resize", this.resize.bind(this));
+	// Called by PlotlyUtils.visibility
+	this.setVisible = function(visible) {
+		var those = this;
+		this.visible = visible;
+		clearTimeout(this.releaseTimer);
+		if (visible) {
+			if (this.dirty) {
+				this.draw();
+			} else if (this.resizePending) {
+				this.resize();
+			}
+		} else if (this.releaseHidden > 0 && !this.dirty) {
+			// Long-hidden chart : its graph is freed, its spec is kept
+			this.releaseTimer = setTimeout(function() {
+				if (!those.visible && those.element) {
+					Plotly.purge(those.element);
+					those.dirty = true;
+				}
+			}, this.releaseHidden);
+		}
+	}
+
+	// Delay (ms) after which the graph of a hidden chart is freed, 0 : never
+	this.setReleaseHidden = function(releaseHidden) {
+		this.releaseHidden = releaseHidden;
+	}
+
+	// Bound once, so destroy removes the same functions
+	this.drawListener = this.draw.bind(this);
+	this.resizeListener = this.resize.bind(this);
+	rap.on("render", this.drawListener);
+	parent.addListener("Resize", this.resizeListener);
+	PlotlyUtils.debug.live++;
 };
 
 rap.registerTypeHandler("PlotlyGraphFast", {
@@ -151,10 +638,10 @@ rap.registerTypeHandler("PlotlyGraphFast", {
 
 	destructor : "destroy",
 
-	properties : [ "options" ],
+	properties : [ "options", "releaseHidden" ],
 
-	// methods : [ "setOptions" ],
+	methods : [ "refine", "zoom", "tiles", "appendRows", "patch", "update" ],
 
-	events : [ "Selection" ]
+	events : [ "Selection", "BlockMiss", "Refine", "Zoom", "Tiles" ]
 
 });
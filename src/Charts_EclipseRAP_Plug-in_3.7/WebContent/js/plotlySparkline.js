@@ -0,0 +1,262 @@
+// Sparkline drawn on a canvas, without Plotly
+PlotlySparkline = function(parent) {
+
+	this.parent = parent;
+	this.values = [];
+	this.color = "#1f77b4";
+	this.fill = false;
+	this.lineWidth = 1;
+	this.lastPoint = true;
+
+	this.element = PlotlyUtils.registry.register(this, parent);
+	this.canvas = document.createElement("canvas");
+	this.canvas.style.display = "block";
+	this.element.appendChild(this.canvas);
+	PlotlyUtils.visibility.observe(this);
+
+	// Bound once, so destroy removes the same function
+	this.resizeListener = this.resize.bind(this);
+	parent.addListener("Resize", this.resizeListener);
+	PlotlySparkline.schedule(this);
+	PlotlyUtils.debug.live++;
+};
+
+// The sparklines share one render listener : only the sparklines changed
+// during the request are drawn
+PlotlySparkline.queue = [];
+
+PlotlySparkline.schedule = function(sparkline) {
+	sparkline.dirty = true;
+	if (!sparkline.queued) {
+		sparkline.queued = true;
+		PlotlySparkline.queue.push(sparkline);
+	}
+};
+
+PlotlySparkline.flush = function() {
+	var queue = PlotlySparkline.queue;
+	PlotlySparkline.queue = [];
+	for (var i = 0; i < queue.length; i++) {
+		queue[i].queued = false;
+		if (!queue[i].destroyed) {
+			queue[i].draw();
+		}
+	}
+};
+
+rap.on("render", PlotlySparkline.flush);
+
+PlotlySparkline.prototype = {
+
+	draw : function() {
+		// Offscreen sparklines stay dirty until they are visible
+		if (!this.visible) {
+			return;
+		}
+		this.dirty = false;
+
+		var ar = this.parent.getClientArea();
+		var width = ar[2];
+		var height = ar[3];
+		var ratio = window.devicePixelRatio || 1;
+		this.size = [ width, height ];
+		this.canvas.width = Math.round(width * ratio);
+		this.canvas.height = Math.round(height * ratio);
+		this.canvas.style.width = width + "px";
+		this.canvas.style.height = height + "px";
+
+		var context = this.canvas.getContext("2d");
+		context.setTransform(ratio, 0, 0, ratio, 0, 0);
+		context.clearRect(0, 0, width, height);
+
+		var values = this.values;
+		var count = values.length;
+		if (count === 0) {
+			return;
+		}
+
+		var min = Infinity;
+		var max = -Infinity;
+		for (var i = 0; i < count; i++) {
+			if (values[i] < min) {
+				min = values[i];
+			}
+			if (values[i] > max) {
+				max = values[i];
+			}
+		}
+		if (min === Infinity) {
+			return;
+		}
+		if (max === min) {
+			min -= 1;
+			max += 1;
+		}
+
+		var pad = this.lineWidth + (this.lastPoint ? 2 : 0);
+		var plotWidth = Math.max(width - 2 * pad, 1);
+		var plotHeight = Math.max(height - 2 * pad, 1);
+		var y = function(value) {
+			return pad + (max - value) / (max - min) * plotHeight;
+		};
+
+		// Lines between the values, broken at NaN values
+		var segments = [];
+		var segment = null;
+		var add = function(x, value) {
+			if (isNaN(value)) {
+				segment = null;
+				return;
+			}
+			if (!segment) {
+				segment = [];
+				segments.push(segment);
+			}
+			segment.push(x, y(value));
+		};
+
+		// More values than pixels : min and max of each pixel column
+		var columns = Math.floor(plotWidth);
+		if (count > 2 * columns) {
+			for (var c = 0; c < columns; c++) {
+				var start = Math.floor(c * count / columns);
+				var end = Math.floor((c + 1) * count / columns);
+				var low = Infinity;
+				var high = -Infinity;
+				for (var j = start; j < end; j++) {
+					if (values[j] < low) {
+						low = values[j];
+					}
+					if (values[j] > high) {
+						high = values[j];
+					}
+				}
+				if (low === Infinity) {
+					add(pad + c, NaN);
+				} else {
+					add(pad + c, high);
+					add(pad + c, low);
+				}
+			}
+		} else {
+			var step = count > 1 ? plotWidth / (count - 1) : 0;
+			for (var k = 0; k < count; k++) {
+				add(pad + k * step, values[k]);
+			}
+		}
+
+		context.beginPath();
+		for (var s = 0; s < segments.length; s++) {
+			context.moveTo(segments[s][0], segments[s][1]);
+			for (var p = 2; p < segments[s].length; p += 2) {
+				context.lineTo(segments[s][p], segments[s][p + 1]);
+			}
+		}
+		context.lineWidth = this.lineWidth;
+		context.strokeStyle = this.color;
+		context.lineJoin = "round";
+		context.stroke();
+
+		if (this.fill) {
+			context.beginPath();
+			for (var f = 0; f < segments.length; f++) {
+				var points = segments[f];
+				context.moveTo(points[0], points[1]);
+				for (var q = 2; q < points.length; q += 2) {
+					context.lineTo(points[q], points[q + 1]);
+				}
+				context.lineTo(points[points.length - 2], pad + plotHeight);
+				context.lineTo(points[0], pad + plotHeight);
+				context.closePath();
+			}
+			context.fillStyle = this.fill;
+			context.fill();
+		}
+
+		if (this.lastPoint && !isNaN(values[count - 1])) {
+			context.beginPath();
+			context.arc(pad + (count > 1 ? plotWidth : 0), y(values[count - 1]),
+					this.lineWidth + 1, 0, 2 * Math.PI);
+			context.fillStyle = this.color;
+			context.fill();
+		}
+	},
+
+	resize : function() {
+		PlotlyUtils.frames.schedule(this);
+	},
+
+	// Called by PlotlyUtils.frames
+	relayout : function() {
+		var ar = this.parent.getClientArea();
+		if (this.size && this.size[0] === ar[2] && this.size[1] === ar[3]) {
+			return;
+		}
+		this.dirty = true;
+		this.draw();
+	},
+
+	// Called by PlotlyUtils.visibility
+	setVisible : function(visible) {
+		this.visible = visible;
+		if (visible && this.dirty) {
+			this.draw();
+		}
+	},
+
+	// Single precision block, without hash (plotly.encoding.DataBlock)
+	setValues : function(values) {
+		if (values !== null && typeof values === "object"
+				&& values.data !== undefined) {
+			values = PlotlyUtils.blocks.values(PlotlyUtils.blocks.decode(values));
+		}
+		this.values = values;
+		PlotlySparkline.schedule(this);
+	},
+
+	setColor : function(color) {
+		this.color = color;
+		PlotlySparkline.schedule(this);
+	},
+
+	setFill : function(fill) {
+		this.fill = fill;
+		PlotlySparkline.schedule(this);
+	},
+
+	setLineWidth : function(lineWidth) {
+		this.lineWidth = lineWidth;
+		PlotlySparkline.schedule(this);
+	},
+
+	setLastPoint : function(lastPoint) {
+		this.lastPoint = lastPoint;
+		PlotlySparkline.schedule(this);
+	},
+
+	destroy : function() {
+		this.destroyed = true;
+		this.parent.removeListener("Resize", this.resizeListener);
+		PlotlyUtils.visibility.unobserve(this);
+		this.element.removeChild(this.canvas);
+		this.canvas = null;
+		PlotlyUtils.registry.release(this.element);
+		this.element = null;
+		PlotlyUtils.debug.live--;
+	}
+};
+
+rap.registerTypeHandler("PlotlySparkline", {
+
+	factory : function(properties) {
+
+		var parent = rap.getObject(properties.parent);
+
+		return new PlotlySparkline(parent);
+	},
+
+	destructor : "destroy",
+
+	properties : [ "values", "color", "fill", "lineWidth", "lastPoint" ]
+
+});
@@ -0,0 +1,678 @@
+// Shared helpers of the Plotly type handlers (plotlyFast.js, plotlyBlank.js,
+// plotlyDashboard.js).
+// Must be loaded before them.
+var PlotlyUtils = PlotlyUtils || {};
+
+// Debug counters : number of charts created and not yet destroyed (same
+// counter on the server : plotly.utils.PlotlyMetrics)
+PlotlyUtils.debug = {
+	live : 0
+};
+
+// Live charts by graph div id. Ids are a short counter ("plotly-1a"), and
+// the divs of destroyed charts are pooled for the next charts (tab switching
+// disposes and creates the same charts again).
+PlotlyUtils.registry = {
+
+	maxPool : 16,
+
+	next : 0,
+	charts : {},
+	pool : [],
+
+	register : function(chart, parent) {
+		this.next++;
+		var element = this.pool.pop() || document.createElement("div");
+		element.id = "plotly-" + this.next.toString(36);
+		element.style.position = "absolute";
+		element.style.left = "0";
+		element.style.top = "0";
+		element.style.width = "100%";
+		element.style.height = "100%";
+		this.charts[element.id] = chart;
+		// RAP widget, or div of a chart (cells of a dashboard)
+		if (parent.nodeType === 1) {
+			parent.appendChild(element);
+		} else {
+			parent.append(element);
+		}
+		return element;
+	},
+
+	release : function(element) {
+		delete this.charts[element.id];
+		// Sparklines are drawn without Plotly
+		if (window.Plotly) {
+			Plotly.purge(element);
+		}
+		if (element.parentNode) {
+			element.parentNode.removeChild(element);
+		}
+		element.removeAttribute("id");
+		if (this.pool.length < this.maxPool) {
+			this.pool.push(element);
+		}
+	},
+
+	get : function(id) {
+		return this.charts[id];
+	}
+};
+
+// Visibility of the graph divs : a chart draws only once its div is on
+// screen (not in a hidden tab, not scrolled out) and is told when it is hidden
+// again, through chart.setVisible(visible). Without IntersectionObserver, a
+// chart is visible as soon as its div is in the document.
+PlotlyUtils.visibility = {
+
+	intersection : null,
+	mutation : null,
+	waiting : [],
+
+	observe : function(chart) {
+		var those = this;
+		if (window.IntersectionObserver) {
+			if (!this.intersection) {
+				this.intersection = new IntersectionObserver(function(entries) {
+					for (var i = 0; i < entries.length; i++) {
+						var chart = PlotlyUtils.registry.get(entries[i].target.id);
+						if (chart) {
+							chart.setVisible(entries[i].isIntersecting);
+						}
+					}
+				});
+			}
+			this.intersection.observe(chart.element);
+			return;
+		}
+		if (document.body.contains(chart.element) || !window.MutationObserver) {
+			chart.visible = true;
+			return;
+		}
+		this.waiting.push(chart);
+		if (!this.mutation) {
+			this.mutation = new MutationObserver(function() {
+				those.attached();
+			});
+			this.mutation.observe(document.body, {
+				childList : true,
+				subtree : true
+			});
+		}
+	},
+
+	unobserve : function(chart) {
+		if (this.intersection) {
+			this.intersection.unobserve(chart.element);
+		}
+		var index = this.waiting.indexOf(chart);
+		if (index >= 0) {
+			this.waiting.splice(index, 1);
+		}
+	},
+
+	// MutationObserver : charts whose div entered the document
+	attached : function() {
+		var waiting = this.waiting;
+		this.waiting = [];
+		for (var i = 0; i < waiting.length; i++) {
+			if (document.body.contains(waiting[i].element)) {
+				waiting[i].setVisible(true);
+			} else {
+				this.waiting.push(waiting[i]);
+			}
+		}
+		if (this.waiting.length === 0 && this.mutation) {
+			this.mutation.disconnect();
+			this.mutation = null;
+		}
+	}
+};
+
+// Shared animation frame scheduler : the charts scheduled during a frame
+// (resize events while a sash is dragged) are relaid out once, together, on
+// the next frame.
+PlotlyUtils.frames = {
+
+	queue : [],
+	requested : false,
+
+	schedule : function(chart) {
+		if (this.queue.indexOf(chart) < 0) {
+			this.queue.push(chart);
+		}
+		if (!this.requested) {
+			this.requested = true;
+			var those = this;
+			var request = window.requestAnimationFrame || function(callback) {
+				return setTimeout(callback, 16);
+			};
+			request(function() {
+				those.flush();
+			});
+		}
+	},
+
+	flush : function() {
+		var queue = this.queue;
+		this.queue = [];
+		this.requested = false;
+		for (var i = 0; i < queue.length; i++) {
+			if (!queue[i].destroyed) {
+				queue[i].relayout();
+			}
+		}
+	}
+};
+
+// Content-addressed cache of the numeric blocks sent by the server
+// (plotly.encoding.DataBlock). A block is { block : hash, dtype, shape, data }
+// the first time, then only { block : hash } once the server knows the client
+// holds it.
+PlotlyUtils.blocks = {
+
+	// Same bound as plotly.encoding.BlockCache
+	maxBlocks : 256,
+	maxBytes : 64 * 1024 * 1024,
+
+	bytes : 0,
+	entries : {},
+	order : [],
+
+	// IndexedDB store, opened only if the server asked for persistence once
+	db : null,
+	persisted : null,
+	reported : false,
+
+	types : {
+		"f8" : Float64Array,
+		"f4" : Float32Array,
+		"u1" : Uint8Array,
+		"u2" : Uint16Array,
+		"i4" : Int32Array
+	},
+
+	get : function(hash) {
+		var entry = this.entries[hash];
+		if (entry) {
+			var index = this.order.indexOf(hash);
+			this.order.splice(index, 1);
+			this.order.push(hash);
+			return entry;
+		}
+		return null;
+	},
+
+	put : function(hash, entry) {
+		if (this.entries[hash]) {
+			return;
+		}
+		this.entries[hash] = entry;
+		this.order.push(hash);
+		this.bytes += entry.buffer.byteLength;
+		while (this.order.length > this.maxBlocks
+				|| (this.bytes > this.maxBytes && this.order.length > 1)) {
+			var eldest = this.order.shift();
+			this.bytes -= this.entries[eldest].buffer.byteLength;
+			delete this.entries[eldest];
+		}
+	},
+
+	decode : function(block) {
+		var binary = atob(block.data);
+		var bytes = new Uint8Array(binary.length);
+		for (var i = 0; i < binary.length; i++) {
+			bytes[i] = binary.charCodeAt(i);
+		}
+		return {
+			dtype : block.dtype,
+			shape : block.shape,
+			buffer : bytes.buffer,
+			offset : block.offset,
+			scale : block.scale
+		};
+	},
+
+	// Typed array (1 dimension) or array of typed rows (2 dimensions)
+	values : function(entry) {
+		var values = new this.types[entry.dtype](entry.buffer);
+		if (entry.scale !== undefined) {
+			values = this.dequantize(values, entry);
+		}
+		if (entry.shape.length < 2) {
+			return values;
+		}
+		var rows = new Array(entry.shape[0]);
+		var columns = entry.shape[1];
+		for (var i = 0; i < rows.length; i++) {
+			rows[i] = values.subarray(i * columns, (i + 1) * columns);
+		}
+		return rows;
+	},
+
+	// Values of the indexes of a quantized block, the last index is NaN
+	dequantize : function(indexes, entry) {
+		var nan = entry.dtype === "u1" ? 255 : 65535;
+		var values = new Float32Array(indexes.length);
+		for (var i = 0; i < indexes.length; i++) {
+			values[i] = indexes[i] === nan ? NaN : entry.offset + indexes[i]
+					* entry.scale;
+		}
+		return values;
+	},
+
+	isBlock : function(value) {
+		return value !== null && typeof value === "object"
+				&& typeof value.block === "string";
+	},
+
+	// Sparse matrix (plotly.encoding.SparseMatrix)
+	isSparse : function(value) {
+		return value !== null && typeof value === "object"
+				&& value.csr !== undefined;
+	},
+
+	// Rows of a sparse matrix, the other cells filled
+	expand : function(sparse, pointers, indexes, values) {
+		var fill = sparse.fill === null ? NaN : sparse.fill;
+		var rows = new Array(sparse.csr[0]);
+		for (var i = 0; i < rows.length; i++) {
+			var row = new Float64Array(sparse.csr[1]);
+			if (fill !== 0) {
+				for (var j = 0; j < row.length; j++) {
+					row[j] = fill;
+				}
+			}
+			for (var k = pointers[i]; k < pointers[i + 1]; k++) {
+				row[indexes[k]] = values[k];
+			}
+			rows[i] = row;
+		}
+		return rows;
+	},
+
+	// Evenly spaced coordinates (plotly.encoding.UniformGrid)
+	isGrid : function(value) {
+		return value !== null && typeof value === "object"
+				&& value.grid !== undefined;
+	},
+
+	// Coordinates of a grid : [start, step, count]
+	grid : function(grid) {
+		var values = new Float64Array(grid.grid[2]);
+		for (var i = 0; i < values.length; i++) {
+			values[i] = grid.grid[0] + i * grid.grid[1];
+		}
+		return values;
+	},
+
+	// Entry of a block, null if it is missing (its hash is added to missing)
+	entry : function(value, missing) {
+		var entry = this.get(value.block);
+		if (!entry && value.data) {
+			entry = this.decode(value);
+			this.put(value.block, entry);
+			if (value.persist) {
+				this.store(value.block, entry);
+			}
+		}
+		if (!entry && missing.indexOf(value.block) < 0) {
+			missing.push(value.block);
+		}
+		return entry;
+	},
+
+	// Replace the blocks of the traces by their values.
+	// Return true when every block is resolved. Otherwise the missing blocks
+	// are searched in IndexedDB and done(missingHashes) is called after.
+	resolve : function(traces, done) {
+		var missing = [];
+		for (var i = 0; traces && i < traces.length; i++) {
+			for ( var key in traces[i]) {
+				var value = traces[i][key];
+				if (this.isBlock(value)) {
+					var entry = this.entry(value, missing);
+					if (entry) {
+						traces[i][key] = this.values(entry);
+					}
+				} else if (this.isGrid(value)) {
+					traces[i][key] = this.grid(value);
+				} else if (PlotlyUtils.hover.isColumns(value)) {
+					for (var c = 0; c < value.columns.length; c++) {
+						if (this.isBlock(value.columns[c])) {
+							var entry = this.entry(value.columns[c], missing);
+							if (entry) {
+								value.columns[c] = this.values(entry);
+							}
+						}
+					}
+				} else if (this.isSparse(value)) {
+					var pointers = this.entry(value.pointers, missing);
+					var indexes = this.entry(value.indexes, missing);
+					var values = this.entry(value.values, missing);
+					if (pointers && indexes && values) {
+						traces[i][key] = this.expand(value, this.values(pointers),
+								this.values(indexes), this.values(values));
+					}
+				}
+			}
+		}
+		if (missing.length === 0) {
+			return true;
+		}
+		this.load(missing, done);
+		return false;
+	},
+
+	open : function(callback) {
+		var those = this;
+		if (this.db || !window.indexedDB) {
+			callback(this.db);
+			return;
+		}
+		var request = indexedDB.open("plotly-blocks", 1);
+		request.onupgradeneeded = function() {
+			request.result.createObjectStore("blocks");
+		};
+		request.onsuccess = function() {
+			those.db = request.result;
+			callback(those.db);
+		};
+		request.onerror = function() {
+			callback(null);
+		};
+	},
+
+	store : function(hash, entry) {
+		try {
+			localStorage.setItem("plotly-blocks", "true");
+		} catch (e) {
+		}
+		this.open(function(db) {
+			if (db) {
+				db.transaction("blocks", "readwrite").objectStore("blocks").put(
+						entry, hash);
+			}
+		});
+	},
+
+	load : function(hashes, callback) {
+		var those = this;
+		this.open(function(db) {
+			if (!db) {
+				callback(hashes);
+				return;
+			}
+			var notFound = [];
+			var transaction = db.transaction("blocks", "readonly");
+			hashes.forEach(function(hash) {
+				var request = transaction.objectStore("blocks").get(hash);
+				request.onsuccess = function() {
+					if (request.result) {
+						those.put(hash, request.result);
+					} else {
+						notFound.push(hash);
+					}
+				};
+			});
+			transaction.oncomplete = function() {
+				callback(notFound);
+			};
+			transaction.onerror = function() {
+				callback(hashes);
+			};
+		});
+	},
+
+	// Hashes kept in IndexedDB by a previous page, reported once to the server
+	// by the first chart drawn.
+	report : function(remoteObject) {
+		if (this.reported || !this.persisted) {
+			return;
+		}
+		this.reported = true;
+		if (this.persisted.length > 0) {
+			remoteObject.set("cachedBlocks", this.persisted);
+		}
+	}
+};
+
+(function() {
+	var enabled = false;
+	try {
+		enabled = localStorage.getItem("plotly-blocks") === "true";
+	} catch (e) {
+	}
+	if (!enabled) {
+		return;
+	}
+	PlotlyUtils.blocks.open(function(db) {
+		if (!db) {
+			return;
+		}
+		var request = db.transaction("blocks", "readonly").objectStore("blocks")
+				.getAllKeys();
+		request.onsuccess = function() {
+			// The store is bounded like the memory cache : past the bound, it
+			// is cleared rather than scanned for its eldest blocks
+			if (request.result.length > PlotlyUtils.blocks.maxBlocks) {
+				db.transaction("blocks", "readwrite").objectStore("blocks")
+						.clear();
+				PlotlyUtils.blocks.persisted = [];
+			} else {
+				PlotlyUtils.blocks.persisted = request.result;
+			}
+		};
+	});
+})();
+
+// Columns of strings sent as codes of a table (plotly.encoding.StringDictionary)
+PlotlyUtils.dictionary = {
+
+	isColumn : function(value) {
+		return value !== null && typeof value === "object"
+				&& Array.isArray(value.codes);
+	},
+
+	// Replace the coded columns of the traces by their strings
+	expand : function(traces, table) {
+		for (var i = 0; traces && i < traces.length; i++) {
+			for ( var key in traces[i]) {
+				var value = traces[i][key];
+				if (this.isColumn(value)) {
+					traces[i][key] = this.column(value, table);
+				} else if (PlotlyUtils.hover.isColumns(value)) {
+					for (var c = 0; c < value.columns.length; c++) {
+						if (this.isColumn(value.columns[c])) {
+							value.columns[c] = this.column(value.columns[c], table);
+						}
+					}
+				}
+			}
+		}
+	},
+
+	column : function(value, table) {
+		var column = new Array(value.codes.length);
+		for (var j = 0; j < column.length; j++) {
+			column[j] = value.codes[j] < 0 ? null : table[value.codes[j]];
+		}
+		return column;
+	}
+};
+
+// Hover labels formatted from a template by trace (plotly.js hovertemplate
+// fields, which plotly.js 1.39 lacks) and customdata columns
+// (plotly.encoding.CustomData)
+PlotlyUtils.hover = {
+
+	formats : {},
+
+	isColumns : function(value) {
+		return value !== null && typeof value === "object"
+				&& Array.isArray(value.columns);
+	},
+
+	// Texts of the traces having a template, customdata columns turned into
+	// one array by point. The texts of trace i are kept in cache[i] and
+	// formatted again only when the template or a column it reads changes
+	// (columns are replaced, never changed in place)
+	apply : function(traces, cache) {
+		for (var i = 0; traces && i < traces.length; i++) {
+			var trace = traces[i];
+			if (this.isColumns(trace.customdata)) {
+				trace.customdata = this.points(trace.customdata.columns);
+			}
+			if (typeof trace.hovertemplate === "string") {
+				var sources = this.sources(trace);
+				var kept = cache ? cache[i] : null;
+				if (!kept || !this.same(kept.sources, sources)) {
+					var count = this.count(trace);
+					var texts = new Array(count);
+					for (var p = 0; p < count; p++) {
+						texts[p] = this.format(trace.hovertemplate, trace, p);
+					}
+					kept = {
+						sources : sources,
+						texts : texts
+					};
+					if (cache) {
+						cache[i] = kept;
+					}
+				}
+				trace.hovertext = kept.texts;
+				trace.hoverinfo = "text";
+			} else if (cache) {
+				cache[i] = null;
+			}
+		}
+		if (cache) {
+			cache.length = traces ? traces.length : 0;
+		}
+	},
+
+	// Template of a trace, columns counted and columns read by its fields
+	// (with their start and step when evenly spaced)
+	sources : function(trace) {
+		var sources = [ trace.hovertemplate, trace.x, trace.y, trace.values,
+				trace.customdata ];
+		var fields = /%\{(\w+)/g;
+		var match;
+		while ((match = fields.exec(trace.hovertemplate)) !== null) {
+			sources.push(trace[match[1]], trace[match[1] + "0"],
+					trace["d" + match[1]]);
+		}
+		return sources;
+	},
+
+	same : function(a, b) {
+		if (a.length !== b.length) {
+			return false;
+		}
+		for (var i = 0; i < a.length; i++) {
+			if (a[i] !== b[i]) {
+				return false;
+			}
+		}
+		return true;
+	},
+
+	points : function(columns) {
+		var count = columns.length > 0 ? columns[0].length : 0;
+		var points = new Array(count);
+		for (var p = 0; p < count; p++) {
+			points[p] = new Array(columns.length);
+			for (var c = 0; c < columns.length; c++) {
+				points[p][c] = columns[c][p];
+			}
+		}
+		return points;
+	},
+
+	count : function(trace) {
+		var columns = [ trace.x, trace.y, trace.values, trace.customdata ];
+		for (var c = 0; c < columns.length; c++) {
+			if (columns[c] && columns[c].length !== undefined) {
+				return columns[c].length;
+			}
+		}
+		return 0;
+	},
+
+	format : function(template, trace, p) {
+		var those = this;
+		return template.replace(/<extra>[\s\S]*?<\/extra>/g, "").replace(
+				/%\{([^}:]+)(?::([^}]*))?\}/g, function(match, field, format) {
+					var value = those.value(trace, field, p);
+					if (value === undefined || value === null) {
+						return "";
+					}
+					if (format && typeof value === "number") {
+						return those.formatter(format)(value);
+					}
+					return String(value);
+				});
+	},
+
+	// Field of the point p : x, y, text, customdata[c]... Evenly spaced axes
+	// (x0 / dx) are computed
+	value : function(trace, field, p) {
+		var index = /^(\w+)\[(\d+)\]$/.exec(field);
+		var key = index ? index[1] : field;
+		var column = trace[key];
+		var value;
+		if (column && column.length !== undefined
+				&& typeof column !== "string") {
+			value = column[p];
+		} else if (trace[key + "0"] !== undefined) {
+			value = trace[key + "0"] + p * (trace["d" + key] || 1);
+		} else {
+			value = column;
+		}
+		return index && value ? value[+index[2]] : value;
+	},
+
+	formatter : function(format) {
+		if (!this.formats[format]) {
+			this.formats[format] = typeof Plotly !== "undefined" && Plotly.d3 ? Plotly.d3
+					.format(format)
+					: String;
+		}
+		return this.formats[format];
+	}
+};
+
+// Tiles of the heatmap pyramids (plotly.encoding.TilePyramid), by
+// "version:level:row:column". Values are arrays of typed rows.
+PlotlyUtils.tiles = {
+
+	// Same bound as plotly.encoding.TilePyramid
+	maxTiles : 256,
+
+	entries : {},
+	order : [],
+
+	key : function(version, level, row, column) {
+		return version + ":" + level + ":" + row + ":" + column;
+	},
+
+	get : function(key) {
+		var entry = this.entries[key];
+		if (entry) {
+			this.order.splice(this.order.indexOf(key), 1);
+			this.order.push(key);
+			return entry;
+		}
+		return null;
+	},
+
+	put : function(key, rows) {
+		if (!this.entries[key]) {
+			this.order.push(key);
+		}
+		this.entries[key] = rows;
+		while (this.order.length > this.maxTiles) {
+			delete this.entries[this.order.shift()];
+		}
+	}
+};
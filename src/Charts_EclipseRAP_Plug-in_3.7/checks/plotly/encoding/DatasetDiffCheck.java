@@ -0,0 +1,249 @@
+package plotly.encoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Check of the splices of DatasetDiff : random columns changed as the charts
+ * change them (values appended, sliding windows, a changed range, values
+ * replaced everywhere), the splices applied to the column sent as plotlyFast.js
+ * applies them must give the new column. Numeric columns, text columns (quoted
+ * values, labels) and columns sent as grids are checked.<br>
+ * <br>
+ * Run (from Charts_EclipseRAP_Plug-in_3.7, the plug-in compiled in bin):<br>
+ * javac -cp "bin:lib/*" -d bin checks/plotly/encoding/DatasetDiffCheck.java
+ * <br>
+ * java -cp "bin:lib/*" plotly.encoding.DatasetDiffCheck
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class DatasetDiffCheck {
+
+	private static final String[] KEYS = { "x", "y" };
+
+	public static void main(String[] args) {
+
+		Random random = new Random(44);
+		int spliced = 0;
+		int whole = 0;
+		for (int t = 0; t < 5000; t++) {
+			int length = random.nextInt(300);
+			int kind = random.nextInt(6);
+
+			// Numeric columns
+			double[] before = new double[length];
+			for (int i = 0; i < length; i++)
+				before[i] = random.nextInt(1000) / 4.0;
+			double[] after = change(before, kind, random);
+			JsonArray operations = DatasetDiff.numbers(new double[][] { before }, new double[][] { after }, "values");
+			if (operations == null) {
+				check(kind != 0 && (kind == 3 || kind == 5 || length < 40), "chart sent whole for a small change", t);
+				whole++;
+			} else {
+				check(kind != 0 || operations.isEmpty(), "operations on an unchanged column", t);
+				List<Object> column = toList(before);
+				for (JsonValue operation : operations)
+					column = apply(column, operation.asObject());
+				check(column.equals(toList(after)), "numbers spliced", t);
+				spliced++;
+			}
+
+			// Text columns : labels and quoted values mixed with numbers
+			String[] x = new String[length];
+			for (int i = 0; i < length; i++)
+				x[i] = text(random, kind % 2 == 0);
+			String[] y = toStrings(before, random);
+			String[][][] sent = { { x, y } };
+			String[][][] datas = { { changeText(x, kind, random), toStrings(after, random) } };
+			operations = DatasetDiff.columns(sent, datas, KEYS);
+			if (operations != null) {
+				List<Object> xColumn = toList(x);
+				List<Object> yColumn = toList(y);
+				for (JsonValue operation : operations) {
+					JsonObject json = operation.asObject();
+					if (json.get("key").asString().equals("x"))
+						xColumn = apply(xColumn, json);
+					else
+						yColumn = apply(yColumn, json);
+				}
+				check(xColumn.equals(toList(datas[0][0])), "text spliced", t);
+				check(yColumn.equals(toList(datas[0][1])), "quoted numbers spliced", t);
+			}
+
+			// x sent as a grid : its start and step only
+			if (length >= 2) {
+				String[] grid = new String[length];
+				for (int i = 0; i < length; i++)
+					grid[i] = String.valueOf(10 + 2 * i);
+				int shift = random.nextInt(3);
+				String[] moved = new String[length];
+				for (int i = 0; i < length; i++)
+					moved[i] = String.valueOf(10 + 2 * (i + shift));
+				double[][][] grids = { { { 10, 2 }, null } };
+				operations = DatasetDiff.columns(new String[][][] { { grid, y } },
+						new String[][][] { { moved, y } }, KEYS, grids);
+				check(operations != null && operations.size() == (shift == 0 ? 0 : 1), "grid operations", t);
+				check(grids[0][0][0] == 10 + 2 * shift && grids[0][0][1] == 2, "grid updated", t);
+				if (shift > 0) {
+					JsonObject json = operations.get(0).asObject();
+					check(json.get("splices") == null && json.get("grid").asArray().get(0).asDouble() == 10 + 2 * shift,
+							"grid sent", t);
+				}
+
+				moved[length / 2] = "-1";
+				operations = DatasetDiff.columns(new String[][][] { { grid, y } },
+						new String[][][] { { moved, y } }, KEYS, new double[][][] { { { 10, 2 }, null } });
+				check(length == 2 || operations == null, "grid no longer evenly spaced", t);
+			}
+		}
+
+		System.out.println("DatasetDiff : " + spliced + " columns spliced, " + whole + " sent whole, OK");
+	}
+
+	// 0 unchanged, 1 values appended, 2 sliding window, 3 range changed,
+	// 4 one value changed, 5 all changed
+	private static double[] change(double[] values, int kind, Random random) {
+
+		int length = values.length;
+		switch (kind) {
+		case 1: {
+			double[] changed = Arrays.copyOf(values, length + 1 + random.nextInt(length / 4 + 1));
+			for (int i = length; i < changed.length; i++)
+				changed[i] = 1000 + i;
+			return changed;
+		}
+		case 2: {
+			int shift = length < 2 ? 0 : 1 + random.nextInt(Math.min(length - 1, 10));
+			double[] changed = new double[length];
+			System.arraycopy(values, shift, changed, 0, length - shift);
+			for (int i = length - shift; i < length; i++)
+				changed[i] = 2000 + i;
+			return changed;
+		}
+		case 3: {
+			double[] changed = values.clone();
+			int from = length == 0 ? 0 : random.nextInt(length);
+			int to = from + random.nextInt(length - from + 1);
+			for (int i = from; i < to; i++)
+				changed[i] = -1 - i;
+			return changed;
+		}
+		case 4: {
+			double[] changed = values.clone();
+			if (length > 0)
+				changed[random.nextInt(length)] = -5;
+			return changed;
+		}
+		case 5: {
+			double[] changed = new double[random.nextInt(300)];
+			for (int i = 0; i < changed.length; i++)
+				changed[i] = -random.nextInt(1000);
+			return changed;
+		}
+		default:
+			return values.clone();
+		}
+	}
+
+	private static String[] changeText(String[] values, int kind, Random random) {
+
+		double[] indexes = new double[values.length];
+		for (int i = 0; i < indexes.length; i++)
+			indexes[i] = i;
+		double[] changed = change(indexes, kind, random);
+		String[] text = new String[changed.length];
+		for (int i = 0; i < text.length; i++) {
+			int index = (int) changed[i];
+			text[i] = changed[i] == index && index >= 0 && index < values.length ? values[index]
+					: text(random, kind % 2 == 0);
+		}
+		return text;
+	}
+
+	private static String text(Random random, boolean labels) {
+		int value = random.nextInt(50);
+		if (labels && random.nextBoolean())
+			return "label " + value;
+		return random.nextBoolean() ? "'" + value + "'" : String.valueOf(value);
+	}
+
+	private static String[] toStrings(double[] values, Random random) {
+		String[] strings = new String[values.length];
+		for (int i = 0; i < values.length; i++)
+			strings[i] = random.nextBoolean() ? "'" + values[i] + "'" : String.valueOf(values[i]);
+		return strings;
+	}
+
+	// Column after the splices of an operation, as the "splice" method of
+	// plotlyFast.js
+	private static List<Object> apply(List<Object> column, JsonObject operation) {
+
+		for (JsonValue value : operation.get("splices").asArray()) {
+			JsonObject splice = value.asObject();
+			int offset = splice.get("offset").asInt();
+			int remove = splice.get("remove").asInt();
+			List<Object> spliced = new ArrayList<Object>(column.subList(0, offset));
+			spliced.addAll(values(splice.get("values")));
+			spliced.addAll(column.subList(offset + remove, column.size()));
+			column = spliced;
+		}
+		return column;
+	}
+
+	// Values of a splice : a block out of the cache or an array
+	private static List<Object> values(JsonValue values) {
+
+		if (values.isObject()) {
+			JsonObject block = values.asObject();
+			check(block.get("dtype").asString().equals(DataBlock.FLOAT64), "block of doubles", 0);
+			check(block.get("block") == null, "block sent without its hash", 0);
+			ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(block.get("data").asString()))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			double[] decoded = new double[buffer.remaining() / 8];
+			buffer.asDoubleBuffer().get(decoded);
+			return toList(decoded);
+		}
+
+		List<Object> list = new ArrayList<Object>();
+		for (JsonValue value : values.asArray())
+			list.add(value.isNumber() ? (Object) value.asDouble() : canonical(value.asString()));
+		return list;
+	}
+
+	private static List<Object> toList(double[] values) {
+		List<Object> list = new ArrayList<Object>();
+		for (double value : values)
+			list.add(value);
+		return list;
+	}
+
+	private static List<Object> toList(String[] values) {
+		List<Object> list = new ArrayList<Object>();
+		for (String value : values)
+			list.add(canonical(value));
+		return list;
+	}
+
+	// Value drawn by plotly.js : unquoted, a number when it is one
+	private static Object canonical(String value) {
+		if (value.length() > 1 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'')
+			value = value.substring(1, value.length() - 1);
+		double number = DataBlock.toNumber(value);
+		return Double.isNaN(number) ? value : (Object) number;
+	}
+
+	private static void check(boolean condition, String message, int column) {
+		if (!condition)
+			throw new IllegalStateException("Column " + column + " : " + message);
+	}
+}
@@ -0,0 +1,131 @@
+package plotly.encoding;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Check of DoubleWriter on random doubles (random bits : every exponent,
+ * subnormal values included, and short decimals as the charts get them) :
+ * <ul>
+ * <li>the text reads back to the same double</li>
+ * <li>no decimal of one digit less reads back to it (shortest)</li>
+ * <li>of the decimals of the same length, the text is the closest</li>
+ * <li>with significant digits, the shortest form rounded half up</li>
+ * <li>the notation of JavaScript, read as numbers by the Json parser</li>
+ * </ul>
+ * The columns given as text are checked in Json.<br>
+ * <br>
+ * Run (from Charts_EclipseRAP_Plug-in_3.7, the plug-in compiled in bin):<br>
+ * javac -cp "bin:lib/*" -d bin checks/plotly/encoding/DoubleWriterCheck.java
+ * <br>
+ * java -cp "bin:lib/*" plotly.encoding.DoubleWriterCheck [count, 3000000 by
+ * default]
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class DoubleWriterCheck {
+
+	public static void main(String[] args) {
+
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 3000000;
+		Random random = new Random(46);
+		StringBuilder out = new StringBuilder();
+		for (int t = 0; t < count; t++) {
+			double value;
+			switch (t % 3) {
+			case 0:
+				value = Double.longBitsToDouble(random.nextLong());
+				break;
+			case 1:
+				value = random.nextInt(2000000) / Math.pow(10, random.nextInt(12));
+				break;
+			default:
+				value = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+			}
+			if (Double.isNaN(value) || Double.isInfinite(value))
+				continue;
+
+			out.setLength(0);
+			String text = DoubleWriter.append(out, value).toString();
+			check(Double.parseDouble(text) == value, text + " reads back to " + Double.parseDouble(text), value);
+			check(JsonValue.readFrom(text).asDouble() == value, "Json number", value);
+			notation(text, value);
+			if (value == 0)
+				continue;
+
+			BigDecimal written = new BigDecimal(text).abs().stripTrailingZeros();
+			BigDecimal exact = new BigDecimal(Math.abs(value));
+			int digits = written.precision();
+			if (digits > 1) {
+				MathContext shorter = new MathContext(digits - 1, RoundingMode.FLOOR);
+				check(Math.abs(exact.round(shorter).doubleValue()) != Math.abs(value)
+						&& Math.abs(exact.round(new MathContext(digits - 1, RoundingMode.CEILING)).doubleValue()) != Math
+								.abs(value),
+						text + " is not the shortest", value);
+			}
+			BigDecimal other = exact.round(new MathContext(digits, RoundingMode.FLOOR));
+			if (other.compareTo(written) == 0)
+				other = exact.round(new MathContext(digits, RoundingMode.CEILING));
+			check(other.doubleValue() != Math.abs(value)
+					|| written.subtract(exact).abs().compareTo(other.subtract(exact).abs()) <= 0,
+					text + " is not the closest, " + other, value);
+
+			int significant = 1 + random.nextInt(8);
+			out.setLength(0);
+			String rounded = DoubleWriter.append(out, value, significant).toString();
+			BigDecimal expected = new BigDecimal(text).round(new MathContext(significant, RoundingMode.HALF_UP));
+			check(new BigDecimal(rounded).compareTo(expected) == 0, rounded + " for " + significant + " digits", value);
+			notation(rounded, value);
+		}
+
+		for (double value : new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY })
+			check(DoubleWriter.toString(value).equals("null"), "gap", value);
+		check(DoubleWriter.toString(-0.0).equals("-0") && DoubleWriter.toString(0.0).equals("0"), "zero", 0);
+		// Smallest subnormal : 4.9e-324 as Double.toString (5e-324 in JavaScript)
+		check(DoubleWriter.toString(0.1).equals("0.1") && DoubleWriter.toString(1e21).equals("1e21")
+				&& DoubleWriter.toString(1e-7).equals("1e-7") && DoubleWriter.toString(1.5e-6).equals("0.0000015")
+				&& DoubleWriter.toString(1e-6).equals("0.000001") && DoubleWriter.toString(9.5e-7).equals("9.5e-7")
+				&& DoubleWriter.toString(Double.MIN_VALUE).equals("4.9e-324"), "JavaScript forms", 0);
+
+		// Columns given as text, in Json
+		String[] column = { "12.50", "'7'", "Jan", "\"q\"", "null", "2.0E-3", "a \"b\" \\ c", null, "'x'" };
+		JsonArray json = DoubleWriter.toJson(column, DoubleWriter.SHORTEST).asArray();
+		check(json.get(0).asDouble() == 12.5 && json.get(0).toString().equals("12.5"), "number", 0);
+		check(json.get(1).asString().equals("7"), "quoted number", 0);
+		check(json.get(2).asString().equals("Jan") && json.get(3).asString().equals("q"), "labels", 0);
+		check(json.get(4).isNull() && json.get(7).isNull(), "null", 0);
+		check(json.get(5).toString().equals("0.002"), "shortest form", 0);
+		check(json.get(6).asString().equals("a \"b\" \\ c") && json.get(8).asString().equals("x"), "escapes", 0);
+		check(DoubleWriter.toJson(column, 2).asArray().get(1).asDouble() == 7, "quoted number with digits", 0);
+		JsonArray notDecimal = DoubleWriter.toJson(new String[] { "0x1A", "10L" }, 2).asArray();
+		check(notDecimal.get(0).asString().equals("0x1A") && notDecimal.get(1).asString().equals("10L"), "not decimal", 0);
+
+		System.out.println("DoubleWriter : " + count + " doubles OK");
+	}
+
+	// d.ddden out of [1e-6, 1e21) as Number.toString of JavaScript, plain
+	// otherwise, no trailing zeros
+	private static void notation(String text, double value) {
+
+		String digits = text.startsWith("-") ? text.substring(1) : text;
+		int e = digits.indexOf('e');
+		String mantissa = e < 0 ? digits : digits.substring(0, e);
+		BigDecimal magnitude = new BigDecimal(digits);
+		boolean plain = magnitude.signum() == 0
+				|| (magnitude.compareTo(new BigDecimal("1e-6")) >= 0 && magnitude.compareTo(new BigDecimal("1e21")) < 0);
+		check(plain == (e < 0), text + " notation", value);
+		check(!mantissa.contains(".") || !mantissa.endsWith("0"), text + " trailing zeros", value);
+		check(e < 0 || mantissa.indexOf('.') < 0 || mantissa.indexOf('.') == 1, text + " exponent form", value);
+	}
+
+	private static void check(boolean condition, String message, double value) {
+		if (!condition)
+			throw new IllegalStateException(Double.toString(value) + " : " + message);
+	}
+}
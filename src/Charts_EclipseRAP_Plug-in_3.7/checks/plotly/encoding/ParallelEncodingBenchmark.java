@@ -0,0 +1,112 @@
+package plotly.encoding;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of ParallelEncoding.parse against the same work on the calling
+ * thread (DataBlock.parse and the hash of each column, one after the other),
+ * for charts of a few long traces up to many short ones.<br>
+ * The common pool takes its parallelism when the JVM starts : each level is
+ * run in its own JVM (-Djava.util.concurrent.ForkJoinPool.common.parallelism),
+ * after a warm-up of the JIT compiler. The times are the medians of the runs,
+ * the blocks are checked to be the same.<br>
+ * <br>
+ * Run (from Charts_EclipseRAP_Plug-in_3.7, the plug-in compiled in bin):<br>
+ * javac -cp "bin:lib/*" -d bin
+ * checks/plotly/encoding/ParallelEncodingBenchmark.java <br>
+ * java -cp "bin:lib/*" plotly.encoding.ParallelEncodingBenchmark [levels,
+ * 1,2,4,8 by default]
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class ParallelEncodingBenchmark {
+
+	// Traces by chart, values by column
+	private static final int[][] CHARTS = { { 2, 500000 }, { 8, 100000 }, { 50, 10000 }, { 200, 1000 } };
+	private static final int WARMUP = 5;
+	private static final int RUNS = 11;
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length > 0 && args[0].equals("level")) {
+			measure();
+			return;
+		}
+
+		String[] levels = (args.length > 0 ? args[0] : "1,2,4,8").split(",");
+		System.out.println("Processors : " + Runtime.getRuntime().availableProcessors());
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (String level : levels) {
+			List<String> command = new ArrayList<String>(Arrays.asList(java,
+					"-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + level.trim(), "-cp",
+					System.getProperty("java.class.path"), ParallelEncodingBenchmark.class.getName(), "level"));
+			Process process = new ProcessBuilder(command).inheritIO().start();
+			if (process.waitFor() != 0)
+				throw new IllegalStateException("Level " + level + " failed");
+		}
+	}
+
+	// Every chart at the parallelism of this JVM
+	private static void measure() {
+
+		System.out.println("Parallelism " + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism() + " :");
+		Random random = new Random(49);
+		for (int[] chart : CHARTS) {
+			String[][][] datas = new String[chart[0]][2][chart[1]];
+			for (String[][] trace : datas)
+				for (int k = 0; k < chart[1]; k++) {
+					trace[0][k] = String.valueOf(k);
+					trace[1][k] = String.valueOf(random.nextInt(1000000) / 1000.0);
+				}
+
+			long[] sequential = new long[RUNS];
+			long[] parallel = new long[RUNS];
+			for (int run = -WARMUP; run < RUNS; run++) {
+				long start = System.nanoTime();
+				DataBlock[][] expected = sequential(datas);
+				long middle = System.nanoTime();
+				DataBlock[][] blocks = ParallelEncoding.parse(datas);
+				long end = System.nanoTime();
+				if (run >= 0) {
+					sequential[run] = middle - start;
+					parallel[run] = end - middle;
+				} else
+					same(expected, blocks);
+			}
+
+			double one = median(sequential);
+			double many = median(parallel);
+			System.out.printf("  %3d traces x %6d values : calling thread %8.2f ms, ParallelEncoding %8.2f ms (x%.2f)%n",
+					chart[0], chart[1], one, many, one / many);
+		}
+	}
+
+	private static DataBlock[][] sequential(String[][][] datas) {
+		DataBlock[][] blocks = new DataBlock[datas.length][2];
+		for (int i = 0; i < datas.length; i++)
+			for (int j = 0; j < 2; j++) {
+				blocks[i][j] = DataBlock.parse(datas[i][j]);
+				blocks[i][j].getHash();
+			}
+		return blocks;
+	}
+
+	private static void same(DataBlock[][] expected, DataBlock[][] blocks) {
+		for (int i = 0; i < expected.length; i++)
+			for (int j = 0; j < 2; j++)
+				if (!expected[i][j].getHash().equals(blocks[i][j].getHash()))
+					throw new IllegalStateException("Trace " + i + " : blocks differ");
+	}
+
+	// Median in milliseconds
+	private static double median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2] / 1e6;
+	}
+}
@@ -0,0 +1,90 @@
+package plotly.encoding;
+
+import java.util.Random;
+
+/**
+ * Check of SparseMatrix.ofCoo against a dense matrix filled cell by cell :
+ * random coordinate lists (shuffled, with repeated cells) of matrices of any
+ * shape, empty rows and empty matrices, and coordinates out of range.<br>
+ * <br>
+ * Run (from Charts_EclipseRAP_Plug-in_3.7, the plug-in compiled in bin):<br>
+ * javac -cp "bin:lib/*" -d bin checks/plotly/encoding/SparseMatrixCheck.java
+ * <br>
+ * java -cp "bin:lib/*" plotly.encoding.SparseMatrixCheck
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class SparseMatrixCheck {
+
+	public static void main(String[] args) {
+
+		Random random = new Random(41);
+		int matrices = 0;
+		for (int t = 0; t < 2000; t++) {
+			int rows = random.nextInt(40);
+			int columns = random.nextInt(40);
+			int count = rows == 0 || columns == 0 ? 0 : random.nextInt(3 * rows * columns / 2 + 1);
+			double fill = random.nextBoolean() ? 0 : Double.NaN;
+
+			int[] rowIndexes = new int[count];
+			int[] columnIndexes = new int[count];
+			double[] values = new double[count];
+			double[][] expected = new double[rows][columns];
+			boolean[][] given = new boolean[rows][columns];
+			for (int k = 0; k < count; k++) {
+				rowIndexes[k] = random.nextInt(rows);
+				columnIndexes[k] = random.nextInt(columns);
+				values[k] = random.nextInt(2000) / 8.0 - 125;
+				expected[rowIndexes[k]][columnIndexes[k]] += values[k];
+				given[rowIndexes[k]][columnIndexes[k]] = true;
+			}
+
+			SparseMatrix matrix = SparseMatrix.ofCoo(rows, columns, rowIndexes, columnIndexes, values, fill);
+			check(matrix.getRows() == rows && matrix.getColumns() == columns, "shape", t);
+
+			int cells = 0;
+			double[][] dense = matrix.toDense();
+			for (int i = 0; i < rows; i++)
+				for (int j = 0; j < columns; j++) {
+					double value = given[i][j] ? expected[i][j] : fill;
+					cells += given[i][j] ? 1 : 0;
+					check(same(matrix.get(i, j), value), "get(" + i + ", " + j + ")", t);
+					check(same(dense[i][j], value), "toDense()[" + i + "][" + j + "]", t);
+				}
+			check(matrix.getNonEmpty() == cells, "one value by cell given", t);
+			matrices++;
+		}
+
+		// Same cells as the dense matrix they come from
+		double[][] values = { { 0, 1, 0 }, { 0, 0, 0 }, { 2, 0, 3 } };
+		SparseMatrix dense = SparseMatrix.of(values, 0);
+		SparseMatrix coo = SparseMatrix.ofCoo(3, 3, new int[] { 2, 0, 2 }, new int[] { 2, 1, 0 },
+				new double[] { 3, 1, 2 }, 0);
+		check(dense.getNonEmpty() == 3 && coo.getNonEmpty() == 3, "of and ofCoo", 0);
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				check(dense.get(i, j) == coo.get(i, j), "of and ofCoo", 0);
+
+		// Coordinates out of the matrix
+		for (int[] cell : new int[][] { { 3, 0 }, { 0, 3 }, { -1, 0 }, { 0, -1 } }) {
+			try {
+				SparseMatrix.ofCoo(3, 3, new int[] { cell[0] }, new int[] { cell[1] }, new double[] { 1 }, 0);
+				check(false, "cell " + cell[0] + ", " + cell[1] + " out of range accepted", 0);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+
+		System.out.println("SparseMatrix.ofCoo : " + matrices + " matrices OK");
+	}
+
+	private static boolean same(double a, double b) {
+		return a == b || (Double.isNaN(a) && Double.isNaN(b));
+	}
+
+	private static void check(boolean condition, String message, int matrix) {
+		if (!condition)
+			throw new IllegalStateException("Matrix " + matrix + " : " + message);
+	}
+}
@@ -0,0 +1,116 @@
+package plotly.encoding;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.stat.StatUtils;
+
+/**
+ * Benchmark of StatKernels against StatUtils of commons-math on arrays of
+ * doubles without NaN (the results are the same, StatKernelsCheck) : min, max,
+ * sum, and mean with population variance (StatUtils.mean then
+ * StatUtils.populationVariance, which reads the values twice more). The times
+ * are the medians of the runs, after a warm-up of the JIT compiler.<br>
+ * <br>
+ * Run (from Charts_EclipseRAP_Plug-in_3.7, the plug-in compiled in bin):<br>
+ * javac -cp "bin:lib/*" -d bin checks/plotly/encoding/StatKernelsBenchmark.java
+ * <br>
+ * java -cp "bin:lib/*" plotly.encoding.StatKernelsBenchmark
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class StatKernelsBenchmark {
+
+	private static final int[] LENGTHS = { 1000, 100000, 5000000 };
+	private static final int WARMUP = 10;
+	private static final int RUNS = 21;
+
+	// Keeps the results alive
+	private static double sink;
+
+	private interface Kernel {
+		double run(double[] values);
+	}
+
+	public static void main(String[] args) {
+
+		Random random = new Random(50);
+		for (int length : LENGTHS) {
+			double[] values = new double[length];
+			for (int i = 0; i < length; i++)
+				values[i] = 1e6 + random.nextGaussian();
+			final int to = length;
+			// Repeated on short arrays for times long enough to be measured
+			int repeat = Math.max(1, 1000000 / length);
+
+			System.out.println(length + " values :");
+			compare("min", values, repeat, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatKernels.min(v, 0, to);
+				}
+			}, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatUtils.min(v);
+				}
+			});
+			compare("max", values, repeat, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatKernels.max(v, 0, to);
+				}
+			}, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatUtils.max(v);
+				}
+			});
+			compare("sum", values, repeat, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatKernels.sum(v, 0, to);
+				}
+			}, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatUtils.sum(v);
+				}
+			});
+			compare("mean, variance", values, repeat, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatKernels.meanVariance(v)[1];
+				}
+			}, new Kernel() {
+				@Override
+				public double run(double[] v) {
+					return StatUtils.mean(v) + StatUtils.populationVariance(v);
+				}
+			});
+		}
+	}
+
+	private static void compare(String name, double[] values, int repeat, Kernel kernel, Kernel utils) {
+		double kernels = median(values, repeat, kernel);
+		double statUtils = median(values, repeat, utils);
+		System.out.printf("  %-15s StatKernels %9.4f ms, StatUtils %9.4f ms (x%.2f)%n", name, kernels, statUtils,
+				statUtils / kernels);
+	}
+
+	// Median time of a call, in milliseconds
+	private static double median(double[] values, int repeat, Kernel kernel) {
+		long[] times = new long[RUNS];
+		for (int run = -WARMUP; run < RUNS; run++) {
+			long start = System.nanoTime();
+			for (int r = 0; r < repeat; r++)
+				sink += kernel.run(values);
+			long time = System.nanoTime() - start;
+			if (run >= 0)
+				times[run] = time;
+		}
+		Arrays.sort(times);
+		return times[RUNS / 2] / 1e6 / repeat;
+	}
+}
@@ -0,0 +1,166 @@
+package plotly.encoding;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.stat.StatUtils;
+
+/**
+ * Check of StatKernels against StatUtils of commons-math, on random arrays of
+ * any length (the scalar loop of the last values included), with NaN and
+ * infinite values, and on large values of small variance :
+ * <ul>
+ * <li>min, max : StatUtils.min, StatUtils.max (NaN skipped by both)</li>
+ * <li>sum : StatUtils.sum of the values that are not NaN</li>
+ * <li>meanVariance : exact mean and variance (BigDecimal), as close as
+ * StatUtils.mean and StatUtils.populationVariance</li>
+ * <li>finiteRange, within, count and quantize : their definitions, value by
+ * value</li>
+ * </ul>
+ * <br>
+ * Run (from Charts_EclipseRAP_Plug-in_3.7, the plug-in compiled in bin):<br>
+ * javac -cp "bin:lib/*" -d bin checks/plotly/encoding/StatKernelsCheck.java
+ * <br>
+ * java -cp "bin:lib/*" plotly.encoding.StatKernelsCheck
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class StatKernelsCheck {
+
+	public static void main(String[] args) {
+
+		Random random = new Random(50);
+		// Largest relative errors of StatKernels and of StatUtils
+		double[] worst = new double[4];
+		int arrays = 0;
+		for (int t = 0; t < 20000; t++) {
+			int length = random.nextInt(t < 19000 ? 40 : 5000);
+			double offset = random.nextBoolean() ? 0 : Math.pow(10, random.nextInt(12));
+			double scale = Math.pow(10, random.nextInt(8) - 4);
+			double[] values = new double[length];
+			for (int i = 0; i < length; i++)
+				values[i] = offset + random.nextGaussian() * scale;
+
+			// Mean and variance of finite values
+			double[] meanVariance = StatKernels.meanVariance(values);
+			if (length == 0)
+				check(Double.isNaN(meanVariance[0]) && Double.isNaN(meanVariance[1]), "no value", t);
+			else {
+				double[] exact = exact(values);
+				// Errors relative to the variance, or to the spacing of the
+				// doubles around the mean when the variance is smaller
+				double meanScale = Math.abs(exact[0]) + Math.sqrt(exact[1]);
+				double varianceScale = exact[1] + Math.ulp(exact[0]) * Math.ulp(exact[0]);
+				double[] errors = { Math.abs(meanVariance[0] - exact[0]) / meanScale,
+						Math.abs(meanVariance[1] - exact[1]) / varianceScale,
+						Math.abs(StatUtils.mean(values) - exact[0]) / meanScale,
+						Math.abs(StatUtils.populationVariance(values) - exact[1]) / varianceScale };
+				check(errors[0] < 1e-14, "mean " + meanVariance[0] + " for " + exact[0], t);
+				check(errors[1] < 1e-12, "variance " + meanVariance[1] + " for " + exact[1], t);
+				for (int k = 0; k < 4; k++)
+					worst[k] = Math.max(worst[k], errors[k]);
+			}
+
+			// NaN and infinite values
+			for (int i = 0; i < length; i++) {
+				double draw = random.nextDouble();
+				if (draw < 0.1)
+					values[i] = Double.NaN;
+				else if (draw < 0.13)
+					values[i] = random.nextBoolean() ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+			}
+			int from = length == 0 ? 0 : random.nextInt(length);
+			int to = from + random.nextInt(length - from + 1);
+			double[] part = Arrays.copyOfRange(values, from, to);
+			double[] numbers = withoutNaN(part);
+
+			if (numbers.length == 0) {
+				check(StatKernels.min(values, from, to) == Double.POSITIVE_INFINITY, "min of no value", t);
+				check(StatKernels.max(values, from, to) == Double.NEGATIVE_INFINITY, "max of no value", t);
+			} else {
+				check(StatKernels.min(values, from, to) == StatUtils.min(values, from, to - from), "min", t);
+				check(StatKernels.max(values, from, to) == StatUtils.max(values, from, to - from), "max", t);
+			}
+			check(StatKernels.count(values, from, to) == numbers.length, "count", t);
+			double sum = StatUtils.sum(numbers);
+			double kernel = StatKernels.sum(values, from, to);
+			// Other order of the additions : error relative to the sum of the
+			// absolute values
+			double absolute = 0;
+			for (double value : numbers)
+				absolute += Math.abs(value);
+			check(Double.isNaN(sum) ? Double.isNaN(kernel) : kernel == sum || Math.abs(kernel - sum) <= 1e-14 * absolute,
+					"sum " + kernel + " for " + sum, t);
+			boolean nan = false;
+			for (double value : values)
+				nan |= Double.isNaN(value);
+			check(!nan || Double.isNaN(StatKernels.meanVariance(values)[0]), "NaN mean", t);
+
+			// Finite range, bounds and quantization
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			for (double value : values)
+				if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+			double[] range = StatKernels.finiteRange(values);
+			check(min > max ? range[0] == 0 && range[1] == 0 : range[0] == min && range[1] == max, "finite range", t);
+			check(StatKernels.finiteRange(new double[][] { part, values })[0] == range[0], "finite range of rows", t);
+			if (min <= max) {
+				check(StatKernels.within(values, 0, length, min, max), "within", t);
+				check(min == max || !StatKernels.within(values, 0, length, min, (min + max) / 2), "out of bounds", t);
+
+				int bits = random.nextBoolean() ? 8 : 16;
+				int levels = bits == 8 ? 255 : 65535;
+				double step = (max - min) / (levels - 1);
+				byte[] bytes = StatKernels.quantize(values, min, max, step, bits);
+				for (int i = 0; i < length; i++) {
+					int index = bits == 8 ? bytes[i] & 0xFF : (bytes[2 * i] & 0xFF) | (bytes[2 * i + 1] & 0xFF) << 8;
+					int expected = Double.isNaN(values[i]) ? levels
+							: step == 0 ? 0 : (int) Math.round((Math.min(max, Math.max(min, values[i])) - min) / step);
+					check(index == expected, "index " + index + " for " + expected, t);
+				}
+			}
+			arrays++;
+		}
+
+		System.out.println("StatKernels : " + arrays + " arrays OK");
+		System.out.println("  largest relative error of the mean     : StatKernels " + worst[0] + ", StatUtils "
+				+ worst[2]);
+		System.out.println("  largest relative error of the variance : StatKernels " + worst[1] + ", StatUtils "
+				+ worst[3]);
+	}
+
+	// Mean and population variance computed on the exact values
+	private static double[] exact(double[] values) {
+		MathContext context = MathContext.DECIMAL128;
+		BigDecimal count = BigDecimal.valueOf(values.length);
+		BigDecimal sum = BigDecimal.ZERO;
+		for (double value : values)
+			sum = sum.add(new BigDecimal(value));
+		BigDecimal mean = sum.divide(count, context);
+		BigDecimal squares = BigDecimal.ZERO;
+		for (double value : values) {
+			BigDecimal deviation = new BigDecimal(value).subtract(mean);
+			squares = squares.add(deviation.multiply(deviation, context), context);
+		}
+		return new double[] { mean.doubleValue(), squares.divide(count, context).doubleValue() };
+	}
+
+	private static double[] withoutNaN(double[] values) {
+		double[] numbers = new double[values.length];
+		int count = 0;
+		for (double value : values)
+			if (!Double.isNaN(value))
+				numbers[count++] = value;
+		return Arrays.copyOf(numbers, count);
+	}
+
+	private static void check(boolean condition, String message, int array) {
+		if (!condition)
+			throw new IllegalStateException("Array " + array + " : " + message);
+	}
+}
@@ -1,6 +1,5 @@
 package plotly.blank;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -12,7 +11,6 @@ import org.eclipse.rap.json.JsonArray;
 import org.eclipse.rap.json.JsonObject;
 import org.eclipse.rap.json.JsonValue;
 import org.eclipse.rap.rwt.RWT;
-import org.eclipse.rap.rwt.client.service.ClientFileLoader;
 import org.eclipse.rap.rwt.remote.AbstractOperationHandler;
 import org.eclipse.rap.rwt.remote.RemoteObject;
 import org.eclipse.rap.rwt.widgets.WidgetUtil;
@@ -23,6 +21,10 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 
+import plotly.encoding.BlockCache;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
 /**
  * Invoke this class to build a personalised chart. <br>
  * Call PlotlyBlank(Composite parent, int style, String traces, String layout,
@@ -59,7 +61,7 @@ public class PlotlyBlank extends Composite {
 	private static final long serialVersionUID = 4173410556573336700L;
 	private final RemoteObject remoteObject;
 
-	private static Map<String, List<String>> selectedMap;
+	private Map<String, List<String>> selectedMap;
 
 	/**
 	 * Create the composite.</br>
@@ -76,14 +78,14 @@ public class PlotlyBlank extends Composite {
 	public PlotlyBlank(Composite parent, int style, String traces, String layout, String options) {
 		super(parent, style);
 
-		selectedMap = null;
-
-		ClientFileLoader loader = RWT.getClient().getService(ClientFileLoader.class);
-		loader.requireJs("js"+File.separator+"d3.min.js");
-		loader.requireJs("js"+File.separator+"plotly.js");
-		loader.requireJs("js"+File.separator+"plotlyBlank.js");
+		// Traces are unknown : full bundle, d3 kept for the user's own scripts
+		PlotlyResources.requireJs("d3.min.js");
+		PlotlyResources.requirePlotly();
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlyBlank.js");
 		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlyGraphBlank");
 		remoteObject.set("parent", WidgetUtil.getId(this));
+		PlotlyMetrics.chartCreated(this);
 
 		buildBlank(traces, layout, options);
 
@@ -93,6 +95,8 @@ public class PlotlyBlank extends Composite {
 			@Override
 			public void widgetDisposed(DisposeEvent arg0) {
 				remoteObject.destroy();
+				selectedMap = null;
+				PlotlyMetrics.chartDisposed(PlotlyBlank.this);
 			}
 		});
 
@@ -117,6 +121,9 @@ public class PlotlyBlank extends Composite {
 						System.out.println(properties.get("selected"));
 					}
 
+					if (properties.get("cachedBlocks") != null)
+						BlockCache.getInstance().remember(properties.get("cachedBlocks").asArray());
+
 					if (properties.get("ans") != null) {
 
 						JsonValue arrayValue = properties.get("ans");
@@ -183,6 +190,17 @@ public class PlotlyBlank extends Composite {
 		buildBlank(traces, layout, options);
 	}
 
+	/**
+	 * To free the graph of the chart when it stays hidden (hidden tab, scrolled
+	 * out of view). The chart is drawn again when it becomes visible.<br>
+	 * 
+	 * @param millis int - Hidden time before the graph is freed, 0 to never free
+	 *               it (default)
+	 */
+	public void setReleaseHidden(int millis) {
+		remoteObject.set("releaseHidden", millis);
+	}
+
 	@Override
 	protected void checkSubclass() {
 		// Disable the check that prevents subclassing of SWT components
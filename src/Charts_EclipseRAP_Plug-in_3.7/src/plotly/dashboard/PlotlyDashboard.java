@@ -0,0 +1,432 @@
+package plotly.dashboard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONObject;
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.json.JsonValue;
+import org.eclipse.rap.rwt.RWT;
+import org.eclipse.rap.rwt.remote.AbstractOperationHandler;
+import org.eclipse.rap.rwt.remote.RemoteObject;
+import org.eclipse.rap.rwt.widgets.WidgetUtil;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+import plotly.encoding.BlockCache;
+import plotly.encoding.DataBlock;
+import plotly.encoding.ParallelEncoding;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
+/**
+ * Invoke this class to host many charts behind one remote object. <br>
+ * Every chart is identified by an id and written as a PlotlyBlank chart
+ * (traces, layout, options). The charts are laid out in a grid of the given
+ * number of columns and drawn by one client render loop. Updating a chart only
+ * sends this chart, and setData only sends one array of one trace.<br>
+ * The selection events of the charts are routed to the Selection listeners of
+ * the dashboard : event.text is the id of the chart.<br>
+ * <br>
+ * Exemple:<br>
+ * PlotlyDashboard pd = new PlotlyDashboard(HomeComposite, SWT.NONE, 3);<br>
+ * pd.addChart("temperature", "[{ type: 'scatter', mode: 'lines' }]", "{ title:
+ * 'Temperature' }", null);<br>
+ * pd.setData("temperature", 0, "x", times);<br>
+ * pd.setData("temperature", 0, "y", temperatures);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class PlotlyDashboard extends Composite {
+
+	private static final long serialVersionUID = 4173410556573336700L;
+	private final RemoteObject remoteObject;
+
+	// Charts by id : traces, layout and options without the numeric arrays
+	private final Map<String, JsonObject> specs = new LinkedHashMap<String, JsonObject>();
+	// Numeric arrays by chart id, then by "trace:key"
+	private final Map<String, Map<String, DataBlock>> blocks = new HashMap<String, Map<String, DataBlock>>();
+
+	private final Map<String, Map<String, List<String>>> selectedMaps = new HashMap<String, Map<String, List<String>>>();
+
+	/**
+	 * Create the composite.</br>
+	 *
+	 *
+	 * @param parent  A widget which will be the parent of the new instance (cannot
+	 *                be null)
+	 * @param style   The style of widget to construct
+	 * @param columns int - Number of columns of the grid
+	 */
+	public PlotlyDashboard(Composite parent, int style, int columns) {
+		super(parent, style);
+
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlyDashboard.js");
+		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlyDashboard");
+		remoteObject.set("parent", WidgetUtil.getId(this));
+		remoteObject.set("columns", columns);
+		PlotlyMetrics.chartCreated(this);
+
+		this.addDisposeListener(new DisposeListener() {
+			private static final long serialVersionUID = 7780300831817645309L;
+
+			@Override
+			public void widgetDisposed(DisposeEvent arg0) {
+				remoteObject.destroy();
+				specs.clear();
+				blocks.clear();
+				selectedMaps.clear();
+				PlotlyMetrics.chartDisposed(PlotlyDashboard.this);
+			}
+		});
+
+		remoteObject.setHandler(new AbstractOperationHandler() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void handleNotify(String eventName, JsonObject data) {
+				String id = data.get("chart").asString();
+
+				if ("Selection".equals(eventName)) {
+					select(id, data.get("selectedPoints").asArray());
+
+					Event event = new Event();
+					event.text = id;
+					event.data = data;
+					notifyListeners(SWT.Selection, event);
+				}
+
+				if ("BlockMiss".equals(eventName)) {
+					BlockCache.getInstance().forget(data.get("hashes").asArray());
+					if (specs.containsKey(id))
+						sendChart(id);
+				}
+			}
+
+			public void handleSet(JsonObject properties) {
+				if (properties != null && properties.get("cachedBlocks") != null)
+					BlockCache.getInstance().remember(properties.get("cachedBlocks").asArray());
+			}
+		});
+		remoteObject.listen("BlockMiss", true);
+
+	}
+
+	@Override
+	public void addListener(int eventType, Listener listener) {
+		boolean wasListening = isListening(SWT.Selection);
+		super.addListener(eventType, listener);
+		if (!wasListening)
+			remoteObject.listen("Selection", true);
+
+	}
+
+	@Override
+	public void removeListener(int eventType, Listener listener) {
+		boolean wasListening = isListening(SWT.Selection);
+		super.removeListener(eventType, listener);
+		if (wasListening && !isListening(SWT.Selection)) {
+			remoteObject.listen("Selection", false);
+		}
+	}
+
+	/**
+	 * To add a chart at the end of the grid.<br>
+	 * Traces, layout and options are written as for PlotlyBlank.
+	 *
+	 * @param id      String - Id of the chart
+	 * @param traces  String - Chart's traces
+	 * @param layout  String - Chart's layout (can be null)
+	 * @param options String - Chart's options (can be null)
+	 */
+	public void addChart(String id, String traces, String layout, String options) {
+
+		checkDisposed();
+		if (specs.containsKey(id))
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " chart " + id + " already exists");
+
+		specs.put(id, buildSpec(traces, layout, options));
+		blocks.put(id, new HashMap<String, DataBlock>());
+		sendChart(id);
+	}
+
+	/**
+	 * To add charts at the end of the grid, in the given order.<br>
+	 * The specs are parsed in parallel when they are long enough
+	 * (ParallelEncoding), then sent one after another.
+	 *
+	 * @param ids     String[] - Ids of the charts
+	 * @param traces  String[] - Traces of each chart
+	 * @param layouts String[] - Layout of each chart (can be null, or hold
+	 *                null)
+	 * @param options String[] - Options of each chart (can be null, or hold
+	 *                null)
+	 */
+	public void addCharts(final String[] ids, final String[] traces, final String[] layouts,
+			final String[] options) {
+
+		checkDisposed();
+		if (traces.length != ids.length || (layouts != null && layouts.length != ids.length)
+				|| (options != null && options.length != ids.length))
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " one traces, layout and options by chart");
+
+		Set<String> added = new HashSet<String>();
+		long characters = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (specs.containsKey(ids[i]) || !added.add(ids[i]))
+				SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " chart " + ids[i] + " already exists");
+			characters += traces[i].length();
+		}
+
+		final JsonObject[] parsed = new JsonObject[ids.length];
+		ParallelEncoding.run(ids.length, characters, new ParallelEncoding.Task() {
+			@Override
+			public void run(int index) {
+				parsed[index] = parseSpec(traces[index], layouts == null ? null : layouts[index],
+						options == null ? null : options[index]);
+			}
+		});
+
+		for (int i = 0; i < ids.length; i++) {
+			specs.put(ids[i], requireTypes(parsed[i]));
+			blocks.put(ids[i], new HashMap<String, DataBlock>());
+			sendChart(ids[i]);
+		}
+	}
+
+	/**
+	 * Update a chart : only this chart is sent to the client.<br>
+	 * The arrays given by setData are dropped.
+	 *
+	 * @param id      String - Id of the chart
+	 * @param traces  String - Chart's traces
+	 * @param layout  String - Chart's layout (can be null)
+	 * @param options String - Chart's options (can be null)
+	 */
+	public void updateChart(String id, String traces, String layout, String options) {
+
+		checkChart(id);
+
+		specs.put(id, buildSpec(traces, layout, options));
+		blocks.get(id).clear();
+		sendChart(id);
+	}
+
+	/**
+	 * Update one array of one trace of a chart (ex : "x", "y", "z"). <br>
+	 * Only this array is sent to the client.
+	 *
+	 * @param id     String - Id of the chart
+	 * @param trace  int - Index of the trace
+	 * @param key    String - Key of the array in the trace
+	 * @param values double[]
+	 */
+	public void setData(String id, int trace, String key, double[] values) {
+		setData(id, trace, key, DataBlock.of(values));
+	}
+
+	/**
+	 * Update one matrix of one trace of a chart (ex : "z" of a heatmap). <br>
+	 * Only this matrix is sent to the client.
+	 *
+	 * @param id     String - Id of the chart
+	 * @param trace  int - Index of the trace
+	 * @param key    String - Key of the matrix in the trace
+	 * @param values double[][] - Rows must have the same length
+	 */
+	public void setData(String id, int trace, String key, double[][] values) {
+
+		DataBlock block = DataBlock.of(values);
+		if (block == null)
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " ragged matrix");
+
+		setData(id, trace, key, block);
+	}
+
+	/**
+	 * To remove a chart, the next charts move up in the grid.
+	 *
+	 * @param id String - Id of the chart
+	 */
+	public void removeChart(String id) {
+
+		checkChart(id);
+
+		specs.remove(id);
+		blocks.remove(id);
+		selectedMaps.remove(id);
+
+		JsonObject properties = new JsonObject().add("chart", id);
+		remoteObject.call("removeChart", properties);
+	}
+
+	/**
+	 * @return List&ltString&gt - Ids of the charts, in the grid order
+	 */
+	public List<String> getChartIds() {
+		checkDisposed();
+		return new ArrayList<String>(specs.keySet());
+	}
+
+	/**
+	 * To update the number of columns of the grid.
+	 *
+	 * @param columns int - Number of columns
+	 */
+	public void upColumns(int columns) {
+		checkDisposed();
+		remoteObject.set("columns", columns);
+	}
+
+	/**
+	 * To free the graph of the charts which stay hidden (hidden tab, scrolled out
+	 * of view). A chart is drawn again when it becomes visible.<br>
+	 *
+	 * @param millis int - Hidden time before the graph is freed, 0 to never free
+	 *               it (default)
+	 */
+	public void setReleaseHidden(int millis) {
+		checkDisposed();
+		remoteObject.set("releaseHidden", millis);
+	}
+
+	@Override
+	protected void checkSubclass() {
+		// Disable the check that prevents subclassing of SWT components
+	}
+
+	/**
+	 * Return the data selected in a chart.<br>
+	 *
+	 * @param id String - Id of the chart
+	 * @return Map&ltString, List&ltString&gt&gt - Map of selected data (null if
+	 *         nothing is selected).<br>
+	 *         <br>
+	 *         Keys : <br>
+	 *         <ul>
+	 *         <li>"curveNumber" : index in data of the trace associated with the
+	 *         selected points</li>
+	 *         <li>"pointNumber" : index of the selected points</li>
+	 *         <li>"x" : x values</li>
+	 *         <li>"y" : y values</li>
+	 *         </ul>
+	 */
+	public Map<String, List<String>> getSelectedDatas(String id) {
+
+		checkDisposed();
+		return selectedMaps.get(id);
+	}
+
+	private void checkDisposed() {
+		if (isDisposed())
+			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
+	}
+
+	private void checkChart(String id) {
+		checkDisposed();
+		if (!specs.containsKey(id))
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " unknown chart " + id);
+	}
+
+	private JsonObject buildSpec(String traces, String layout, String options) {
+		return requireTypes(parseSpec(traces, layout, options));
+	}
+
+	// Json of the chart, without the UI session : can run on any thread
+	private static JsonObject parseSpec(String traces, String layout, String options) {
+
+		String js = "{ inputs : " + traces;
+
+		if (layout != null)
+			js += ", layout : " + layout;
+		if (options != null)
+			js += ", options : " + options;
+		js += "}";
+
+		return JsonObject.readFrom(new JSONObject(js).toString());
+	}
+
+	private JsonObject requireTypes(JsonObject spec) {
+
+		// Plotly bundle of the trace types of the chart ("scatter" by default)
+		Set<String> types = new HashSet<String>();
+		JsonArray inputs = spec.get("inputs").asArray();
+		for (int i = 0; i < inputs.size(); i++) {
+			JsonValue type = inputs.get(i).asObject().get("type");
+			types.add(type != null && type.isString() ? type.asString() : "scatter");
+		}
+		PlotlyResources.requirePlotly(types.toArray(new String[types.size()]));
+
+		return spec;
+	}
+
+	private void setData(String id, int trace, String key, DataBlock block) {
+
+		checkChart(id);
+
+		if (trace < 0 || trace >= specs.get(id).get("inputs").asArray().size())
+			SWT.error(SWT.ERROR_INVALID_RANGE);
+
+		blocks.get(id).put(trace + ":" + key, block);
+
+		JsonObject properties = new JsonObject().add("chart", id).add("trace", trace).add("key", key).add("value",
+				BlockCache.getInstance().encode(block));
+		remoteObject.call("setData", properties);
+	}
+
+	// Whole chart : traces, layout, options and arrays
+	private void sendChart(String id) {
+
+		JsonObject spec = JsonObject.readFrom(specs.get(id).toString());
+
+		BlockCache cache = BlockCache.getInstance();
+		JsonArray inputs = spec.get("inputs").asArray();
+		for (Map.Entry<String, DataBlock> entry : blocks.get(id).entrySet()) {
+			String[] place = entry.getKey().split(":", 2);
+			inputs.get(Integer.parseInt(place[0])).asObject().set(place[1], cache.encode(entry.getValue()));
+		}
+
+		JsonObject properties = new JsonObject().add("chart", id).add("spec", spec);
+		remoteObject.call("setChart", properties);
+	}
+
+	private void select(String id, JsonArray arr) {
+
+		List<String> curveNumberList = new ArrayList<String>();
+		List<String> pointNumberList = new ArrayList<String>();
+		List<String> xList = new ArrayList<String>();
+		List<String> yList = new ArrayList<String>();
+
+		for (int i = 0; i < arr.size(); i++) {
+
+			JsonObject obj = arr.get(i).asObject();
+
+			curveNumberList.add(String.valueOf(obj.get("curveNumber")));
+			pointNumberList.add(String.valueOf(obj.get("pointNumber")));
+			xList.add(String.valueOf(obj.get("x")));
+			yList.add(String.valueOf(obj.get("y")));
+		}
+
+		Map<String, List<String>> selectedMap = new HashMap<>();
+
+		selectedMap.put("curveNumber", curveNumberList);
+		selectedMap.put("pointNumber", pointNumberList);
+		selectedMap.put("x", xList);
+		selectedMap.put("y", yList);
+
+		selectedMaps.put(id, selectedMap);
+	}
+}
@@ -0,0 +1,111 @@
+package plotly.encoding;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.rwt.RWT;
+import org.eclipse.rap.rwt.service.UISession;
+
+/**
+ * Server side view of the blocks held by the browser. <br>
+ * One cache per UISession : every block sent with its data is remembered, so a
+ * chart which sends the same data again (tab switching, dashboard re-opened)
+ * only sends the hash of the block.<br>
+ * The browser keeps a bounded cache (in memory, and in IndexedDB if
+ * persistent). When a remembered block was evicted by the browser, the chart
+ * receives a "BlockMiss" event, forgets the hashes and sends its data again.
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class BlockCache {
+
+	// Under this number of values, data are sent as text
+	public static final int MIN_VALUES = 64;
+
+	// Same bound as PlotlyUtils.blocks.maxBlocks (plotlyUtils.js)
+	private static final int CAPACITY = 256;
+
+	private static final String attribute = BlockCache.class.getName();
+
+	private final Map<String, Boolean> known = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	private boolean persistent = false;
+
+	/**
+	 * Return the cache of the current UISession.
+	 *
+	 * @return BlockCache
+	 */
+	public static BlockCache getInstance() {
+
+		UISession session = RWT.getUISession();
+
+		synchronized (session) {
+			BlockCache cache = (BlockCache) session.getAttribute(attribute);
+			if (cache == null) {
+				cache = new BlockCache();
+				session.setAttribute(attribute, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * To keep blocks in the browser IndexedDB, so they survive a page reload.
+	 *
+	 * @param persist boolean
+	 */
+	public synchronized void setPersistent(boolean persist) {
+		persistent = persist;
+	}
+
+	/**
+	 * Json form of the block : only the hash if the client already holds it.
+	 *
+	 * @param block DataBlock
+	 * @return JsonObject
+	 */
+	public synchronized JsonObject encode(DataBlock block) {
+
+		String hash = block.getHash();
+
+		if (known.get(hash) != null)
+			return block.toJson(false);
+
+		known.put(hash, Boolean.TRUE);
+		JsonObject json = block.toJson(true);
+		if (persistent)
+			json.add("persist", true);
+		return json;
+	}
+
+	/**
+	 * Blocks reported by the client (read back from its IndexedDB).
+	 *
+	 * @param hashes JsonArray - Array of hashes
+	 */
+	public synchronized void remember(JsonArray hashes) {
+		for (int i = 0; i < hashes.size(); i++)
+			known.put(hashes.get(i).asString(), Boolean.TRUE);
+	}
+
+	/**
+	 * Blocks the client does not hold anymore.
+	 *
+	 * @param hashes JsonArray - Array of hashes
+	 */
+	public synchronized void forget(JsonArray hashes) {
+		for (int i = 0; i < hashes.size(); i++)
+			known.remove(hashes.get(i).asString());
+	}
+}
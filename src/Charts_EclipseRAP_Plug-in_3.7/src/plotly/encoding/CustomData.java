@@ -0,0 +1,98 @@
+package plotly.encoding;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Columns of values attached to the points of a trace (customdata), read by
+ * the hover templates. <br>
+ * Numeric columns are kept as blocks, text columns as instances of the chart
+ * dictionary : the texts of the hover labels are formatted by the browser
+ * (PlotlyUtils.hover, plotlyUtils.js) instead of one String by point.<br>
+ * <br>
+ * Exemple:<br>
+ * CustomData data = CustomData.of(new String[][] { units, prices },
+ * dictionary);<br>
+ * trace.set("customdata", data.toJson(BlockCache.getInstance(),
+ * dictionary));<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class CustomData {
+
+	// Column i is numbers[i] or texts[i]
+	private final DataBlock[] numbers;
+	private final String[][] texts;
+
+	private CustomData(DataBlock[] numbers, String[][] texts) {
+		this.numbers = numbers;
+		this.texts = texts;
+	}
+
+	/**
+	 * Columns given as text : numeric columns are parsed, the others are kept
+	 * as instances of the dictionary.
+	 *
+	 * @param columns    String[][] - [column][point]
+	 * @param dictionary StringDictionary - Dictionary of the chart
+	 * @return CustomData
+	 */
+	public static CustomData of(String[][] columns, StringDictionary dictionary) {
+		DataBlock[] numbers = new DataBlock[columns.length];
+		String[][] texts = new String[columns.length][];
+		for (int i = 0; i < columns.length; i++) {
+			numbers[i] = DataBlock.parse(columns[i]);
+			if (numbers[i] == null)
+				texts[i] = dictionary.intern(columns[i].clone());
+		}
+		return new CustomData(numbers, texts);
+	}
+
+	/**
+	 * Numeric columns.
+	 *
+	 * @param columns double[][] - [column][point]
+	 * @return CustomData
+	 */
+	public static CustomData of(double[][] columns) {
+		DataBlock[] numbers = new DataBlock[columns.length];
+		for (int i = 0; i < columns.length; i++)
+			numbers[i] = DataBlock.of(columns[i]);
+		return new CustomData(numbers, new String[columns.length][]);
+	}
+
+	/**
+	 * @return int - Number of columns
+	 */
+	public int getColumns() {
+		return numbers.length;
+	}
+
+	/**
+	 * Json form read by PlotlyUtils.hover.<br>
+	 * { columns : [ block or [numbers] or { codes }, ... ] }
+	 *
+	 * @param cache      BlockCache
+	 * @param dictionary StringDictionary - Dictionary sent with the chart
+	 * @return JsonObject
+	 */
+	public JsonObject toJson(BlockCache cache, StringDictionary dictionary) {
+		JsonArray columns = new JsonArray();
+		for (int i = 0; i < numbers.length; i++) {
+			if (texts[i] != null)
+				columns.add(dictionary.column(texts[i]));
+			else if (numbers[i].length() >= BlockCache.MIN_VALUES)
+				columns.add(cache.encode(numbers[i]));
+			else {
+				JsonArray values = new JsonArray();
+				for (double value : numbers[i].toArray())
+					values.add(Double.isNaN(value) || Double.isInfinite(value) ? JsonValue.NULL
+							: JsonValue.valueOf(value));
+				columns.add(values);
+			}
+		}
+		return new JsonObject().add("columns", columns);
+	}
+}
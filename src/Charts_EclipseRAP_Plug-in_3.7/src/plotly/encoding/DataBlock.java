@@ -0,0 +1,324 @@
+package plotly.encoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+
+/**
+ * Numeric block of a chart, sent to the client as a little-endian typed array.
+ * <br>
+ * A block is identified by the hash of its content : when the client already
+ * holds a block, only this hash is sent (see BlockCache).<br>
+ * <br>
+ * Exemple:<br>
+ * DataBlock block = DataBlock.of(new double[][] { { 1, 2 }, { 3, 4 } });<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class DataBlock {
+
+	// Types known by PlotlyUtils.blocks (plotlyUtils.js)
+	public static final String FLOAT64 = "f8";
+	public static final String FLOAT32 = "f4";
+	public static final String UINT8 = "u1";
+	public static final String UINT16 = "u2";
+	public static final String INT32 = "i4";
+
+	private final String dtype;
+	private final int[] shape;
+	private final byte[] bytes;
+	private String hash;
+
+	// Quantized block : value = offset + index * scale, last index for NaN
+	private double offset;
+	private double scale;
+
+	private DataBlock(String dtype, int[] shape, byte[] bytes) {
+		this.dtype = dtype;
+		this.shape = shape;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Block of a one dimension array.
+	 *
+	 * @param values double[]
+	 * @return DataBlock
+	 */
+	public static DataBlock of(double[] values) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asDoubleBuffer().put(values);
+
+		return new DataBlock(FLOAT64, new int[] { values.length }, buffer.array());
+	}
+
+	/**
+	 * Single precision block of a one dimension array : half the size, for values
+	 * which are only drawn (sparklines).
+	 *
+	 * @param values double[]
+	 * @return DataBlock
+	 */
+	public static DataBlock ofFloat(double[] values) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < values.length; i++)
+			buffer.putFloat((float) values[i]);
+
+		return new DataBlock(FLOAT32, new int[] { values.length }, buffer.array());
+	}
+
+	/**
+	 * Block of integers (indexes of a SparseMatrix).
+	 *
+	 * @param values int[]
+	 * @return DataBlock
+	 */
+	public static DataBlock ofInt(int[] values) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asIntBuffer().put(values);
+
+		return new DataBlock(INT32, new int[] { values.length }, buffer.array());
+	}
+
+	/**
+	 * Block of a matrix.
+	 *
+	 * @param values double[][] - Rows must have the same length
+	 * @return DataBlock - null if the matrix is ragged
+	 */
+	public static DataBlock of(double[][] values) {
+
+		int columns = values.length == 0 ? 0 : values[0].length;
+		for (int i = 0; i < values.length; i++)
+			if (values[i] == null || values[i].length != columns)
+				return null;
+
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * columns * 8).order(ByteOrder.LITTLE_ENDIAN);
+		DoubleBuffer rows = buffer.asDoubleBuffer();
+		for (int i = 0; i < values.length; i++)
+			rows.put(values[i]);
+
+		return new DataBlock(FLOAT64, new int[] { values.length, columns }, buffer.array());
+	}
+
+	/**
+	 * Block of a column of the fast charts (values can be quoted : "'12.5'").
+	 *
+	 * @param values String[]
+	 * @return DataBlock - null if a value is not a number
+	 */
+	public static DataBlock parse(String[] values) {
+
+		double[] numbers = new double[values.length];
+
+		for (int i = 0; i < values.length; i++) {
+			String value = values[i];
+			if (value == null)
+				return null;
+			if (value.length() > 1 && value.startsWith("'") && value.endsWith("'"))
+				value = value.substring(1, value.length() - 1);
+			numbers[i] = toNumber(value);
+			if (Double.isNaN(numbers[i]))
+				return null;
+		}
+
+		return of(numbers);
+	}
+
+	/**
+	 * Number of a value of the fast charts columns.
+	 *
+	 * @param value String
+	 * @return double - NaN if the value is not a decimal number (labels, "NaN",
+	 *         but also "0x1A" or "10L", which NumberUtils.isCreatable accepts)
+	 */
+	public static double toNumber(String value) {
+		if (!NumberUtils.isCreatable(value))
+			return Double.NaN;
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Block of the same shape holding 8 or 16 bits indexes between the smallest
+	 * and the largest finite values : 8 (or 4) times smaller than a FLOAT64
+	 * (FLOAT32) block, for values which are shown as colors. The client reads
+	 * back offset + index * scale, the error is at most getError().<br>
+	 * Infinite values are clamped to the bounds, NaN is kept.
+	 *
+	 * @param bits int - 8 (255 levels) or 16 (65535 levels)
+	 * @return DataBlock - this block if it is already quantized or holds
+	 *         integers
+	 */
+	public DataBlock quantize(int bits) {
+
+		if (!FLOAT64.equals(dtype) && !FLOAT32.equals(dtype))
+			return quantize(bits, 0, 0);
+
+		double[] range = StatKernels.finiteRange(toArray());
+		return quantize(bits, range[0], range[1]);
+	}
+
+	/**
+	 * Block of 8 or 16 bits indexes between given bounds : the parts of a chart
+	 * (chunks, tiles, patches) quantized with the range of the whole chart share
+	 * the same levels, and the same error.<br>
+	 * Values out of the bounds are clamped, NaN is kept.
+	 *
+	 * @param bits int - 8 (255 levels) or 16 (65535 levels)
+	 * @param min  double - Value of the first index
+	 * @param max  double - Value of the last index
+	 * @return DataBlock - this block if it is already quantized or holds
+	 *         integers
+	 */
+	public DataBlock quantize(int bits, double min, double max) {
+
+		if (bits != 8 && bits != 16)
+			throw new IllegalArgumentException("Quantization on 8 or 16 bits only : " + bits);
+		if (!FLOAT64.equals(dtype) && !FLOAT32.equals(dtype))
+			return this;
+
+		double[] values = toArray();
+
+		// Indexes 0 to levels - 1 are values, levels is NaN
+		int levels = bits == 8 ? 255 : 65535;
+		double scale = (max - min) / (levels - 1);
+
+		DataBlock block = new DataBlock(bits == 8 ? UINT8 : UINT16, shape,
+				StatKernels.quantize(values, min, max, scale, bits));
+		block.offset = min;
+		block.scale = scale;
+		return block;
+	}
+
+	/**
+	 * @return double - Largest difference between a value and the value read
+	 *         back by the client : half a level for a quantized block, 0
+	 *         otherwise
+	 */
+	public double getError() {
+		return scale / 2;
+	}
+
+	/**
+	 * Values of the block, rows after rows.
+	 *
+	 * @return double[]
+	 */
+	public double[] toArray() {
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		double[] values = new double[length()];
+
+		if (FLOAT32.equals(dtype)) {
+			for (int i = 0; i < values.length; i++)
+				values[i] = buffer.getFloat();
+		} else if (INT32.equals(dtype)) {
+			for (int i = 0; i < values.length; i++)
+				values[i] = buffer.getInt();
+		} else if (UINT8.equals(dtype)) {
+			for (int i = 0; i < values.length; i++) {
+				int index = buffer.get() & 0xFF;
+				values[i] = index == 255 ? Double.NaN : offset + index * scale;
+			}
+		} else if (UINT16.equals(dtype)) {
+			for (int i = 0; i < values.length; i++) {
+				int index = buffer.getShort() & 0xFFFF;
+				values[i] = index == 65535 ? Double.NaN : offset + index * scale;
+			}
+		} else {
+			buffer.asDoubleBuffer().get(values);
+		}
+		return values;
+	}
+
+	/**
+	 * @return int - Number of values of the block
+	 */
+	public int length() {
+		int length = 1;
+		for (int i = 0; i < shape.length; i++)
+			length *= shape[i];
+		return length;
+	}
+
+	/**
+	 * @return String - Hash of the block (type, shape and content)
+	 */
+	public String getHash() {
+
+		if (hash == null) {
+			try {
+				MessageDigest digest = MessageDigest.getInstance("SHA-1");
+				digest.update(dtype.getBytes());
+				for (int i = 0; i < shape.length; i++)
+					digest.update(ByteBuffer.allocate(4).putInt(shape[i]).array());
+				digest.update(bytes);
+				if (scale != 0 || offset != 0)
+					digest.update(ByteBuffer.allocate(16).putDouble(offset).putDouble(scale).array());
+
+				StringBuilder str = new StringBuilder();
+				for (byte b : digest.digest())
+					str.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+				hash = str.toString();
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Json form of the block read by PlotlyUtils.blocks.<br>
+	 * { block : hash, dtype : 'f8', 'f4', 'u1', 'u2' or 'i4', shape : [rows, columns],
+	 * data : base64 } and { offset, scale } for a quantized block
+	 *
+	 * @param withData boolean - false to send only the hash
+	 * @return JsonObject
+	 */
+	public JsonObject toJson(boolean withData) {
+
+		JsonObject json = new JsonObject().add("block", getHash());
+
+		if (withData)
+			addData(json);
+		return json;
+	}
+
+	/**
+	 * Json form of a block sent outside the BlockCache : no hash is computed.
+	 * <br>
+	 * { dtype, shape, data } and { offset, scale } for a quantized block
+	 *
+	 * @return JsonObject
+	 */
+	public JsonObject toDataJson() {
+		return addData(new JsonObject());
+	}
+
+	private JsonObject addData(JsonObject json) {
+
+		JsonArray dims = new JsonArray();
+		for (int i = 0; i < shape.length; i++)
+			dims.add(shape[i]);
+
+		json.add("dtype", dtype).add("shape", dims).add("data", Base64.getEncoder().encodeToString(bytes));
+		if (UINT8.equals(dtype) || UINT16.equals(dtype))
+			json.add("offset", offset).add("scale", scale);
+		return json;
+	}
+}
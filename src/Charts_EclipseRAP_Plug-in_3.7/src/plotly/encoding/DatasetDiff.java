@@ -0,0 +1,343 @@
+package plotly.encoding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Changes between the dataset sent to a chart and a new one. <br>
+ * Each column of each trace is compared with the one sent : unchanged, values
+ * appended, a changed range, or a sliding window (values dropped at the start
+ * and appended at the end). The changes are sent as splices applied by
+ * plotlyFast.js ("update" method). When they would hold more than half of the
+ * values, null is returned and the chart is sent whole.<br>
+ * Columns sent as grids (UniformGrid) are not spliced : their new start and
+ * step are sent.<br>
+ * Matrices are compared by rows, through a hash kept for each row.
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class DatasetDiff {
+
+	// Candidates checked for a sliding window
+	private static final int SHIFTS = 4;
+
+	private DatasetDiff() {
+	}
+
+	// Value i of the sent column is value j of the new one
+	private interface Same {
+		boolean at(int i, int j);
+	}
+
+	/**
+	 * Changes of the columns of the fast charts (x and y of each trace, values
+	 * can be quoted : "'12.5'").
+	 *
+	 * @param sent  String[][][] - Dataset sent : [ [ [x], [y] ], ... ]
+	 * @param datas String[][][] - New dataset
+	 * @param keys  String[] - Key of each column ("x", "y")
+	 * @return JsonArray - [ { trace, key, splices : [ { offset, remove, values },
+	 *         ... ] }, ... ], empty if nothing changed, null to send the chart
+	 *         whole
+	 */
+	public static JsonArray columns(String[][][] sent, String[][][] datas, String[] keys) {
+		return columns(sent, datas, keys, null);
+	}
+
+	/**
+	 * Changes of the columns of the fast charts, some of them sent as grids
+	 * (UniformGrid) : the start and the step of a grid column are sent when they
+	 * changed, { trace, key, grid : [start, step] }.
+	 *
+	 * @param sent  String[][][] - Dataset sent : [ [ [x], [y] ], ... ]
+	 * @param datas String[][][] - New dataset
+	 * @param keys  String[] - Key of each column ("x", "y")
+	 * @param grids double[][][] - Grid of each column sent ([trace][column] : {
+	 *              start, step }, null for the columns sent as values), updated
+	 *              to the new dataset
+	 * @return JsonArray - Same form as columns, null to send the chart whole
+	 *         (also when a grid column is no longer evenly spaced)
+	 */
+	public static JsonArray columns(String[][][] sent, String[][][] datas, String[] keys, double[][][] grids) {
+
+		if (sent == null || datas == null || sent.length != datas.length)
+			return null;
+
+		JsonArray operations = new JsonArray();
+		long values = 0;
+		long changed = 0;
+
+		for (int i = 0; i < datas.length; i++) {
+			for (int k = 0; k < keys.length; k++) {
+				final String[] before = sent[i][k];
+				final String[] after = datas[i][k];
+				if (grids != null && grids[i][k] != null) {
+					DataBlock block = DataBlock.parse(after);
+					double[] grid = block == null ? null : UniformGrid.detect(block.toArray(), UniformGrid.TOLERANCE);
+					if (grid == null)
+						return null;
+					if (!Arrays.equals(grid, grids[i][k])) {
+						grids[i][k] = grid;
+						operations.add(new JsonObject().add("trace", i).add("key", keys[k]).add("grid",
+								new JsonArray().add(grid[0]).add(grid[1])));
+					}
+					continue;
+				}
+				values += after.length;
+
+				List<int[]> splices = splices(before.length, after.length, new Same() {
+					@Override
+					public boolean at(int a, int b) {
+						return same(before[a], after[b]);
+					}
+				});
+				if (splices.isEmpty())
+					continue;
+
+				JsonArray json = new JsonArray();
+				for (int[] splice : splices) {
+					changed += splice[3] - splice[2];
+					json.add(new JsonObject().add("offset", splice[0]).add("remove", splice[1]).add("values",
+							values(after, splice[2], splice[3])));
+				}
+				operations.add(new JsonObject().add("trace", i).add("key", keys[k]).add("splices", json));
+			}
+		}
+
+		return changed * 2 > values ? null : operations;
+	}
+
+	/**
+	 * Changes of numeric columns (values of pie traces).
+	 *
+	 * @param sent  double[][] - Columns sent, one by trace
+	 * @param datas double[][] - New columns
+	 * @param key   String - Key of the columns ("values")
+	 * @return JsonArray - Same form as columns, null to send the chart whole
+	 */
+	public static JsonArray numbers(double[][] sent, double[][] datas, String key) {
+
+		if (sent == null || datas == null || sent.length != datas.length)
+			return null;
+
+		JsonArray operations = new JsonArray();
+		long values = 0;
+		long changed = 0;
+
+		for (int i = 0; i < datas.length; i++) {
+			final double[] before = sent[i];
+			final double[] after = datas[i];
+			values += after.length;
+
+			List<int[]> splices = splices(before.length, after.length, new Same() {
+				@Override
+				public boolean at(int a, int b) {
+					return Double.compare(before[a], after[b]) == 0;
+				}
+			});
+			if (splices.isEmpty())
+				continue;
+
+			JsonArray json = new JsonArray();
+			for (int[] splice : splices) {
+				changed += splice[3] - splice[2];
+				double[] part = new double[splice[3] - splice[2]];
+				System.arraycopy(after, splice[2], part, 0, part.length);
+				json.add(new JsonObject().add("offset", splice[0]).add("remove", splice[1]).add("values",
+						numbers(part)));
+			}
+			operations.add(new JsonObject().add("trace", i).add("key", key).add("splices", json));
+		}
+
+		return changed * 2 > values ? null : operations;
+	}
+
+	/**
+	 * Copy of the arrays of a dataset (the values are shared), kept to be
+	 * compared with the next one.
+	 *
+	 * @param datas String[][][]
+	 * @return String[][][]
+	 */
+	public static String[][][] copy(String[][][] datas) {
+		String[][][] copy = new String[datas.length][][];
+		for (int i = 0; i < datas.length; i++) {
+			copy[i] = new String[datas[i].length][];
+			for (int k = 0; k < datas[i].length; k++)
+				copy[i][k] = datas[i][k].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * Copy of numeric columns, kept to be compared with the next ones.
+	 *
+	 * @param datas double[][]
+	 * @return double[][]
+	 */
+	public static double[][] copy(double[][] datas) {
+		double[][] copy = new double[datas.length][];
+		for (int i = 0; i < datas.length; i++)
+			copy[i] = datas[i].clone();
+		return copy;
+	}
+
+	/**
+	 * Hash of each row of a matrix.
+	 *
+	 * @param rows double[][]
+	 * @return long[]
+	 */
+	public static long[] hashes(double[][] rows) {
+		long[] hashes = new long[rows.length];
+		for (int i = 0; i < rows.length; i++)
+			hashes[i] = hash(rows[i]);
+		return hashes;
+	}
+
+	/**
+	 * 64 bits hash of a row (FNV-1a of the bits of the values).
+	 *
+	 * @param row double[]
+	 * @return long
+	 */
+	public static long hash(double[] row) {
+		long hash = 0xcbf29ce484222325L;
+		for (int j = 0; j < row.length; j++) {
+			hash ^= Double.doubleToLongBits(row[j]);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Rows of a matrix changed since their hashes were taken.
+	 *
+	 * @param hashes  long[] - Hashes of the rows sent
+	 * @param columns int - Length of the rows sent
+	 * @param rows    double[][] - New matrix
+	 * @return int[] - Changed rows, null if the shape changed
+	 */
+	public static int[] changedRows(long[] hashes, int columns, double[][] rows) {
+
+		if (hashes == null || rows.length != hashes.length)
+			return null;
+
+		int[] changed = new int[rows.length];
+		int count = 0;
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i] == null || rows[i].length != columns)
+				return null;
+			if (hash(rows[i]) != hashes[i])
+				changed[count++] = i;
+		}
+
+		int[] result = new int[count];
+		System.arraycopy(changed, 0, result, 0, count);
+		return result;
+	}
+
+	// Splices { offset, remove, from, to } turning the sent column into the new
+	// one : values from to to of the new column replace remove values at offset
+	private static List<int[]> splices(int sent, int length, Same same) {
+
+		List<int[]> splices = new ArrayList<int[]>();
+
+		int prefix = 0;
+		int shortest = Math.min(sent, length);
+		while (prefix < shortest && same.at(prefix, prefix))
+			prefix++;
+		if (prefix == sent && prefix == length)
+			return splices;
+
+		int suffix = 0;
+		while (suffix < shortest - prefix && same.at(sent - 1 - suffix, length - 1 - suffix))
+			suffix++;
+
+		// Sliding window : the new column starts with the end of the sent one
+		// (its first values can be the first ones sent), kept when it sends
+		// fewer values than the changed range
+		if (prefix < sent && length > 0) {
+			int tried = 0;
+			for (int shift = 1; shift < sent && tried < SHIFTS; shift++) {
+				if (!same.at(shift, 0))
+					continue;
+				tried++;
+				int kept = sent - shift;
+				if (kept > length || length - kept >= length - prefix - suffix)
+					continue;
+				int k = 1;
+				while (k < kept && same.at(shift + k, k))
+					k++;
+				if (k == kept) {
+					splices.add(new int[] { 0, shift, 0, 0 });
+					if (length > kept)
+						splices.add(new int[] { kept, 0, kept, length });
+					return splices;
+				}
+			}
+		}
+
+		splices.add(new int[] { prefix, sent - prefix - suffix, prefix, length - suffix });
+		return splices;
+	}
+
+	// Values from to to : numbers when they all are, otherwise as the chart
+	// sends them (quoted values are strings)
+	private static JsonValue values(String[] column, int from, int to) {
+
+		String[] part = new String[to - from];
+		System.arraycopy(column, from, part, 0, part.length);
+
+		DataBlock block = DataBlock.parse(part);
+		if (block != null)
+			return numbers(block.toArray());
+
+		JsonArray json = new JsonArray();
+		for (String value : part) {
+			if (value == null)
+				json.add(JsonValue.NULL);
+			else if (quoted(value))
+				json.add(value.substring(1, value.length() - 1));
+			else if (!Double.isNaN(DataBlock.toNumber(value)))
+				json.add(DataBlock.toNumber(value));
+			else
+				json.add(value);
+		}
+		return json;
+	}
+
+	// Block of the values when they are enough (not kept in the BlockCache :
+	// splices are sent once), otherwise an array
+	private static JsonValue numbers(double[] values) {
+		if (values.length >= BlockCache.MIN_VALUES)
+			return DataBlock.of(values).toDataJson();
+
+		JsonArray json = new JsonArray();
+		for (double value : values)
+			json.add(Double.isNaN(value) || Double.isInfinite(value) ? JsonValue.NULL : JsonValue.valueOf(value));
+		return json;
+	}
+
+	// Same value, quoted or not
+	private static boolean same(String a, String b) {
+		if (a == b)
+			return true;
+		if (a == null || b == null)
+			return false;
+		int aStart = quoted(a) ? 1 : 0;
+		int bStart = quoted(b) ? 1 : 0;
+		int length = a.length() - 2 * aStart;
+		return length == b.length() - 2 * bStart && a.regionMatches(aStart, b, bStart, length);
+	}
+
+	private static boolean quoted(String value) {
+		return value.length() > 1 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'';
+	}
+}
@@ -0,0 +1,398 @@
+package plotly.encoding;
+
+import java.math.BigInteger;
+
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Numbers of the chart payloads written straight into a StringBuilder. <br>
+ * A double is written with the fewest digits that read back to the same
+ * double (Schubfach algorithm of R. Giulietti, the one of Double.toString
+ * since Java 19) : 0.1 rather than 0.1000000000000000055..., and never the 17
+ * digits Double.toString of Java 8 sometimes gives. A number of significant
+ * digits can be set instead, for axes that need no more (0 : shortest).
+ * NaN and infinite values are written null, a gap for plotly.js.<br>
+ * The columns are added to the payloads as JsonValue (toJson) after the
+ * templates are read : org.eclipse.rap.json keeps the text of the numbers it
+ * reads, where a pass through org.json would write them again.<br>
+ * <br>
+ * Exemple:<br>
+ * StringBuilder out = new StringBuilder();<br>
+ * DoubleWriter.append(out, datas, 4);<br>
+ * trace.add("z", DoubleWriter.toJson(datas, 4));<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class DoubleWriter {
+
+	/**
+	 * Shortest form that reads back to the same double.
+	 */
+	public static final int SHORTEST = 0;
+
+	// c 2^q with 2^52 <= c < 2^53 for normal values
+	private static final int Q_MIN = -1074;
+	private static final int P = 53;
+	private static final long C_MIN = 1L << 52;
+	private static final long T_MASK = C_MIN - 1;
+	private static final int BQ_MASK = 0x7FF;
+	private static final long MASK_63 = (1L << 63) - 1;
+	// Subnormal values under C_TINY are multiplied by 10 to be exact enough
+	private static final int C_TINY = 3;
+
+	// 10^-k approximated by g1 2^63 + g0 (126 bits), k from K_MIN to K_MAX
+	private static final int K_MIN = -324;
+	private static final int K_MAX = 292;
+	private static final long[] G = new long[(K_MAX - K_MIN + 1) * 2];
+
+	// Plain notation for decimal exponents in this range (as JavaScript)
+	private static final int PLAIN_MIN = -6;
+	private static final int PLAIN_MAX = 21;
+
+	private static final long[] POWERS = new long[19];
+
+	static {
+		POWERS[0] = 1;
+		for (int i = 1; i < POWERS.length; i++)
+			POWERS[i] = POWERS[i - 1] * 10;
+
+		BigInteger mask = BigInteger.valueOf(MASK_63);
+		for (int k = K_MIN; k <= K_MAX; k++) {
+			// g = floor(10^-k 2^(125 - floor(log2(10^-k)))) + 1
+			int r = flog2pow10(-k) - 125;
+			BigInteger g;
+			if (k <= 0) {
+				BigInteger power = BigInteger.TEN.pow(-k);
+				g = r >= 0 ? power.shiftRight(r) : power.shiftLeft(-r);
+			} else
+				g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+			g = g.add(BigInteger.ONE);
+			G[(k - K_MIN) * 2] = g.shiftRight(63).longValue();
+			G[(k - K_MIN) * 2 + 1] = g.and(mask).longValue();
+		}
+	}
+
+	private DoubleWriter() {
+	}
+
+	/**
+	 * Write the shortest form of a double.
+	 *
+	 * @param out   StringBuilder
+	 * @param value double
+	 * @return StringBuilder - out
+	 */
+	public static StringBuilder append(StringBuilder out, double value) {
+		return append(out, value, SHORTEST);
+	}
+
+	/**
+	 * Write a double.
+	 *
+	 * @param out    StringBuilder
+	 * @param value  double
+	 * @param digits int - Largest number of significant digits, SHORTEST for
+	 *               the shortest form
+	 * @return StringBuilder - out
+	 */
+	public static StringBuilder append(StringBuilder out, double value, int digits) {
+
+		long bits = Double.doubleToRawLongBits(value);
+		long t = bits & T_MASK;
+		int bq = (int) (bits >>> 52) & BQ_MASK;
+		if (bq == BQ_MASK)
+			return out.append("null");
+
+		if (bits < 0)
+			out.append('-');
+
+		if (bq != 0) {
+			int mq = -Q_MIN + 1 - bq;
+			long c = C_MIN | t;
+			// Integers : exact
+			if (0 < mq && mq < P) {
+				long f = c >> mq;
+				if (f << mq == c)
+					return write(out, f, 0, digits);
+			}
+			return toDecimal(out, -mq, c, 0, digits);
+		}
+		if (t != 0)
+			return t < C_TINY ? toDecimal(out, Q_MIN, 10 * t, -1, digits) : toDecimal(out, Q_MIN, t, 0, digits);
+		return out.append('0');
+	}
+
+	/**
+	 * Write an array : [v0,v1,...].
+	 *
+	 * @param out    StringBuilder
+	 * @param values double[]
+	 * @param digits int - Significant digits, SHORTEST for the shortest form
+	 * @return StringBuilder - out
+	 */
+	public static StringBuilder append(StringBuilder out, double[] values, int digits) {
+		out.append('[');
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				out.append(',');
+			append(out, values[i], digits);
+		}
+		return out.append(']');
+	}
+
+	/**
+	 * Write a matrix : [[v00,v01,...],...].
+	 *
+	 * @param out    StringBuilder
+	 * @param values double[][]
+	 * @param digits int - Significant digits, SHORTEST for the shortest form
+	 * @return StringBuilder - out
+	 */
+	public static StringBuilder append(StringBuilder out, double[][] values, int digits) {
+		out.append('[');
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				out.append(',');
+			append(out, values[i], digits);
+		}
+		return out.append(']');
+	}
+
+	/**
+	 * Write a column given as text, in Json : numbers with digits significant
+	 * digits (quoted numbers stay strings, unless digits are set), null, true
+	 * and false as they are, the other values as strings (quotes removed).
+	 *
+	 * @param out    StringBuilder
+	 * @param values String[]
+	 * @param digits int - Significant digits, SHORTEST for the shortest form
+	 * @return StringBuilder - out
+	 */
+	public static StringBuilder append(StringBuilder out, String[] values, int digits) {
+		out.append('[');
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				out.append(',');
+			String value = values[i];
+			if (value == null || value.equals("null") || value.equals("true") || value.equals("false")) {
+				out.append(value);
+				continue;
+			}
+			boolean quoted = value.length() > 1 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+					&& value.charAt(value.length() - 1) == value.charAt(0);
+			String text = quoted ? value.substring(1, value.length() - 1) : value;
+			double number = Double.NaN;
+			if (!quoted || digits > 0)
+				number = DataBlock.toNumber(text);
+			if (Double.isNaN(number) || Double.isInfinite(number))
+				quote(out, text);
+			else
+				append(out, number, digits);
+		}
+		return out.append(']');
+	}
+
+	/**
+	 * Json array of a column, its numbers kept as written.
+	 *
+	 * @param values double[]
+	 * @param digits int - Significant digits, SHORTEST for the shortest form
+	 * @return JsonValue
+	 */
+	public static JsonValue toJson(double[] values, int digits) {
+		return JsonValue.readFrom(append(new StringBuilder(values.length * 8 + 2), values, digits).toString());
+	}
+
+	/**
+	 * Json array of the rows of a matrix, its numbers kept as written.
+	 *
+	 * @param values double[][]
+	 * @param digits int - Significant digits, SHORTEST for the shortest form
+	 * @return JsonValue
+	 */
+	public static JsonValue toJson(double[][] values, int digits) {
+		int length = 2;
+		for (double[] row : values)
+			length += row.length * 8 + 2;
+		return JsonValue.readFrom(append(new StringBuilder(length), values, digits).toString());
+	}
+
+	/**
+	 * Json array of a column given as text, its numbers kept as written.
+	 *
+	 * @param values String[]
+	 * @param digits int - Significant digits, SHORTEST for the shortest form
+	 * @return JsonValue
+	 */
+	public static JsonValue toJson(String[] values, int digits) {
+		return JsonValue.readFrom(append(new StringBuilder(values.length * 8 + 2), values, digits).toString());
+	}
+
+	/**
+	 * Shortest form of a double, for the few values written outside a buffer.
+	 *
+	 * @param value double
+	 * @return String
+	 */
+	public static String toString(double value) {
+		return append(new StringBuilder(24), value).toString();
+	}
+
+	// Json string of a text
+	private static void quote(StringBuilder out, String text) {
+		out.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\')
+				out.append('\\').append(c);
+			else if (c < 0x20)
+				out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 15, 16));
+			else
+				out.append(c);
+		}
+		out.append('"');
+	}
+
+	// Shortest decimal of c 2^q : skeleton of figure 7 of the Schubfach paper,
+	// computations of figure 9
+	private static StringBuilder toDecimal(StringBuilder out, int q, long c, int dk, int digits) {
+
+		long odd = c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != C_MIN || q == Q_MIN) {
+			// Regular spacing
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			// Irregular spacing (power of 2)
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+
+		long g1 = G[(k - K_MIN) * 2];
+		long g0 = G[(k - K_MIN) * 2 + 1];
+
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+
+		long s = vb >> 2;
+		if (s >= 100) {
+			// One digit less when its closest neighbours are in the interval
+			long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + odd <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + odd <= vbr;
+			if (upin != wpin)
+				return write(out, upin ? sp10 : tp10, k, digits);
+		}
+		long t = s + 1;
+		boolean uin = vbl + odd <= s << 2;
+		boolean win = (t << 2) + odd <= vbr;
+		if (uin != win)
+			return write(out, uin ? s : t, k + dk, digits);
+		long cmp = vb - (s + t << 1);
+		return write(out, cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, digits);
+	}
+
+	// Rounded odd of g cp 2^-127
+	private static long rop(long g1, long g0, long cp) {
+		long x1 = multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+
+	// High 64 bits of the product (Math.multiplyHigh of Java 9)
+	private static long multiplyHigh(long x, long y) {
+		long x1 = x >> 32;
+		long x2 = x & 0xFFFFFFFFL;
+		long y1 = y >> 32;
+		long y2 = y & 0xFFFFFFFFL;
+		long z2 = x2 * y2;
+		long t = x1 * y2 + (z2 >>> 32);
+		long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+		long z0 = t >> 32;
+		return x1 * y1 + z0 + (z1 >> 32);
+	}
+
+	// floor(log10(2^e))
+	private static int flog10pow2(int e) {
+		return (int) (e * 661971961083L >> 41);
+	}
+
+	// floor(log10(3/4 2^e))
+	private static int flog10threeQuartersPow2(int e) {
+		return (int) (e * 661971961083L - 274743187321L >> 41);
+	}
+
+	// floor(log2(10^e))
+	private static int flog2pow10(int e) {
+		return (int) (e * 913124641741L >> 38);
+	}
+
+	// f 10^e, f > 0, rounded to digits significant digits (half up)
+	private static StringBuilder write(StringBuilder out, long f, int e, int digits) {
+
+		while (f % 10 == 0) {
+			f /= 10;
+			e++;
+		}
+		int length = length(f);
+		if (digits > 0 && length > digits) {
+			long power = POWERS[length - digits];
+			long rest = f % power;
+			f /= power;
+			e += length - digits;
+			if (rest >= power - rest)
+				f++;
+			while (f % 10 == 0) {
+				f /= 10;
+				e++;
+			}
+			length = length(f);
+		}
+
+		char[] chars = new char[19];
+		for (int i = length - 1; i >= 0; i--) {
+			chars[i] = (char) ('0' + f % 10);
+			f /= 10;
+		}
+
+		// Decimal exponent of the first digit
+		int exponent = e + length - 1;
+		if (exponent >= PLAIN_MAX || exponent < PLAIN_MIN) {
+			out.append(chars[0]);
+			if (length > 1)
+				out.append('.').append(chars, 1, length - 1);
+			return out.append('e').append(exponent);
+		}
+		if (e >= 0) {
+			out.append(chars, 0, length);
+			for (int i = 0; i < e; i++)
+				out.append('0');
+		} else if (exponent >= 0) {
+			out.append(chars, 0, exponent + 1).append('.').append(chars, exponent + 1, length - exponent - 1);
+		} else {
+			out.append("0.");
+			for (int i = -1; i > exponent; i--)
+				out.append('0');
+			out.append(chars, 0, length);
+		}
+		return out;
+	}
+
+	private static int length(long f) {
+		int length = 1;
+		while (length < POWERS.length && f >= POWERS[length])
+			length++;
+		return length;
+	}
+}
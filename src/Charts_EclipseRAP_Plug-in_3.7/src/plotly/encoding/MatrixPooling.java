@@ -0,0 +1,221 @@
+package plotly.encoding;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Reduce a matrix to a given number of rows and columns. <br>
+ * Each cell of the result aggregates a range of rows and columns of the matrix
+ * (the ranges differ by one at most). Large matrices are reduced on the common
+ * fork-join pool, by stripes of rows.<br>
+ * <br>
+ * Exemple:<br>
+ * double[][] pooled = MatrixPooling.pool(datas, 600, 800,
+ * MatrixPooling.Aggregator.MAX);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class MatrixPooling {
+
+	/**
+	 * Value of a pooled cell. MEAN, MAX and MIN skip NaN values.
+	 */
+	public enum Aggregator {
+		MEAN, MAX, MIN, FIRST
+	}
+
+	// Under this number of values read, the matrix is reduced by the caller
+	private static final int SEQUENTIAL_VALUES = 1 << 16;
+
+	private MatrixPooling() {
+	}
+
+	/**
+	 * Pool the whole matrix.
+	 *
+	 * @param values     double[][] - Rows must have the same length
+	 * @param rows       int - Number of rows of the result
+	 * @param columns    int - Number of columns of the result
+	 * @param aggregator Aggregator
+	 * @return double[][]
+	 */
+	public static double[][] pool(double[][] values, int rows, int columns, Aggregator aggregator) {
+		int width = values.length == 0 ? 0 : values[0].length;
+		return pool(values, 0, values.length, 0, width, rows, columns, aggregator);
+	}
+
+	/**
+	 * Pool each factor x factor square of the matrix.
+	 *
+	 * @param values     double[][] - Rows must have the same length
+	 * @param factor     int
+	 * @param aggregator Aggregator
+	 * @return double[][]
+	 */
+	public static double[][] pool(double[][] values, int factor, Aggregator aggregator) {
+		int width = values.length == 0 ? 0 : values[0].length;
+		return pool(values, (values.length + factor - 1) / factor, (width + factor - 1) / factor, aggregator);
+	}
+
+	/**
+	 * Pool a window of the matrix.
+	 *
+	 * @param values     double[][] - Rows must have the same length
+	 * @param row0       int - First row of the window
+	 * @param row1       int - Row after the window
+	 * @param column0    int - First column of the window
+	 * @param column1    int - Column after the window
+	 * @param rows       int - Number of rows of the result
+	 * @param columns    int - Number of columns of the result
+	 * @param aggregator Aggregator
+	 * @return double[][]
+	 */
+	public static double[][] pool(double[][] values, int row0, int row1, int column0, int column1, int rows,
+			int columns, Aggregator aggregator) {
+
+		if (row1 <= row0 || column1 <= column0)
+			return new double[0][0];
+
+		rows = Math.max(1, Math.min(rows, row1 - row0));
+		columns = Math.max(1, Math.min(columns, column1 - column0));
+		double[][] pooled = new double[rows][columns];
+
+		Stripe stripe = new Stripe(values, pooled, row0, row1, column0, column1, 0, rows, aggregator);
+		if ((long) (row1 - row0) * (column1 - column0) < SEQUENTIAL_VALUES)
+			stripe.compute();
+		else
+			ForkJoinPool.commonPool().invoke(stripe);
+
+		return pooled;
+	}
+
+	/**
+	 * Center of each pooled range, in indexes of the matrix.
+	 *
+	 * @param start int - First index of the window
+	 * @param end   int - Index after the window
+	 * @param count int - Number of pooled ranges
+	 * @return double[]
+	 */
+	public static double[] centers(int start, int end, int count) {
+		count = Math.max(1, Math.min(count, end - start));
+		double[] centers = new double[count];
+		for (int i = 0; i < count; i++)
+			centers[i] = start + (bound(i, end - start, count) + bound(i + 1, end - start, count) - 1) / 2.0;
+		return centers;
+	}
+
+	/**
+	 * Coordinates of the pooled ranges of an axis : first coordinate of each
+	 * range, or center of the range in indexes when the axis has no coordinates.
+	 *
+	 * @param coordinates JsonValue - Coordinates of the matrix (or null)
+	 * @param length      int - Number of rows or columns of the matrix
+	 * @param count       int - Number of pooled ranges
+	 * @return JsonArray
+	 */
+	public static JsonArray axis(JsonValue coordinates, int length, int count) {
+		JsonArray axis = new JsonArray();
+		if (coordinates != null && coordinates.isArray() && coordinates.asArray().size() >= length) {
+			count = Math.max(1, Math.min(count, length));
+			for (int i = 0; i < count; i++)
+				axis.add(coordinates.asArray().get(bound(i, length, count)));
+		} else {
+			for (double center : centers(0, length, count))
+				axis.add(center);
+		}
+		return axis;
+	}
+
+	// First index of the range i out of count
+	private static int bound(int i, int length, int count) {
+		return (int) ((long) i * length / count);
+	}
+
+	// Rows [first, last) of the result
+	private static class Stripe extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[][] values;
+		private final double[][] pooled;
+		private final int row0, row1, column0, column1;
+		private final int first, last;
+		private final Aggregator aggregator;
+
+		Stripe(double[][] values, double[][] pooled, int row0, int row1, int column0, int column1, int first,
+				int last, Aggregator aggregator) {
+			this.values = values;
+			this.pooled = pooled;
+			this.row0 = row0;
+			this.row1 = row1;
+			this.column0 = column0;
+			this.column1 = column1;
+			this.first = first;
+			this.last = last;
+			this.aggregator = aggregator;
+		}
+
+		@Override
+		protected void compute() {
+
+			int height = row1 - row0;
+			int width = column1 - column0;
+
+			// Values read by the stripe
+			long read = (long) (bound(last, height, pooled.length) - bound(first, height, pooled.length)) * width;
+
+			if (last - first > 1 && read >= SEQUENTIAL_VALUES) {
+				int middle = (first + last) >>> 1;
+				invokeAll(new Stripe(values, pooled, row0, row1, column0, column1, first, middle, aggregator),
+						new Stripe(values, pooled, row0, row1, column0, column1, middle, last, aggregator));
+				return;
+			}
+
+			int columns = pooled[0].length;
+			for (int i = first; i < last; i++) {
+				int r0 = row0 + bound(i, height, pooled.length);
+				int r1 = row0 + bound(i + 1, height, pooled.length);
+				for (int j = 0; j < columns; j++) {
+					int c0 = column0 + bound(j, width, columns);
+					int c1 = column0 + bound(j + 1, width, columns);
+					pooled[i][j] = aggregate(r0, r1, c0, c1);
+				}
+			}
+		}
+
+		private double aggregate(int r0, int r1, int c0, int c1) {
+
+			if (aggregator == Aggregator.FIRST)
+				return values[r0][c0];
+
+			double result = aggregator == Aggregator.MAX ? Double.NEGATIVE_INFINITY
+					: aggregator == Aggregator.MIN ? Double.POSITIVE_INFINITY : 0;
+			int count = 0;
+
+			// The cells of a row are contiguous : one kernel call by row
+			for (int r = r0; r < r1; r++) {
+				double[] row = values[r];
+				count += StatKernels.count(row, c0, c1);
+				switch (aggregator) {
+				case MAX:
+					result = Math.max(result, StatKernels.max(row, c0, c1));
+					break;
+				case MIN:
+					result = Math.min(result, StatKernels.min(row, c0, c1));
+					break;
+				default:
+					result += StatKernels.sum(row, c0, c1);
+				}
+			}
+
+			if (count == 0)
+				return Double.NaN;
+			return aggregator == Aggregator.MEAN ? result / count : result;
+		}
+	}
+}
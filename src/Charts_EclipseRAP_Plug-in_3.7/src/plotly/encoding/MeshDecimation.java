@@ -0,0 +1,221 @@
+package plotly.encoding;
+
+import java.util.PriorityQueue;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Rows and columns of a regular grid kept to draw it under a number of
+ * vertices. <br>
+ * A surface trace needs a rectilinear grid : the mesh is reduced by keeping
+ * whole rows and columns, their coordinates follow.<br>
+ * <ul>
+ * <li>STRIDE : rows and columns evenly spaced, first and last kept</li>
+ * <li>ADAPTIVE : ranges of rows (or columns) split in two, largest error
+ * first, while the budget allows it. The error of a range is the largest
+ * distance between its values and the interpolation of its bounds, so flat
+ * regions keep few rows and steep ones keep many (quadtree of the grid,
+ * restricted to whole rows and columns)</li>
+ * </ul>
+ * <br>
+ * Exemple:<br>
+ * int[][] kept = MeshDecimation.select(datas, 250000, 0,
+ * MeshDecimation.Mode.ADAPTIVE);<br>
+ * double[][] mesh = MeshDecimation.cut(datas, kept[0], kept[1]);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class MeshDecimation {
+
+	/**
+	 * Choice of the kept rows and columns.
+	 */
+	public enum Mode {
+		STRIDE, ADAPTIVE
+	}
+
+	// Values of the other axis read to measure the error of a range
+	private static final int SAMPLES = 512;
+
+	private MeshDecimation() {
+	}
+
+	/**
+	 * Rows and columns kept.
+	 *
+	 * @param values    double[][] - Rows must have the same length
+	 * @param vertices  int - Largest number of vertices (kept rows x kept
+	 *                  columns)
+	 * @param tolerance double - ADAPTIVE : ranges with a smaller error are not
+	 *                  split, 0 to use the whole budget
+	 * @param mode      Mode
+	 * @return int[][] - { rows, columns } indexes in increasing order
+	 */
+	public static int[][] select(double[][] values, int vertices, double tolerance, Mode mode) {
+
+		int rows = values.length;
+		int columns = rows == 0 ? 0 : values[0].length;
+		if ((long) rows * columns <= vertices)
+			return new int[][] { all(rows), all(columns) };
+
+		if (mode == Mode.STRIDE) {
+			int keptRows = (int) Math.round(Math.sqrt((double) vertices * rows / columns));
+			keptRows = Math.max(Math.min(2, rows), Math.min(rows, keptRows));
+			int keptColumns = Math.max(Math.min(2, columns), Math.min(columns, vertices / keptRows));
+			return new int[][] { even(rows, keptRows), even(columns, keptColumns) };
+		}
+
+		return adaptive(values, rows, columns, vertices, tolerance);
+	}
+
+	/**
+	 * Kept rows and columns of the matrix.
+	 *
+	 * @param values  double[][]
+	 * @param rows    int[] - Kept rows
+	 * @param columns int[] - Kept columns
+	 * @return double[][]
+	 */
+	public static double[][] cut(double[][] values, int[] rows, int[] columns) {
+		double[][] mesh = new double[rows.length][columns.length];
+		for (int i = 0; i < rows.length; i++) {
+			double[] row = values[rows[i]];
+			for (int j = 0; j < columns.length; j++)
+				mesh[i][j] = row[columns[j]];
+		}
+		return mesh;
+	}
+
+	/**
+	 * Coordinates of the kept rows or columns : coordinates of the matrix, or
+	 * their indexes when the axis has no coordinates.
+	 *
+	 * @param coordinates JsonValue - Coordinates of the matrix (or null)
+	 * @param indexes     int[] - Kept rows or columns
+	 * @return JsonArray
+	 */
+	public static JsonArray axis(JsonValue coordinates, int[] indexes) {
+		boolean given = coordinates != null && coordinates.isArray()
+				&& coordinates.asArray().size() > indexes[indexes.length - 1];
+		JsonArray axis = new JsonArray();
+		for (int index : indexes)
+			axis.add(given ? coordinates.asArray().get(index) : JsonValue.valueOf(index));
+		return axis;
+	}
+
+	private static int[] all(int length) {
+		int[] indexes = new int[length];
+		for (int i = 0; i < length; i++)
+			indexes[i] = i;
+		return indexes;
+	}
+
+	// count indexes evenly spaced from 0 to length - 1
+	private static int[] even(int length, int count) {
+		if (count <= 1)
+			return all(Math.min(length, 1));
+		int[] indexes = new int[count];
+		for (int i = 0; i < count; i++)
+			indexes[i] = (int) Math.round((double) i * (length - 1) / (count - 1));
+		return indexes;
+	}
+
+	private static int[][] adaptive(double[][] values, int rows, int columns, int vertices, double tolerance) {
+
+		boolean[] rowKept = new boolean[rows];
+		boolean[] columnKept = new boolean[columns];
+		rowKept[0] = rowKept[rows - 1] = true;
+		columnKept[0] = columnKept[columns - 1] = true;
+		int keptRows = rows > 1 ? 2 : 1;
+		int keptColumns = columns > 1 ? 2 : 1;
+
+		PriorityQueue<Range> queue = new PriorityQueue<Range>();
+		offer(queue, values, true, 0, rows - 1);
+		offer(queue, values, false, 0, columns - 1);
+
+		while (!queue.isEmpty()) {
+			Range range = queue.poll();
+			if (range.error <= tolerance)
+				break;
+
+			// A new row adds a vertex by kept column, and the reverse
+			int added = range.rows ? keptColumns : keptRows;
+			if ((long) keptRows * keptColumns + added > vertices)
+				continue;
+
+			int middle = (range.start + range.end) >>> 1;
+			if (range.rows) {
+				rowKept[middle] = true;
+				keptRows++;
+			} else {
+				columnKept[middle] = true;
+				keptColumns++;
+			}
+			offer(queue, values, range.rows, range.start, middle);
+			offer(queue, values, range.rows, middle, range.end);
+		}
+
+		return new int[][] { indexes(rowKept, keptRows), indexes(columnKept, keptColumns) };
+	}
+
+	private static int[] indexes(boolean[] kept, int count) {
+		int[] indexes = new int[count];
+		int k = 0;
+		for (int i = 0; i < kept.length; i++)
+			if (kept[i])
+				indexes[k++] = i;
+		return indexes;
+	}
+
+	private static void offer(PriorityQueue<Range> queue, double[][] values, boolean rows, int start, int end) {
+		if (end - start >= 2)
+			queue.add(new Range(rows, start, end, error(values, rows, start, end)));
+	}
+
+	// Largest distance between the values inside the range and the
+	// interpolation of its bounds, on a sample of the other axis
+	private static double error(double[][] values, boolean rows, int start, int end) {
+
+		int across = rows ? values[0].length : values.length;
+		int step = Math.max(1, across / SAMPLES);
+		double error = 0;
+
+		for (int k = 0; k < across; k += step) {
+			double first = rows ? values[start][k] : values[k][start];
+			double last = rows ? values[end][k] : values[k][end];
+			for (int i = start + 1; i < end; i++) {
+				double value = rows ? values[i][k] : values[k][i];
+				double expected = first + (last - first) * (i - start) / (end - start);
+				double distance = Math.abs(value - expected);
+				// NaN holes are kept as a difference of shape
+				if (Double.isNaN(distance))
+					distance = Double.isNaN(value) && Double.isNaN(expected) ? 0 : Double.POSITIVE_INFINITY;
+				if (distance > error)
+					error = distance;
+			}
+		}
+		return error;
+	}
+
+	// Rows (or columns) start to end, largest error first
+	private static class Range implements Comparable<Range> {
+
+		final boolean rows;
+		final int start, end;
+		final double error;
+
+		Range(boolean rows, int start, int end, double error) {
+			this.rows = rows;
+			this.start = start;
+			this.end = end;
+			this.error = error;
+		}
+
+		@Override
+		public int compareTo(Range other) {
+			return Double.compare(other.error, error);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package plotly.encoding;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Independent parts of a build run on the common fork-join pool. <br>
+ * Parsing the text columns and hashing the blocks (SHA-1) are the costly
+ * parts of a chart build, and the columns of the traces do not depend on each
+ * other : each column is a task, its result is stored at its index so the
+ * payload keeps the order of the traces. Under SEQUENTIAL_VALUES values in
+ * all, the tasks run on the calling thread. The blocks are then encoded by the
+ * BlockCache of the UI session, on the calling thread.<br>
+ * <br>
+ * Exemple:<br>
+ * DataBlock[][] blocks = ParallelEncoding.parse(datas);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class ParallelEncoding {
+
+	/**
+	 * Under this number of values, the tasks run on the calling thread.
+	 */
+	public static final int SEQUENTIAL_VALUES = 1 << 16;
+
+	/**
+	 * Task run for each index.
+	 */
+	public interface Task {
+		void run(int index);
+	}
+
+	private ParallelEncoding() {
+	}
+
+	/**
+	 * Run a task for each index, on the common pool when there are values
+	 * enough.
+	 *
+	 * @param count  int - Number of indexes
+	 * @param values long - Values handled by all the tasks
+	 * @param task   Task
+	 */
+	public static void run(int count, long values, Task task) {
+		Range range = new Range(0, count, values, task);
+		if (count < 2 || values < SEQUENTIAL_VALUES)
+			range.compute();
+		else
+			ForkJoinPool.commonPool().invoke(range);
+	}
+
+	/**
+	 * Blocks of the columns of the fast charts (values can be quoted : "'12.5'"),
+	 * hashed.
+	 *
+	 * @param datas String[][][] - [ [ [x], [y] ], ... ]
+	 * @return DataBlock[][] - Block of each column, null for the columns shorter
+	 *         than BlockCache.MIN_VALUES or not numeric
+	 */
+	public static DataBlock[][] parse(final String[][][] datas) {
+
+		final int width = datas.length == 0 ? 0 : datas[0].length;
+		final DataBlock[][] blocks = new DataBlock[datas.length][width];
+		long values = 0;
+		for (String[][] trace : datas)
+			for (String[] column : trace)
+				values += column.length;
+
+		run(datas.length * width, values, new Task() {
+			@Override
+			public void run(int index) {
+				String[] column = datas[index / width][index % width];
+				if (column.length >= BlockCache.MIN_VALUES)
+					blocks[index / width][index % width] = hashed(DataBlock.parse(column));
+			}
+		});
+		return blocks;
+	}
+
+	/**
+	 * Blocks of numeric columns, hashed.
+	 *
+	 * @param datas double[][] - One column by trace
+	 * @return DataBlock[] - Block of each column, null for the columns shorter
+	 *         than BlockCache.MIN_VALUES
+	 */
+	public static DataBlock[] of(final double[][] datas) {
+
+		final DataBlock[] blocks = new DataBlock[datas.length];
+		long values = 0;
+		for (double[] column : datas)
+			values += column.length;
+
+		run(datas.length, values, new Task() {
+			@Override
+			public void run(int index) {
+				if (datas[index].length >= BlockCache.MIN_VALUES)
+					blocks[index] = hashed(DataBlock.of(datas[index]));
+			}
+		});
+		return blocks;
+	}
+
+	// The hash is kept by the block : BlockCache.encode finds it computed
+	private static DataBlock hashed(DataBlock block) {
+		if (block != null)
+			block.getHash();
+		return block;
+	}
+
+	// Indexes first to last, split in two while more than one and their values
+	// (shared evenly by the indexes) are SEQUENTIAL_VALUES or more
+	private static class Range extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int first, last;
+		private final long values;
+		private final Task task;
+
+		Range(int first, int last, long values, Task task) {
+			this.first = first;
+			this.last = last;
+			this.values = values;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute() {
+			if (last - first > 1 && values >= SEQUENTIAL_VALUES) {
+				int middle = (first + last) >>> 1;
+				long half = (long) ((double) values * (middle - first) / (last - first));
+				invokeAll(new Range(first, middle, half, task), new Range(middle, last, values - half, task));
+				return;
+			}
+			for (int i = first; i < last; i++)
+				task.run(i);
+		}
+	}
+}
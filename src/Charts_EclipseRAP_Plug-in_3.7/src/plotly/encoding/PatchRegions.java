@@ -0,0 +1,149 @@
+package plotly.encoding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+
+/**
+ * Rectangles of a matrix changed since they were last sent. <br>
+ * Overlapping or touching rectangles are merged into their bounding box, so a
+ * cell is sent once however many patches wrote it. The values are read from
+ * the matrix when the regions are sent : the last patch wins.<br>
+ * <br>
+ * Exemple:<br>
+ * regions.add(10, 20, 4, 4);<br>
+ * JsonArray patches = regions.toJson(datas, 0, 0, 0);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class PatchRegions {
+
+	// Past this number of regions, they are merged into one
+	private static final int MAX_REGIONS = 64;
+
+	// { row, column, rows, columns }
+	private final List<int[]> regions = new ArrayList<int[]>();
+
+	/**
+	 * Add a changed rectangle.
+	 *
+	 * @param row     int - First row
+	 * @param column  int - First column
+	 * @param rows    int - Number of rows
+	 * @param columns int - Number of columns
+	 */
+	public void add(int row, int column, int rows, int columns) {
+
+		if (rows <= 0 || columns <= 0)
+			return;
+
+		int[] region = { row, column, rows, columns };
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			for (int i = 0; i < regions.size(); i++) {
+				int[] other = regions.get(i);
+				if (touch(region, other)) {
+					region = bound(region, other);
+					regions.remove(i);
+					merged = true;
+					break;
+				}
+			}
+		}
+		regions.add(region);
+
+		if (regions.size() > MAX_REGIONS) {
+			int[] all = regions.get(0);
+			for (int[] other : regions)
+				all = bound(all, other);
+			regions.clear();
+			regions.add(all);
+		}
+	}
+
+	/**
+	 * @return boolean - true if no rectangle changed
+	 */
+	public boolean isEmpty() {
+		return regions.isEmpty();
+	}
+
+	/**
+	 * @return long - Number of cells to send
+	 */
+	public long getCells() {
+		long cells = 0;
+		for (int[] region : regions)
+			cells += (long) region[2] * region[3];
+		return cells;
+	}
+
+	/**
+	 * Remove all the rectangles.
+	 */
+	public void clear() {
+		regions.clear();
+	}
+
+	/**
+	 * Json form of the changed rectangles read by plotlyFast.js, the regions
+	 * are cleared.<br>
+	 * [ { row, column, z : block }, ... ]
+	 *
+	 * @param values double[][] - Matrix holding the changes
+	 * @param bits   int - Quantization of the blocks (DataBlock.quantize), 0 to
+	 *               send them whole
+	 * @param min    double - First level of the quantization
+	 * @param max    double - Last level of the quantization
+	 * @return JsonArray
+	 */
+	public JsonArray toJson(double[][] values, int bits, double min, double max) {
+
+		JsonArray patches = new JsonArray();
+		for (int[] region : regions) {
+			double[][] cut = new double[region[2]][region[3]];
+			for (int i = 0; i < cut.length; i++)
+				System.arraycopy(values[region[0] + i], region[1], cut[i], 0, region[3]);
+
+			// Not kept in the BlockCache : patches are sent once
+			DataBlock block = DataBlock.of(cut);
+			if (bits > 0)
+				block = block.quantize(bits, min, max);
+			patches.add(new JsonObject().add("row", region[0]).add("column", region[1]).add("z",
+					block.toDataJson()));
+		}
+		regions.clear();
+		return patches;
+	}
+
+	/**
+	 * @param values double[][] - Matrix holding the changes
+	 * @param min    double
+	 * @param max    double
+	 * @return boolean - true if the finite changed values are between min and
+	 *         max (infinite and NaN values are not checked)
+	 */
+	public boolean within(double[][] values, double min, double max) {
+		for (int[] region : regions)
+			for (int i = region[0]; i < region[0] + region[2]; i++)
+				if (!StatKernels.within(values[i], region[1], region[1] + region[3], min, max))
+					return false;
+		return true;
+	}
+
+	// Overlapping or side by side
+	private static boolean touch(int[] a, int[] b) {
+		return a[0] <= b[0] + b[2] && b[0] <= a[0] + a[2] && a[1] <= b[1] + b[3] && b[1] <= a[1] + a[3];
+	}
+
+	private static int[] bound(int[] a, int[] b) {
+		int row = Math.min(a[0], b[0]);
+		int column = Math.min(a[1], b[1]);
+		return new int[] { row, column, Math.max(a[0] + a[2], b[0] + b[2]) - row,
+				Math.max(a[1] + a[3], b[1] + b[3]) - column };
+	}
+}
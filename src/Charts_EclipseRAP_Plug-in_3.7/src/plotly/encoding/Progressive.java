@@ -0,0 +1,295 @@
+package plotly.encoding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Full data of a chart drawn first from a coarse preview. <br>
+ * The chart sends a preview (one point out of "stride", pooled matrix) with the
+ * descriptor of this object. Once the preview is drawn, the client asks the
+ * chunks of the full data one by one ("Refine" event) and merges them into the
+ * drawn chart, keeping its zoom.<br>
+ * Chunks of the columns of a trace are sent in turns (x then y of the first
+ * points), so the client can draw the full points already received followed by
+ * the preview points.
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class Progressive {
+
+	// Values of a chunk
+	public static final int CHUNK = 262144;
+
+	private static final AtomicInteger versions = new AtomicInteger();
+
+	private final int version = versions.incrementAndGet();
+	private final int stride;
+
+	// Full arrays : trace, key, and double[] (points) or double[][] (rows)
+	private final List<Integer> traces = new ArrayList<Integer>();
+	private final List<String> keys = new ArrayList<String>();
+	private final List<Object> arrays = new ArrayList<Object>();
+
+	// Chunks : index of the array, offset, length
+	private List<int[]> chunks;
+
+	// Trace attributes set back when the full data is drawn, and attributes
+	// removed (axes of the preview when the trace had none)
+	private final List<JsonObject> finish = new ArrayList<JsonObject>();
+	private final List<JsonArray> remove = new ArrayList<JsonArray>();
+
+	// Bits of the quantized rows, 0 to send them whole, and their bounds
+	private int quantization = 0;
+	private double quantizationMin, quantizationMax;
+
+	/**
+	 * @param stride int - One preview point out of stride (points), or pooling
+	 *               factor (rows)
+	 */
+	public Progressive(int stride) {
+		this.stride = stride;
+	}
+
+	/**
+	 * Step between the preview points or pooling factor of the preview matrix.
+	 *
+	 * @param values  int - Number of values of the full data
+	 * @param preview int - Number of values of the preview
+	 * @param rows    boolean - true for a matrix (pooled in both dimensions)
+	 * @return int
+	 */
+	public static int factor(int values, int preview, boolean rows) {
+		double ratio = (double) values / Math.max(preview, 1);
+		return Math.max(1, (int) Math.ceil(rows ? Math.sqrt(ratio) : ratio));
+	}
+
+	/**
+	 * One value out of step.
+	 *
+	 * @param values double[]
+	 * @param step   int
+	 * @return double[]
+	 */
+	public static double[] stride(double[] values, int step) {
+		double[] preview = new double[(values.length + step - 1) / step];
+		for (int i = 0; i < preview.length; i++)
+			preview[i] = values[i * step];
+		return preview;
+	}
+
+	/**
+	 * Mean of each factor x factor square (NaN values are skipped).
+	 *
+	 * @param values double[][] - Rows must have the same length
+	 * @param factor int
+	 * @return double[][]
+	 */
+	public static double[][] pool(double[][] values, int factor) {
+		return MatrixPooling.pool(values, factor, MatrixPooling.Aggregator.MEAN);
+	}
+
+	/**
+	 * Full column of a trace, sent by chunks of values.
+	 *
+	 * @param trace  int - Index of the trace
+	 * @param key    String - Key of the column ("x", "y")
+	 * @param values double[]
+	 */
+	public void addPoints(int trace, String key, double[] values) {
+		traces.add(trace);
+		keys.add(key);
+		arrays.add(values);
+	}
+
+	/**
+	 * Full matrix of a trace, sent by chunks of rows.
+	 *
+	 * @param trace  int - Index of the trace
+	 * @param key    String - Key of the matrix ("z")
+	 * @param values double[][] - Rows must have the same length
+	 */
+	public void addRows(int trace, String key, double[][] values) {
+		traces.add(trace);
+		keys.add(key);
+		arrays.add(values);
+	}
+
+	/**
+	 * Replace an axis of the trace by the coordinates of the pooled preview,
+	 * the axis is set back with the full data (removed when the trace had
+	 * none).
+	 *
+	 * @param trace  JsonObject - Trace of the preview
+	 * @param index  int - Index of the trace
+	 * @param axis   String - "x" (columns) or "y" (rows)
+	 * @param length int - Number of columns or rows of the full matrix
+	 * @param count  int - Number of columns or rows of the preview
+	 */
+	public void previewAxis(JsonObject trace, int index, String axis, int length, int count) {
+
+		JsonValue value = trace.get(axis);
+		if (value == null)
+			remove(index).add(axis);
+		else
+			finish(index).set(axis, value);
+		trace.set(axis, MatrixPooling.axis(value, length, count));
+	}
+
+	/**
+	 * To send the chunks of rows quantized (DataBlock.quantize) between the
+	 * bounds of the whole chart.
+	 *
+	 * @param bits int - 8 or 16, 0 to send the rows whole (default)
+	 * @param min  double - Smallest finite value of the chart
+	 * @param max  double - Largest finite value of the chart
+	 */
+	public void setQuantization(int bits, double min, double max) {
+		quantization = bits;
+		quantizationMin = min;
+		quantizationMax = max;
+	}
+
+	/**
+	 * @return int - Number of chunks
+	 */
+	public int getChunks() {
+		return plan().size();
+	}
+
+	/**
+	 * Json form of the descriptor read by plotlyFast.js.<br>
+	 * { version, stride, chunks, keys : [ ["x", "y"], ... ], finish : [ {attributes
+	 * of trace 0}, ... ], remove : [ [keys of trace 0], ... ] }
+	 *
+	 * @return JsonObject
+	 */
+	public JsonObject toJson() {
+
+		JsonArray traceKeys = new JsonArray();
+		for (int i = 0; i < keys.size(); i++) {
+			while (traceKeys.size() <= traces.get(i))
+				traceKeys.add(new JsonArray());
+			traceKeys.get(traces.get(i)).asArray().add(keys.get(i));
+		}
+
+		JsonArray attributes = new JsonArray();
+		for (JsonObject trace : finish)
+			attributes.add(trace == null ? new JsonObject() : trace);
+
+		JsonArray removed = new JsonArray();
+		for (JsonArray trace : remove)
+			removed.add(trace == null ? new JsonArray() : trace);
+
+		return new JsonObject().add("version", version).add("stride", stride).add("chunks", getChunks())
+				.add("keys", traceKeys).add("finish", attributes).add("remove", removed);
+	}
+
+	/**
+	 * Json form of a chunk.<br>
+	 * { version, chunk, trace, key, offset, total, rows, value : block }<br>
+	 * The block is not kept in the BlockCache : the chunks of a large chart
+	 * would evict its preview and the blocks of the other charts.
+	 *
+	 * @param version int - Version asked by the client
+	 * @param index   int - Index of the chunk
+	 * @return JsonObject - null if the version is outdated or the index out of
+	 *         range
+	 */
+	public JsonObject chunk(int version, int index) {
+
+		if (version != this.version || index < 0 || index >= plan().size())
+			return null;
+
+		int[] chunk = plan().get(index);
+		Object array = arrays.get(chunk[0]);
+
+		DataBlock block;
+		int total;
+		if (array instanceof double[][]) {
+			double[][] rows = (double[][]) array;
+			block = DataBlock.of(Arrays.copyOfRange(rows, chunk[1], chunk[1] + chunk[2]));
+			if (quantization > 0)
+				block = block.quantize(quantization, quantizationMin, quantizationMax);
+			total = rows.length;
+		} else {
+			double[] points = (double[]) array;
+			block = DataBlock.of(Arrays.copyOfRange(points, chunk[1], chunk[1] + chunk[2]));
+			total = points.length;
+		}
+
+		return new JsonObject().add("version", version).add("chunk", index).add("trace", traces.get(chunk[0]))
+				.add("key", keys.get(chunk[0])).add("offset", chunk[1]).add("total", total)
+				.add("rows", array instanceof double[][]).add("value", block.toDataJson());
+	}
+
+	/**
+	 * @param index int - Index of the chunk
+	 * @return boolean - true for the last chunk
+	 */
+	public boolean isLast(int index) {
+		return index == plan().size() - 1;
+	}
+
+	private JsonObject finish(int trace) {
+		while (finish.size() <= trace)
+			finish.add(null);
+		if (finish.get(trace) == null)
+			finish.set(trace, new JsonObject());
+		return finish.get(trace);
+	}
+
+	private JsonArray remove(int trace) {
+		while (remove.size() <= trace)
+			remove.add(null);
+		if (remove.get(trace) == null)
+			remove.set(trace, new JsonArray());
+		return remove.get(trace);
+	}
+
+	// Chunks of the arrays of a trace in turns, trace after trace
+	private List<int[]> plan() {
+
+		if (chunks != null)
+			return chunks;
+
+		chunks = new ArrayList<int[]>();
+		int first = 0;
+		while (first < arrays.size()) {
+			int last = first;
+			while (last + 1 < arrays.size() && traces.get(last + 1).equals(traces.get(first)))
+				last++;
+
+			int length = 0;
+			int step = CHUNK;
+			for (int a = first; a <= last; a++) {
+				Object array = arrays.get(a);
+				if (array instanceof double[][]) {
+					double[][] rows = (double[][]) array;
+					length = Math.max(length, rows.length);
+					int columns = rows.length == 0 ? 1 : Math.max(rows[0].length, 1);
+					step = Math.min(step, Math.max(1, CHUNK / columns));
+				} else {
+					length = Math.max(length, ((double[]) array).length);
+				}
+			}
+
+			for (int offset = 0; offset < length; offset += step) {
+				for (int a = first; a <= last; a++) {
+					Object array = arrays.get(a);
+					int size = array instanceof double[][] ? ((double[][]) array).length : ((double[]) array).length;
+					if (offset < size)
+						chunks.add(new int[] { a, offset, Math.min(step, size - offset) });
+				}
+			}
+			first = last + 1;
+		}
+		return chunks;
+	}
+}
@@ -0,0 +1,104 @@
+package plotly.encoding;
+
+/**
+ * Last rows of a matrix, in one array of fixed capacity. <br>
+ * Appending a row past the capacity overwrites the oldest one : the memory
+ * stays the same however many rows arrive (spectrograms, waterfalls).<br>
+ * <br>
+ * Exemple:<br>
+ * RowRing ring = new RowRing(600, 1024);<br>
+ * ring.append(spectrum);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class RowRing {
+
+	private final int capacity;
+	private final int columns;
+	private final double[] values;
+
+	// Slot of the oldest row, and number of rows held
+	private int first = 0;
+	private int size = 0;
+
+	/**
+	 * @param capacity int - Number of rows kept
+	 * @param columns  int - Length of the rows
+	 */
+	public RowRing(int capacity, int columns) {
+		if (capacity <= 0 || columns <= 0)
+			throw new IllegalArgumentException("Capacity and columns must be positive");
+		this.capacity = capacity;
+		this.columns = columns;
+		this.values = new double[capacity * columns];
+	}
+
+	/**
+	 * Copy a row after the last one, the oldest row is dropped when the ring is
+	 * full.
+	 *
+	 * @param row double[] - columns values
+	 */
+	public void append(double[] row) {
+		if (row.length != columns)
+			throw new IllegalArgumentException("Row of " + row.length + " values instead of " + columns);
+
+		int slot = (first + size) % capacity;
+		System.arraycopy(row, 0, values, slot * columns, columns);
+		if (size < capacity)
+			size++;
+		else
+			first = (first + 1) % capacity;
+	}
+
+	/**
+	 * @param row    int - 0 for the oldest row
+	 * @param column int
+	 * @return double
+	 */
+	public double get(int row, int column) {
+		if (row < 0 || row >= size || column < 0 || column >= columns)
+			throw new IndexOutOfBoundsException("Cell " + row + ", " + column);
+		return values[((first + row) % capacity) * columns + column];
+	}
+
+	/**
+	 * @return double[][] - Copy of the rows, the oldest first
+	 */
+	public double[][] toMatrix() {
+		double[][] matrix = new double[size][columns];
+		for (int i = 0; i < size; i++)
+			System.arraycopy(values, ((first + i) % capacity) * columns, matrix[i], 0, columns);
+		return matrix;
+	}
+
+	/**
+	 * Remove all the rows.
+	 */
+	public void clear() {
+		first = 0;
+		size = 0;
+	}
+
+	/**
+	 * @return int - Number of rows held
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return int - Number of rows kept
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return int - Length of the rows
+	 */
+	public int getColumns() {
+		return columns;
+	}
+}
@@ -0,0 +1,268 @@
+package plotly.encoding;
+
+import java.util.Arrays;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Matrix holding only its non-empty cells (compressed sparse rows). <br>
+ * The other cells have the fill value (0, or NaN for missing cells). The
+ * matrix is sent as three blocks : first value of each row, column of each
+ * value, values. The client expands them into typed rows
+ * (PlotlyUtils.blocks, plotlyUtils.js).<br>
+ * <br>
+ * Exemple:<br>
+ * SparseMatrix counts = SparseMatrix.ofCoo(hosts, minutes, hostIndexes,
+ * minuteIndexes, events, 0);<br>
+ * PlotlyHeatMap ph = new PlotlyHeatMap(HomeComposite, SWT.NONE, counts);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class SparseMatrix {
+
+	private final int rows;
+	private final int columns;
+	private final double fill;
+
+	// Values of row i : pointers[i] to pointers[i + 1], columns in increasing
+	// order
+	private final int[] pointers;
+	private final int[] indexes;
+	private final double[] values;
+
+	private SparseMatrix(int rows, int columns, int[] pointers, int[] indexes, double[] values, double fill) {
+		this.rows = rows;
+		this.columns = columns;
+		this.pointers = pointers;
+		this.indexes = indexes;
+		this.values = values;
+		this.fill = fill;
+	}
+
+	/**
+	 * Matrix of compressed sparse rows (kept, not copied).
+	 *
+	 * @param rows     int
+	 * @param columns  int
+	 * @param pointers int[] - rows + 1 values : first value of each row, then
+	 *                 the number of values
+	 * @param indexes  int[] - Column of each value, in increasing order in a row
+	 * @param values   double[]
+	 * @param fill     double - Value of the other cells (0 or NaN)
+	 * @return SparseMatrix
+	 */
+	public static SparseMatrix ofCsr(int rows, int columns, int[] pointers, int[] indexes, double[] values,
+			double fill) {
+
+		if (rows < 0 || columns < 0 || pointers.length != rows + 1 || indexes.length != values.length
+				|| pointers[0] != 0 || pointers[rows] != values.length)
+			throw new IllegalArgumentException("Compressed sparse rows of inconsistent lengths");
+
+		for (int i = 0; i < rows; i++) {
+			if (pointers[i] > pointers[i + 1])
+				throw new IllegalArgumentException("Decreasing row pointer at row " + i);
+			for (int k = pointers[i]; k < pointers[i + 1]; k++)
+				if (indexes[k] < 0 || indexes[k] >= columns || (k > pointers[i] && indexes[k] <= indexes[k - 1]))
+					throw new IllegalArgumentException("Column out of range or not increasing at row " + i);
+		}
+
+		return new SparseMatrix(rows, columns, pointers, indexes, values, fill);
+	}
+
+	/**
+	 * Matrix of cells given in any order (coordinates list). The values of a
+	 * cell given twice are added.
+	 *
+	 * @param rows          int
+	 * @param columns       int
+	 * @param rowIndexes    int[] - Row of each value
+	 * @param columnIndexes int[] - Column of each value
+	 * @param values        double[]
+	 * @param fill          double - Value of the other cells (0 or NaN)
+	 * @return SparseMatrix
+	 */
+	public static SparseMatrix ofCoo(int rows, int columns, int[] rowIndexes, int[] columnIndexes, double[] values,
+			double fill) {
+
+		if (rows < 0 || columns < 0 || rowIndexes.length != values.length || columnIndexes.length != values.length)
+			throw new IllegalArgumentException("Coordinates and values of different lengths");
+
+		// Counting sort by column, then stable by row : columns increase in a row
+		int[] byColumn = order(columnIndexes, columns, null);
+		int[] order = order(rowIndexes, rows, byColumn);
+
+		int[] pointers = new int[rows + 1];
+		int[] indexes = new int[values.length];
+		double[] sums = new double[values.length];
+		int count = 0;
+		for (int k = 0; k < order.length; k++) {
+			int row = rowIndexes[order[k]];
+			int column = columnIndexes[order[k]];
+			// Rows come in order : the row holds the last value if it counts one
+			if (pointers[row + 1] > 0 && indexes[count - 1] == column)
+				sums[count - 1] += values[order[k]];
+			else {
+				indexes[count] = column;
+				sums[count] = values[order[k]];
+				count++;
+				pointers[row + 1]++;
+			}
+		}
+		for (int i = 0; i < rows; i++)
+			pointers[i + 1] += pointers[i];
+
+		if (count < values.length) {
+			int[] cutIndexes = new int[count];
+			double[] cutSums = new double[count];
+			System.arraycopy(indexes, 0, cutIndexes, 0, count);
+			System.arraycopy(sums, 0, cutSums, 0, count);
+			indexes = cutIndexes;
+			sums = cutSums;
+		}
+		return new SparseMatrix(rows, columns, pointers, indexes, sums, fill);
+	}
+
+	/**
+	 * Non-empty cells of a dense matrix.
+	 *
+	 * @param values double[][] - Rows must have the same length
+	 * @param fill   double - Value of the cells left out (0 or NaN)
+	 * @return SparseMatrix
+	 */
+	public static SparseMatrix of(double[][] values, double fill) {
+
+		int width = values.length == 0 ? 0 : values[0].length;
+		int count = 0;
+		for (double[] row : values)
+			for (double value : row)
+				if (!same(value, fill))
+					count++;
+
+		int[] pointers = new int[values.length + 1];
+		int[] indexes = new int[count];
+		double[] kept = new double[count];
+		int k = 0;
+		for (int i = 0; i < values.length; i++) {
+			for (int j = 0; j < width; j++)
+				if (!same(values[i][j], fill)) {
+					indexes[k] = j;
+					kept[k++] = values[i][j];
+				}
+			pointers[i + 1] = k;
+		}
+		return new SparseMatrix(values.length, width, pointers, indexes, kept, fill);
+	}
+
+	/**
+	 * @return int - Number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return int - Number of columns
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return int - Number of non-empty cells
+	 */
+	public int getNonEmpty() {
+		return values.length;
+	}
+
+	/**
+	 * @return double - Value of the empty cells
+	 */
+	public double getFill() {
+		return fill;
+	}
+
+	/**
+	 * @param row    int
+	 * @param column int
+	 * @return double - Value of the cell
+	 */
+	public double get(int row, int column) {
+		if (row < 0 || row >= rows || column < 0 || column >= columns)
+			throw new IndexOutOfBoundsException("Cell " + row + ", " + column);
+		int low = pointers[row];
+		int high = pointers[row + 1] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (indexes[middle] < column)
+				low = middle + 1;
+			else if (indexes[middle] > column)
+				high = middle - 1;
+			else
+				return values[middle];
+		}
+		return fill;
+	}
+
+	/**
+	 * @return double[][] - Dense matrix
+	 */
+	public double[][] toDense() {
+		double[][] dense = new double[rows][columns];
+		for (int i = 0; i < rows; i++) {
+			if (fill != 0)
+				Arrays.fill(dense[i], fill);
+			for (int k = pointers[i]; k < pointers[i + 1]; k++)
+				dense[i][indexes[k]] = values[k];
+		}
+		return dense;
+	}
+
+	/**
+	 * @return DataBlock - Block of the non-empty values, row after row
+	 */
+	public DataBlock valuesBlock() {
+		return DataBlock.of(values);
+	}
+
+	/**
+	 * Json form of the matrix read by PlotlyUtils.blocks.<br>
+	 * { csr : [rows, columns], fill : value or null (NaN), pointers : block,
+	 * indexes : block, values : block }
+	 *
+	 * @param cache  BlockCache
+	 * @param values DataBlock - valuesBlock(), or its quantized form
+	 * @return JsonObject
+	 */
+	public JsonObject toJson(BlockCache cache, DataBlock values) {
+		return new JsonObject().add("csr", new JsonArray().add(rows).add(columns))
+				.add("fill", Double.isNaN(fill) ? JsonValue.NULL : JsonValue.valueOf(fill))
+				.add("pointers", cache.encode(DataBlock.ofInt(pointers)))
+				.add("indexes", cache.encode(DataBlock.ofInt(indexes))).add("values", cache.encode(values));
+	}
+
+	// Positions sorted by key (counting sort), stable over the given order
+	private static int[] order(int[] keys, int range, int[] previous) {
+		int[] counts = new int[range + 1];
+		for (int key : keys) {
+			if (key < 0 || key >= range)
+				throw new IllegalArgumentException("Index out of range : " + key);
+			counts[key + 1]++;
+		}
+		for (int i = 0; i < range; i++)
+			counts[i + 1] += counts[i];
+
+		int[] order = new int[keys.length];
+		for (int k = 0; k < keys.length; k++) {
+			int position = previous == null ? k : previous[k];
+			order[counts[keys[position]]++] = position;
+		}
+		return order;
+	}
+
+	private static boolean same(double value, double fill) {
+		return value == fill || (Double.isNaN(value) && Double.isNaN(fill));
+	}
+}
@@ -0,0 +1,294 @@
+package plotly.encoding;
+
+/**
+ * Statistics over large arrays of doubles : min and max, sum, mean and
+ * variance, quantization. <br>
+ * The loops carry four independent lanes over the array (and a scalar loop
+ * for the last values), the form the JIT compiler turns into vector
+ * instructions when it can, without the dependency of every value on the
+ * previous one of a plain loop. The mean and the variance are computed in one
+ * pass by the update of Welford on each lane, the lanes merged by the formula
+ * of Chan, on the values shifted by the first one : no loss of precision on
+ * large values of small variance, where the sum of squares fails.<br>
+ * <br>
+ * Exemple:<br>
+ * double[] meanVariance = StatKernels.meanVariance(yValues);<br>
+ * double sd = Math.sqrt(meanVariance[1]);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class StatKernels {
+
+	private static final int LANES = 4;
+
+	private StatKernels() {
+	}
+
+	/**
+	 * Smallest value, NaN values skipped.
+	 *
+	 * @param values double[]
+	 * @param from   int - First index
+	 * @param to     int - Index after the last
+	 * @return double - Double.POSITIVE_INFINITY if no value
+	 */
+	public static double min(double[] values, int from, int to) {
+
+		double m0 = Double.POSITIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+		int i = from;
+		for (; i + LANES <= to; i += LANES) {
+			// NaN compares false : skipped
+			m0 = values[i] < m0 ? values[i] : m0;
+			m1 = values[i + 1] < m1 ? values[i + 1] : m1;
+			m2 = values[i + 2] < m2 ? values[i + 2] : m2;
+			m3 = values[i + 3] < m3 ? values[i + 3] : m3;
+		}
+		for (; i < to; i++)
+			m0 = values[i] < m0 ? values[i] : m0;
+		return Math.min(Math.min(m0, m1), Math.min(m2, m3));
+	}
+
+	/**
+	 * Largest value, NaN values skipped.
+	 *
+	 * @param values double[]
+	 * @param from   int - First index
+	 * @param to     int - Index after the last
+	 * @return double - Double.NEGATIVE_INFINITY if no value
+	 */
+	public static double max(double[] values, int from, int to) {
+
+		double m0 = Double.NEGATIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+		int i = from;
+		for (; i + LANES <= to; i += LANES) {
+			m0 = values[i] > m0 ? values[i] : m0;
+			m1 = values[i + 1] > m1 ? values[i + 1] : m1;
+			m2 = values[i + 2] > m2 ? values[i + 2] : m2;
+			m3 = values[i + 3] > m3 ? values[i + 3] : m3;
+		}
+		for (; i < to; i++)
+			m0 = values[i] > m0 ? values[i] : m0;
+		return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+	}
+
+	/**
+	 * Smallest and largest finite values : NaN and infinite values skipped.
+	 *
+	 * @param values double[]
+	 * @return double[] - { min, max }, { 0, 0 } if no finite value
+	 */
+	public static double[] finiteRange(double[] values) {
+		double[] range = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		finiteRange(values, range);
+		return range[0] > range[1] ? new double[] { 0, 0 } : range;
+	}
+
+	/**
+	 * Smallest and largest finite values of a matrix : NaN and infinite values
+	 * skipped.
+	 *
+	 * @param values double[][]
+	 * @return double[] - { min, max }, { 0, 0 } if no finite value
+	 */
+	public static double[] finiteRange(double[][] values) {
+		double[] range = { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (double[] row : values)
+			finiteRange(row, range);
+		return range[0] > range[1] ? new double[] { 0, 0 } : range;
+	}
+
+	// range widened to the finite values
+	private static void finiteRange(double[] values, double[] range) {
+
+		double min0 = Double.POSITIVE_INFINITY, min1 = min0;
+		double max0 = Double.NEGATIVE_INFINITY, max1 = max0;
+		int i = 0;
+		for (; i + 2 <= values.length; i += 2) {
+			double v0 = values[i], v1 = values[i + 1];
+			// Infinite values become NaN : skipped
+			v0 += v0 - v0;
+			v1 += v1 - v1;
+			min0 = v0 < min0 ? v0 : min0;
+			max0 = v0 > max0 ? v0 : max0;
+			min1 = v1 < min1 ? v1 : min1;
+			max1 = v1 > max1 ? v1 : max1;
+		}
+		for (; i < values.length; i++) {
+			double v = values[i];
+			v += v - v;
+			min0 = v < min0 ? v : min0;
+			max0 = v > max0 ? v : max0;
+		}
+		range[0] = Math.min(range[0], Math.min(min0, min1));
+		range[1] = Math.max(range[1], Math.max(max0, max1));
+	}
+
+	/**
+	 * Whether the finite values are between two bounds.
+	 *
+	 * @param values double[]
+	 * @param from   int - First index
+	 * @param to     int - Index after the last
+	 * @param min    double
+	 * @param max    double
+	 * @return boolean - true if no finite value is out of [min, max] (NaN and
+	 *         infinite values are not checked)
+	 */
+	public static boolean within(double[] values, int from, int to, double min, double max) {
+
+		boolean within = true;
+		for (int i = from; i < to; i++) {
+			double value = values[i];
+			// Infinite values become NaN : compare false
+			value += value - value;
+			within &= !(value < min || value > max);
+		}
+		return within;
+	}
+
+	/**
+	 * Sum of the values, NaN values skipped.
+	 *
+	 * @param values double[]
+	 * @param from   int - First index
+	 * @param to     int - Index after the last
+	 * @return double
+	 */
+	public static double sum(double[] values, int from, int to) {
+
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for (; i + LANES <= to; i += LANES) {
+			s0 += values[i] == values[i] ? values[i] : 0;
+			s1 += values[i + 1] == values[i + 1] ? values[i + 1] : 0;
+			s2 += values[i + 2] == values[i + 2] ? values[i + 2] : 0;
+			s3 += values[i + 3] == values[i + 3] ? values[i + 3] : 0;
+		}
+		for (; i < to; i++)
+			s0 += values[i] == values[i] ? values[i] : 0;
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * Number of values that are not NaN.
+	 *
+	 * @param values double[]
+	 * @param from   int - First index
+	 * @param to     int - Index after the last
+	 * @return int
+	 */
+	public static int count(double[] values, int from, int to) {
+
+		int count = 0;
+		for (int i = from; i < to; i++)
+			count += values[i] == values[i] ? 1 : 0;
+		return count;
+	}
+
+	/**
+	 * Mean and population variance (divided by the number of values), as
+	 * StatUtils.mean and StatUtils.populationVariance of commons-math : a NaN
+	 * value gives NaN.
+	 *
+	 * @param values double[]
+	 * @return double[] - { mean, variance }, { NaN, NaN } if no value
+	 */
+	public static double[] meanVariance(double[] values) {
+
+		int length = values.length;
+		if (length == 0)
+			return new double[] { Double.NaN, Double.NaN };
+
+		// Values shifted by the first one : the means stay of the order of the
+		// deviations, their rounding errors too (the subtraction of close values
+		// is exact)
+		double shift = values[0];
+
+		// Lanes take the same number of values : one division by step
+		double mean0 = 0, mean1 = 0, mean2 = 0, mean3 = 0;
+		double m0 = 0, m1 = 0, m2 = 0, m3 = 0;
+		int blocks = length / LANES;
+		for (int n = 1; n <= blocks; n++) {
+			int i = (n - 1) * LANES;
+			double inverse = 1.0 / n;
+			double x0 = values[i] - shift;
+			double x1 = values[i + 1] - shift;
+			double x2 = values[i + 2] - shift;
+			double x3 = values[i + 3] - shift;
+			double d0 = x0 - mean0;
+			double d1 = x1 - mean1;
+			double d2 = x2 - mean2;
+			double d3 = x3 - mean3;
+			mean0 += d0 * inverse;
+			mean1 += d1 * inverse;
+			mean2 += d2 * inverse;
+			mean3 += d3 * inverse;
+			m0 += d0 * (x0 - mean0);
+			m1 += d1 * (x1 - mean1);
+			m2 += d2 * (x2 - mean2);
+			m3 += d3 * (x3 - mean3);
+		}
+
+		// Lanes of equal counts merged two by two, then the last values one by one
+		double count = blocks;
+		double mean = mean0, m = m0;
+		if (blocks > 0) {
+			double delta01 = mean1 - mean0;
+			double delta23 = mean3 - mean2;
+			double mean01 = mean0 + delta01 / 2;
+			double mean23 = mean2 + delta23 / 2;
+			double m01 = m0 + m1 + delta01 * delta01 * count / 2;
+			double m23 = m2 + m3 + delta23 * delta23 * count / 2;
+			double delta = mean23 - mean01;
+			mean = mean01 + delta / 2;
+			m = m01 + m23 + delta * delta * count;
+			count *= LANES;
+		}
+		for (int i = blocks * LANES; i < length; i++) {
+			count++;
+			double x = values[i] - shift;
+			double d = x - mean;
+			mean += d / count;
+			m += d * (x - mean);
+		}
+		return new double[] { shift + mean, m / count };
+	}
+
+	/**
+	 * Indexes of the values on 8 or 16 bits, little endian : the values are
+	 * clamped between min and max, index i stands for min + i * scale. NaN
+	 * values take the last index (255 or 65535).
+	 *
+	 * @param values double[]
+	 * @param min    double - Value of index 0
+	 * @param max    double - Largest value
+	 * @param scale  double - Step between two indexes, 0 for all values at
+	 *               index 0
+	 * @param bits   int - 8 or 16
+	 * @return byte[]
+	 */
+	public static byte[] quantize(double[] values, double min, double max, double scale, int bits) {
+
+		int levels = bits == 8 ? 255 : 65535;
+		byte[] bytes = new byte[values.length * bits / 8];
+		for (int i = 0; i < values.length; i++) {
+			double value = values[i];
+			int index;
+			if (value != value)
+				index = levels;
+			else if (scale == 0)
+				index = 0;
+			else
+				index = (int) Math.round((Math.min(max, Math.max(min, value)) - min) / scale);
+
+			if (bits == 8)
+				bytes[i] = (byte) index;
+			else {
+				bytes[2 * i] = (byte) index;
+				bytes[2 * i + 1] = (byte) (index >>> 8);
+			}
+		}
+		return bytes;
+	}
+}
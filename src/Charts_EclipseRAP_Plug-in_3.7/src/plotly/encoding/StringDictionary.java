@@ -0,0 +1,125 @@
+package plotly.encoding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+
+/**
+ * Table of the distinct strings of a chart : categories, texts, labels. <br>
+ * A column of strings is sent as the codes of its values in the table, the
+ * table once for the whole chart, and expanded by PlotlyUtils.dictionary
+ * (plotlyUtils.js). The chart keeps the instances of the table in its columns,
+ * so a label repeated by thousands of bars is held once.<br>
+ * Values quoted for the literal payloads ("'jan'") are sent without their
+ * quotes.<br>
+ * <br>
+ * Exemple:<br>
+ * StringDictionary dictionary = new StringDictionary();<br>
+ * dictionary.intern(categories);<br>
+ * trace.set("x", dictionary.column(categories));<br>
+ * json.add("dictionary", dictionary.toJson());<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class StringDictionary {
+
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+	private final List<String> values = new ArrayList<String>();
+
+	/**
+	 * Instance of the table equal to the value, the value is added if new.
+	 *
+	 * @param value String
+	 * @return String
+	 */
+	public String intern(String value) {
+		return values.get(code(value));
+	}
+
+	/**
+	 * Replace the values of a column by the instances of the table.
+	 *
+	 * @param column String[] - Changed in place
+	 * @return String[] - column
+	 */
+	public String[] intern(String[] column) {
+		for (int i = 0; i < column.length; i++)
+			if (column[i] != null)
+				column[i] = intern(column[i]);
+		return column;
+	}
+
+	/**
+	 * Code of a value, the value is added if new.
+	 *
+	 * @param value String
+	 * @return int - Index in the table
+	 */
+	public int code(String value) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = values.size();
+			codes.put(value, code);
+			values.add(value);
+		}
+		return code;
+	}
+
+	/**
+	 * @param code int
+	 * @return String - Value of the code
+	 */
+	public String get(int code) {
+		return values.get(code);
+	}
+
+	/**
+	 * @return int - Number of distinct values
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Remove all the values.
+	 */
+	public void clear() {
+		codes.clear();
+		values.clear();
+	}
+
+	/**
+	 * Json form of a column read by PlotlyUtils.dictionary, its values are
+	 * added to the table if new.<br>
+	 * { codes : [ code, ... ] }, -1 for null values
+	 *
+	 * @param column String[]
+	 * @return JsonObject
+	 */
+	public JsonObject column(String[] column) {
+		JsonArray json = new JsonArray();
+		for (String value : column)
+			json.add(value == null ? -1 : code(value));
+		return new JsonObject().add("codes", json);
+	}
+
+	/**
+	 * Json form of the table : [ value, ... ], without the quotes of quoted
+	 * values.
+	 *
+	 * @return JsonArray
+	 */
+	public JsonArray toJson() {
+		JsonArray json = new JsonArray();
+		for (String value : values)
+			json.add(value.length() > 1 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\''
+					? value.substring(1, value.length() - 1)
+					: value);
+		return json;
+	}
+}
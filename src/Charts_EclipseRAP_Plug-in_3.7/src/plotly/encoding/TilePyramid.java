@@ -0,0 +1,288 @@
+package plotly.encoding;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+
+/**
+ * Levels of a matrix cut into tiles, for zoom and pan on large heatmaps. <br>
+ * Level 0 is the matrix, level k is the matrix pooled to ceil(rows / 2^k) x
+ * ceil(columns / 2^k) cells, up to the level held by one tile : cell (i, j) of
+ * level k pools the 2^k x 2^k cells from (i 2^k, j 2^k) of the matrix. Each
+ * level is pooled from the previous one (MEAN levels from the sums and counts
+ * of the previous one), about a third of the matrix in all. Levels are
+ * computed once; tiles (TILE x TILE cells of a level) are cut on demand and
+ * kept in a bounded LRU cache.<br>
+ * The client asks the tiles under its axes ranges at the level fitting its
+ * size ("Tiles" event) and keeps its own LRU cache (PlotlyUtils.tiles,
+ * plotlyUtils.js).
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class TilePyramid {
+
+	// Rows and columns of a tile
+	public static final int TILE = 256;
+
+	// Tiles kept by the server, same bound as PlotlyUtils.tiles.maxTiles
+	private static final int CAPACITY = 256;
+
+	private static final AtomicInteger versions = new AtomicInteger();
+
+	private final int version = versions.incrementAndGet();
+	private final int rows;
+	private final int columns;
+	private final MatrixPooling.Aggregator aggregator;
+	private final List<double[][]> levels = new ArrayList<double[][]>();
+
+	// Bits of the quantized tiles, 0 to send them whole, and their bounds
+	private int quantization = 0;
+	private double quantizationMin, quantizationMax;
+
+	private final Map<String, DataBlock> tiles = new LinkedHashMap<String, DataBlock>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, DataBlock> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	/**
+	 * @param values     double[][] - Rows must have the same length (kept, not
+	 *                   copied)
+	 * @param aggregator MatrixPooling.Aggregator - Pooling of the levels
+	 */
+	public TilePyramid(double[][] values, MatrixPooling.Aggregator aggregator) {
+
+		rows = values.length;
+		columns = values.length == 0 ? 0 : values[0].length;
+		this.aggregator = aggregator;
+
+		levels.add(values);
+		double[][] sums = values;
+		int[][] counts = null;
+		for (int factor = 2; ceil(rows, factor / 2) > TILE || ceil(columns, factor / 2) > TILE; factor *= 2) {
+			double[][] finer = levels.get(levels.size() - 1);
+			double[][] level = new double[ceil(finer.length, 2)][ceil(finer[0].length, 2)];
+			if (aggregator == MatrixPooling.Aggregator.MEAN) {
+				int[][] levelCounts = new int[level.length][level[0].length];
+				double[][] levelSums = new double[level.length][level[0].length];
+				halve(sums, counts, levelSums, levelCounts, level);
+				sums = levelSums;
+				counts = levelCounts;
+			} else
+				halve(finer, level, aggregator);
+			levels.add(level);
+		}
+	}
+
+	/**
+	 * @param values     double[][]
+	 * @param aggregator MatrixPooling.Aggregator
+	 * @return boolean - true if the pyramid pools this matrix (the same array)
+	 *         with this aggregator
+	 */
+	public boolean isOf(double[][] values, MatrixPooling.Aggregator aggregator) {
+		return levels.get(0) == values && this.aggregator == aggregator;
+	}
+
+	/**
+	 * Center of each cell of a level, in indexes of the matrix.
+	 *
+	 * @param length int - Number of rows or columns of the matrix
+	 * @param level  int
+	 * @return JsonArray
+	 */
+	public static JsonArray centers(int length, int level) {
+		JsonArray centers = new JsonArray();
+		long factor = 1L << level;
+		for (long start = 0; start < length; start += factor)
+			centers.add((start + Math.min(start + factor, length) - 1) / 2.0);
+		return centers;
+	}
+
+	/**
+	 * Finest level whose whole matrix fits in the given size.
+	 *
+	 * @param width  int - Columns shown
+	 * @param height int - Rows shown
+	 * @return int
+	 */
+	public int overviewLevel(int width, int height) {
+		for (int level = 0; level < levels.size(); level++)
+			if (getLevel(level).length <= height && getLevel(level)[0].length <= width)
+				return level;
+		return levels.size() - 1;
+	}
+
+	/**
+	 * @param level int
+	 * @return double[][] - Pooled matrix of the level
+	 */
+	public double[][] getLevel(int level) {
+		return levels.get(level);
+	}
+
+	/**
+	 * To send the tiles quantized (DataBlock.quantize) between the bounds of
+	 * the whole matrix.
+	 *
+	 * @param bits int - 8 or 16, 0 to send the tiles whole (default)
+	 * @param min  double - Smallest finite value of the matrix
+	 * @param max  double - Largest finite value of the matrix
+	 */
+	public synchronized void setQuantization(int bits, double min, double max) {
+		if (bits != quantization || min != quantizationMin || max != quantizationMax)
+			tiles.clear();
+		quantization = bits;
+		quantizationMin = min;
+		quantizationMax = max;
+	}
+
+	/**
+	 * Json form of the pyramid read by plotlyFast.js.<br>
+	 * { version, rows, columns, tile, levels : [ [rows, columns], ... ] }
+	 *
+	 * @return JsonObject
+	 */
+	public JsonObject toJson() {
+
+		JsonArray sizes = new JsonArray();
+		for (double[][] level : levels)
+			sizes.add(new JsonArray().add(level.length).add(level.length == 0 ? 0 : level[0].length));
+
+		return new JsonObject().add("version", version).add("rows", rows).add("columns", columns).add("tile", TILE)
+				.add("levels", sizes);
+	}
+
+	/**
+	 * Json form of the tiles asked by the client.<br>
+	 * { version, level, tiles : [ { row, column, z : block }, ... ] }
+	 *
+	 * @param version   int - Version asked by the client
+	 * @param level     int
+	 * @param requested JsonArray - [ [row, column], ... ] indexes of the tiles
+	 * @return JsonObject - null if the version is outdated or the level unknown
+	 */
+	public JsonObject tiles(int version, int level, JsonArray requested) {
+
+		if (version != this.version || level < 0 || level >= levels.size())
+			return null;
+
+		// Tiles are kept by the client : blocks are not added to the BlockCache
+		JsonArray sent = new JsonArray();
+		for (int i = 0; i < requested.size(); i++) {
+			int row = requested.get(i).asArray().get(0).asInt();
+			int column = requested.get(i).asArray().get(1).asInt();
+			DataBlock tile = tile(level, row, column);
+			if (tile != null)
+				sent.add(new JsonObject().add("row", row).add("column", column).add("z", tile.toDataJson()));
+		}
+
+		return new JsonObject().add("version", version).add("level", level).add("tiles", sent);
+	}
+
+	/**
+	 * Tile of a level.
+	 *
+	 * @param level  int
+	 * @param row    int - Row of the tile
+	 * @param column int - Column of the tile
+	 * @return DataBlock - null if out of the level
+	 */
+	public synchronized DataBlock tile(int level, int row, int column) {
+
+		String key = level + ":" + row + ":" + column;
+		DataBlock tile = tiles.get(key);
+		if (tile != null)
+			return tile;
+
+		double[][] values = levels.get(level);
+		int width = values.length == 0 ? 0 : values[0].length;
+		int row0 = row * TILE;
+		int column0 = column * TILE;
+		if (row < 0 || column < 0 || row0 >= values.length || column0 >= width)
+			return null;
+
+		double[][] cut = new double[Math.min(TILE, values.length - row0)][];
+		for (int i = 0; i < cut.length; i++) {
+			cut[i] = new double[Math.min(TILE, width - column0)];
+			System.arraycopy(values[row0 + i], column0, cut[i], 0, cut[i].length);
+		}
+
+		tile = DataBlock.of(cut);
+		if (quantization > 0)
+			tile = tile.quantize(quantization, quantizationMin, quantizationMax);
+		tiles.put(key, tile);
+		return tile;
+	}
+
+	// Cells of level pooling the 2 x 2 cells of finer (NaN skipped)
+	private static void halve(final double[][] finer, final double[][] level,
+			final MatrixPooling.Aggregator aggregator) {
+
+		ParallelEncoding.run(level.length, (long) finer.length * finer[0].length, new ParallelEncoding.Task() {
+			@Override
+			public void run(int i) {
+				for (int j = 0; j < level[i].length; j++) {
+					// FIRST : first cell of the matrix, NaN or not
+					if (aggregator == MatrixPooling.Aggregator.FIRST) {
+						level[i][j] = finer[2 * i][2 * j];
+						continue;
+					}
+					double result = Double.NaN;
+					for (int r = 2 * i; r < Math.min(2 * i + 2, finer.length); r++)
+						for (int c = 2 * j; c < Math.min(2 * j + 2, finer[r].length); c++) {
+							double value = finer[r][c];
+							if (value != value)
+								continue;
+							if (result != result
+									|| (aggregator == MatrixPooling.Aggregator.MAX ? value > result : value < result))
+								result = value;
+						}
+					level[i][j] = result;
+				}
+			}
+		});
+	}
+
+	// Sums and counts of level pooling the 2 x 2 cells of the finer sums and
+	// counts (null counts : finer is the matrix, NaN skipped), and the means
+	private static void halve(final double[][] sums, final int[][] counts, final double[][] levelSums,
+			final int[][] levelCounts, final double[][] level) {
+
+		ParallelEncoding.run(level.length, (long) sums.length * sums[0].length, new ParallelEncoding.Task() {
+			@Override
+			public void run(int i) {
+				for (int j = 0; j < level[i].length; j++) {
+					double sum = 0;
+					int count = 0;
+					for (int r = 2 * i; r < Math.min(2 * i + 2, sums.length); r++)
+						for (int c = 2 * j; c < Math.min(2 * j + 2, sums[r].length); c++) {
+							if (counts != null) {
+								sum += sums[r][c];
+								count += counts[r][c];
+							} else if (sums[r][c] == sums[r][c]) {
+								sum += sums[r][c];
+								count++;
+							}
+						}
+					levelSums[i][j] = sum;
+					levelCounts[i][j] = count;
+					level[i][j] = count == 0 ? Double.NaN : sum / count;
+				}
+			}
+		});
+	}
+
+	private static int ceil(int length, int factor) {
+		return (length + factor - 1) / factor;
+	}
+}
@@ -0,0 +1,114 @@
+package plotly.encoding;
+
+import org.eclipse.rap.json.JsonArray;
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.json.JsonValue;
+
+/**
+ * Evenly spaced coordinates sent as a start and a step. <br>
+ * Sampled signals and integer indexes are found in one pass : each value must
+ * be the start plus its index times the step, within a tolerance of the step.
+ * Scatter, bar and heatmap traces take the x0 / dx (y0 / dy) attributes of
+ * plotly.js instead of the array. Surface traces have no such attributes : the
+ * grid is sent as { grid : [start, step, count] } and expanded by
+ * PlotlyUtils.blocks (plotlyUtils.js).<br>
+ * <br>
+ * Exemple:<br>
+ * double[] grid = UniformGrid.detect(xValues, UniformGrid.TOLERANCE);<br>
+ * if (grid != null) UniformGrid.apply(trace, "x", grid);<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class UniformGrid {
+
+	/**
+	 * Default tolerance, relative to the step.
+	 */
+	public static final double TOLERANCE = 1e-9;
+
+	private UniformGrid() {
+	}
+
+	/**
+	 * Start and step of evenly spaced values.
+	 *
+	 * @param values    double[]
+	 * @param tolerance double - Largest distance to the grid, relative to the
+	 *                  step
+	 * @return double[] - { start, step }, null if the values are not evenly
+	 *         spaced (or less than 2, or not finite)
+	 */
+	public static double[] detect(double[] values, double tolerance) {
+
+		int length = values.length;
+		if (length < 2)
+			return null;
+
+		double start = values[0];
+		double step = (values[length - 1] - start) / (length - 1);
+		if (step == 0 || Double.isNaN(step) || Double.isInfinite(step))
+			return null;
+
+		double limit = Math.abs(step) * tolerance;
+		for (int i = 1; i < length - 1; i++)
+			if (!(Math.abs(values[i] - (start + i * step)) <= limit))
+				return null;
+
+		return new double[] { start, step };
+	}
+
+	/**
+	 * Start and step of Json coordinates (numbers, or numeric strings).
+	 *
+	 * @param coordinates JsonValue - Array of coordinates (or null)
+	 * @param tolerance   double
+	 * @return double[] - { start, step }, null if not evenly spaced numbers
+	 */
+	public static double[] detect(JsonValue coordinates, double tolerance) {
+
+		if (coordinates == null || !coordinates.isArray())
+			return null;
+
+		JsonArray array = coordinates.asArray();
+		double[] values = new double[array.size()];
+		for (int i = 0; i < values.length; i++) {
+			JsonValue value = array.get(i);
+			if (value.isNumber())
+				values[i] = value.asDouble();
+			else if (value.isString())
+				values[i] = DataBlock.toNumber(value.asString());
+			else
+				return null;
+			if (Double.isNaN(values[i]))
+				return null;
+		}
+		return detect(values, tolerance);
+	}
+
+	/**
+	 * Replace the coordinates of an axis of a trace by plotly.js attributes :
+	 * x0 and dx for "x", y0 and dy for "y" (the coordinates are removed).
+	 *
+	 * @param trace JsonObject
+	 * @param axis  String - "x" or "y"
+	 * @param grid  double[] - { start, step }
+	 */
+	public static void apply(JsonObject trace, String axis, double[] grid) {
+		trace.remove(axis);
+		trace.set(axis + "0", grid[0]);
+		trace.set("d" + axis, grid[1]);
+	}
+
+	/**
+	 * Json form of the grid expanded by PlotlyUtils.blocks (plotlyUtils.js).<br>
+	 * { grid : [start, step, count] }
+	 *
+	 * @param grid  double[] - { start, step }
+	 * @param count int - Number of coordinates
+	 * @return JsonObject
+	 */
+	public static JsonObject toJson(double[] grid, int count) {
+		return new JsonObject().add("grid", new JsonArray().add(grid[0]).add(grid[1]).add(count));
+	}
+}
@@ -13,13 +13,10 @@ import java.util.Map;
 import java.io.InputStream;
 import org.json.JSONObject;
 import org.json.JSONTokener;
-import org.apache.commons.lang3.math.NumberUtils;
-import org.apache.commons.math3.stat.StatUtils;
 import org.eclipse.rap.json.JsonArray;
 import org.eclipse.rap.json.JsonObject;
 import org.eclipse.rap.json.JsonValue;
 import org.eclipse.rap.rwt.RWT;
-import org.eclipse.rap.rwt.client.service.ClientFileLoader;
 import org.eclipse.rap.rwt.remote.AbstractOperationHandler;
 import org.eclipse.rap.rwt.remote.RemoteObject;
 import org.eclipse.rap.rwt.widgets.WidgetUtil;
@@ -30,6 +27,18 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 
+import plotly.encoding.BlockCache;
+import plotly.encoding.CustomData;
+import plotly.encoding.DataBlock;
+import plotly.encoding.DatasetDiff;
+import plotly.encoding.DoubleWriter;
+import plotly.encoding.ParallelEncoding;
+import plotly.encoding.StatKernels;
+import plotly.encoding.StringDictionary;
+import plotly.encoding.UniformGrid;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
 /**
  * Invoke this class to build a fast Bar chart. <br>
  * Call PlotlyBar(Composite parent, int style, double[][][] datas) to obtain
@@ -52,10 +61,27 @@ public class PlotlyBar extends Composite {
 	private final RemoteObject remoteObject;
 
 	// To rebuild
-	private static String[][][] fixedDatas;
+	private String[][][] fixedDatas;
+
+	// Diffing : copy of the dataset sent, grids of its evenly spaced columns
+	// ({ start, step } by trace and column), and its y range
+	private String[][][] sentDatas;
+	private double[][][] sentGrids;
+	private double[] sentRange;
+
+	// Significant digits of the x and y values sent as text (0 : shortest)
+	private final int[] significantDigits = { DoubleWriter.SHORTEST, DoubleWriter.SHORTEST };
+
+	// Categories and texts : one table of distinct strings for the chart
+	private final StringDictionary dictionary = new StringDictionary();
+	private String[][] texts;
 
-	private static Map<String, List<String>> selectedMap;
-	private static HashMap<String, String> optionsMap = null;
+	// Hover labels formatted by the browser : template and columns by trace
+	private String[] hoverTemplates;
+	private CustomData[] customData;
+
+	private Map<String, List<String>> selectedMap;
+	private HashMap<String, String> optionsMap = null;
 
 	// Keys for optionsMap
 	private static final String chartTitle = "title";
@@ -94,16 +120,12 @@ public class PlotlyBar extends Composite {
 	public PlotlyBar(Composite parent, int style, String[][][] datas) {
 		super(parent, style);
 
-		// Cleaner
-		optionsMap = null;
-		selectedMap = null;
-
-		ClientFileLoader loader = RWT.getClient().getService(ClientFileLoader.class);
-		loader.requireJs("js"+File.separator+"d3.min.js");
-		loader.requireJs("js"+File.separator+"plotly.js");
-		loader.requireJs("js"+File.separator+"plotlyFast.js");
+		PlotlyResources.requirePlotly("bar");
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlyFast.js");
 		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlyGraphFast");
 		remoteObject.set("parent", WidgetUtil.getId(this));
+		PlotlyMetrics.chartCreated(this);
 
 		try {
 			buildBar(datas);
@@ -118,6 +140,9 @@ public class PlotlyBar extends Composite {
 			@Override
 			public void widgetDisposed(DisposeEvent arg0) {
 				remoteObject.destroy();
+				fixedDatas = null;
+				selectedMap = null;
+				PlotlyMetrics.chartDisposed(PlotlyBar.this);
 			}
 		});
 
@@ -133,6 +158,17 @@ public class PlotlyBar extends Composite {
 					event.data = data;
 					notifyListeners(SWT.Selection, event);
 				}
+
+				if ("BlockMiss".equals(eventName)) {
+					BlockCache.getInstance().forget(data.get("hashes").asArray());
+					if (fixedDatas != null) {
+						try {
+							buildBar(fixedDatas);
+						} catch (FileNotFoundException e) {
+							e.printStackTrace();
+						}
+					}
+				}
 			}
 
 			public void handleSet(JsonObject properties) {
@@ -142,6 +178,9 @@ public class PlotlyBar extends Composite {
 						System.out.println(properties.get("selected"));
 					}
 
+					if (properties.get("cachedBlocks") != null)
+						BlockCache.getInstance().remember(properties.get("cachedBlocks").asArray());
+
 					if (properties.get("ans") != null) {
 
 						JsonValue arrayValue = properties.get("ans");
@@ -175,6 +214,7 @@ public class PlotlyBar extends Composite {
 				System.out.println("--------------------");
 			}
 		});
+		remoteObject.listen("BlockMiss", true);
 
 	}
 
@@ -203,7 +243,32 @@ public class PlotlyBar extends Composite {
 	 * 
 	 */
 	public void updateData(String[][][] datas) throws FileNotFoundException {
-		buildBar(datas);
+		// Only the changes are sent when the browser holds the previous dataset,
+		// with the y range when it moved
+		double[] yRange = yRange(datas);
+		JsonArray operations = delta(datas);
+		if (operations == null)
+			buildBar(datas);
+		else if (operations.size() > 0 || !Arrays.equals(yRange, sentRange)) {
+			JsonObject properties = new JsonObject().add("operations", operations);
+			if (!Arrays.equals(yRange, sentRange))
+				properties.add("yRange", yRange[0] != 0.0 || yRange[1] != 0.0
+						? new JsonArray().add(yRange[0]).add(yRange[1])
+						: JsonValue.NULL);
+			sentRange = yRange;
+			remoteObject.call("update", properties);
+		}
+	}
+
+	/**
+	 * To free the graph of the chart when it stays hidden (hidden tab, scrolled
+	 * out of view). The chart is drawn again when it becomes visible.<br>
+	 * 
+	 * @param millis int - Hidden time before the graph is freed, 0 to never free
+	 *               it (default)
+	 */
+	public void setReleaseHidden(int millis) {
+		remoteObject.set("releaseHidden", millis);
 	}
 
 	@Override
@@ -230,15 +295,24 @@ public class PlotlyBar extends Composite {
 		return selectedMap;
 	}
 
-	private double foundZ(double[] values, double value) {
-		double variance = StatUtils.populationVariance(values);
-		double sd = Math.sqrt(variance);
-		double mean = StatUtils.mean(values);
-		double zscore = (value - mean) / sd;
-		return zscore;
+	// Changes from the dataset sent, null to send the chart whole (most of the
+	// values changed)
+	private JsonArray delta(String[][][] datas) {
+
+		if (sentDatas == null)
+			return null;
+
+		JsonArray operations = DatasetDiff.columns(sentDatas, datas, new String[] { "x", "y" }, sentGrids);
+		if (operations != null) {
+			fixedDatas = datas;
+			sentDatas = DatasetDiff.copy(datas);
+		}
+		return operations;
 	}
 
-	private void buildBar(String[][][] datas) throws FileNotFoundException {
+	// Min and max y, the values further than 3 standard deviations from the
+	// mean left out (0 and 0 when not found). Quoted y are unquoted
+	private double[] yRange(String[][][] datas) {
 
 		double yMin = 0.0;
 		double yMax = 0.0;
@@ -251,27 +325,45 @@ public class PlotlyBar extends Composite {
 						&& datas[i][1][j].substring(datas[i][1][j].length() - 1, datas[i][1][j].length()).equals("'"))
 					datas[i][1][j] = datas[i][1][j].substring(1, datas[i][1][j].length() - 1);
 
+			// Mean and standard deviation of the trace, computed once
+			double[] meanVariance = null;
+			double sd = 0;
+
 			for (int j = 0; j < datas[i][1].length; j++) {
 
-				if (NumberUtils.isCreatable(datas[i][1][j])) {
+				if (!Double.isNaN(DataBlock.toNumber(datas[i][1][j]))) {
 
-					double[] yValues = Arrays.stream(datas[i][1]).mapToDouble(Double::parseDouble).toArray();
+					if (meanVariance == null) {
+						double[] yValues = Arrays.stream(datas[i][1]).mapToDouble(DataBlock::toNumber).toArray();
+						meanVariance = StatKernels.meanVariance(yValues);
+						sd = Math.sqrt(meanVariance[1]);
+					}
 
-					double value = Double.valueOf(datas[i][1][j]);
+					double value = DataBlock.toNumber(datas[i][1][j]);
+					boolean inside = Math.abs((value - meanVariance[0]) / sd) < 3;
 
-					if (yMin == 0.0 && Math.abs(foundZ(yValues, value)) < 3)
+					if (yMin == 0.0 && inside)
 						yMin = value;
-					else if (yMin > value && Math.abs(foundZ(yValues, value)) < 3)
+					else if (yMin > value && inside)
 						yMin = value;
 
-					if (yMax == 0.0 && Math.abs(foundZ(yValues, value)) < 3)
+					if (yMax == 0.0 && inside)
 						yMax = value;
-					else if (yMax < value && Math.abs(foundZ(yValues, value)) < 3)
+					else if (yMax < value && inside)
 						yMax = value;
 				}
 			}
 		}
 
+		return new double[] { yMin, yMax };
+	}
+
+	private void buildBar(String[][][] datas) throws FileNotFoundException {
+
+		double[] yRange = yRange(datas);
+		double yMin = yRange[0];
+		double yMax = yRange[1];
+
 		for (int i = 0; i < datas.length; i++) {
 
 			for (int j = 0; j < datas[i][0].length; j++)
@@ -300,6 +392,23 @@ public class PlotlyBar extends Composite {
 		JSONObject layout = jsonObj.getJSONObject("layout");
 		JSONObject options = jsonObj.getJSONObject("options");
 
+		// Numeric columns long enough are sent as blocks, parsed in parallel
+		DataBlock[][] blocks = ParallelEncoding.parse(datas);
+
+		// Text columns (categories) and texts sent as codes of the dictionary,
+		// the columns keep the instances of the dictionary
+		dictionary.clear();
+		boolean[][] coded = new boolean[datas.length][2];
+		for (int i = 0; i < datas.length; i++)
+			for (int j = 0; j < 2; j++)
+				if (blocks[i][j] == null && DataBlock.parse(datas[i][j]) == null) {
+					dictionary.intern(datas[i][j]);
+					coded[i][j] = true;
+				}
+		if (texts != null)
+			for (String[] traceTexts : texts)
+				dictionary.intern(traceTexts);
+
 		// DATA
 		String str = "{";
 		// TRACES
@@ -308,11 +417,6 @@ public class PlotlyBar extends Composite {
 
 			str += "{";
 
-			// x
-			str += "x: " + Arrays.toString(datas[i][0]) + ",";
-			// y
-			str += "y: " + Arrays.toString(datas[i][1]) + ",";
-
 			Iterator<String> itTrace = trace.keys();
 			while (itTrace.hasNext()) {
 				String key = itTrace.next();
@@ -326,11 +430,6 @@ public class PlotlyBar extends Composite {
 							value = optionsMap.get(legend + i);
 						break;
 
-					case text:
-						if (optionsMap.get(text + i) != null)
-							value = optionsMap.get(text + i);
-						break;
-
 					case marker:
 						if (optionsMap.get(traceColor + i) != null)
 							value = value.substring(0, 1) + optionsMap.get(traceColor + i)
@@ -415,8 +514,8 @@ public class PlotlyBar extends Composite {
 			}
 
 			if (key.equals(yAxisTitle) && (yMin != 0.0 || yMax != 0.0))
-				str += key + " : " + value.substring(0, 1) + "range : [" + yMin + "," + yMax + "], "
-						+ value.substring(1, value.length()) + ",";
+				str += key + " : " + value.substring(0, 1) + "range : [" + DoubleWriter.toString(yMin) + ","
+						+ DoubleWriter.toString(yMax) + "], " + value.substring(1, value.length()) + ",";
 			else
 				str += key + " : " + value + ",";
 		}
@@ -466,7 +565,45 @@ public class PlotlyBar extends Composite {
 
 		str += "}";
 
-		remoteObject.set("options", JsonObject.readFrom(new JSONObject(str).toString()));
+		JsonObject json = JsonObject.readFrom(new JSONObject(str).toString());
+
+		BlockCache cache = BlockCache.getInstance();
+		JsonArray inputs = json.get("inputs").asArray();
+		double[][][] grids = new double[datas.length][2][];
+		for (int i = 0; i < datas.length; i++) {
+			for (int j = 0; j < 2; j++) {
+				String axis = j == 0 ? "x" : "y";
+				// Evenly spaced columns : start and step instead of the values
+				double[] grid = blocks[i][j] != null
+						? UniformGrid.detect(blocks[i][j].toArray(), UniformGrid.TOLERANCE)
+						: null;
+				if (grid != null) {
+					UniformGrid.apply(inputs.get(i).asObject(), axis, grid);
+					grids[i][j] = grid;
+				} else if (blocks[i][j] != null)
+					inputs.get(i).asObject().add(axis, cache.encode(blocks[i][j]));
+				else if (coded[i][j])
+					inputs.get(i).asObject().add(axis, dictionary.column(datas[i][j]));
+				else {
+					// Added after the templates are read : numbers kept as written
+					inputs.get(i).asObject().add(axis, DoubleWriter.toJson(datas[i][j], significantDigits[j]));
+				}
+			}
+			if (texts != null && i < texts.length)
+				inputs.get(i).asObject().set(text, dictionary.column(texts[i]));
+			if (hoverTemplates != null && i < hoverTemplates.length && hoverTemplates[i] != null)
+				inputs.get(i).asObject().set("hovertemplate", hoverTemplates[i]);
+			if (customData != null && i < customData.length && customData[i] != null)
+				inputs.get(i).asObject().set("customdata", customData[i].toJson(cache, dictionary));
+		}
+		if (dictionary.size() > 0)
+			json.add("dictionary", dictionary.toJson());
+
+		remoteObject.set("options", json);
+
+		sentDatas = DatasetDiff.copy(datas);
+		sentGrids = grids;
+		sentRange = yRange;
 
 	}
 
@@ -614,24 +751,19 @@ public class PlotlyBar extends Composite {
 	 * To add/update text elements associated with each (x,y) pair. [ [trace1 texts,
 	 * ...], [trace2 texts, ...], ... ]
 	 * 
+	 * Texts repeated between points or traces are held and sent once (chart
+	 * dictionary).
+	 * 
 	 * @param texts String[][] - Arrays of texts (ex : [ ["jan", "feb"],
 	 *              ["2018","2019"] ]
 	 */
 	public void upTexts(String[][] texts) {
 
-		if (optionsMap == null)
-			optionsMap = new HashMap<String, String>();
-
-		for (int i = 0; i < texts.length; i++) {
-
+		for (int i = 0; i < texts.length; i++)
 			for (int j = 0; j < texts[i].length; j++)
 				texts[i][j] = "'" + texts[i][j] + "'";
 
-			if (optionsMap.containsKey(text + i) == false)
-				optionsMap.put(text + i, Arrays.toString(texts[i]));
-			else
-				optionsMap.replace(text + i, Arrays.toString(texts[i]));
-		}
+		this.texts = texts;
 
 		if (fixedDatas != null) {
 			try {
@@ -643,6 +775,77 @@ public class PlotlyBar extends Composite {
 		}
 	}
 
+	/**
+	 * To format the hover labels in the browser from a template by trace,
+	 * instead of a text by point (upTexts). The template takes the fields of
+	 * plotly.js hovertemplate : %{x}, %{y}, %{text}, %{customdata[0]}, with a
+	 * d3 format after a colon (%{y:.2f}). plotly.js 1.39 has no hovertemplate
+	 * : the labels are formatted when the chart is drawn
+	 * (PlotlyUtils.hover).<br>
+	 * 
+	 * @param templates String[] - One template by trace, null for the default
+	 *                  labels (ex : [ "%{x} : %{y:.1f} %{customdata[0]}" ])
+	 */
+	public void upHoverTemplates(String[] templates) {
+
+		hoverTemplates = templates;
+
+		if (fixedDatas != null) {
+			try {
+				buildBar(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To attach columns of values to the points, read by the hover templates
+	 * (%{customdata[column]}). Numeric columns are sent as numbers, the others
+	 * as codes of the chart dictionary.<br>
+	 * 
+	 * @param customData String[][][] - [ [ [column 0 of trace 1], [column 1 of
+	 *                   trace 1] ], ... ]
+	 */
+	public void upCustomData(String[][][] customData) {
+
+		this.customData = new CustomData[customData.length];
+		for (int i = 0; i < customData.length; i++)
+			if (customData[i] != null)
+				this.customData[i] = CustomData.of(customData[i], dictionary);
+
+		if (fixedDatas != null) {
+			try {
+				buildBar(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To attach numeric columns to the points, read by the hover templates
+	 * (%{customdata[column]}).<br>
+	 * 
+	 * @param customData double[][][] - [ [ [column 0 of trace 1], [column 1 of
+	 *                   trace 1] ], ... ]
+	 */
+	public void upCustomData(double[][][] customData) {
+
+		this.customData = new CustomData[customData.length];
+		for (int i = 0; i < customData.length; i++)
+			if (customData[i] != null)
+				this.customData[i] = CustomData.of(customData[i]);
+
+		if (fixedDatas != null) {
+			try {
+				buildBar(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	/**
 	 * To update trace's color.<br>
 	 * When you change color, all marker's values are delete, only new color stay.
@@ -817,6 +1020,40 @@ public class PlotlyBar extends Composite {
 		}
 	}
 
+	/**
+	 * To limit the significant digits of the x or y values sent as text
+	 * (columns shorter than BlockCache.MIN_VALUES, longer ones are sent as
+	 * binary blocks).<br>
+	 * 
+	 * @param axis   String - "x" or "y"
+	 * @param digits int - Significant digits (1 to 17), 0 to send the values
+	 *               as given (default)
+	 */
+	public void upSignificantDigits(String axis, int digits) {
+
+		if (digits < 0 || digits > 17)
+			SWT.error(SWT.ERROR_INVALID_RANGE);
+
+		switch (axis) {
+		case "x":
+			significantDigits[0] = digits;
+			break;
+		case "y":
+			significantDigits[1] = digits;
+			break;
+		default:
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Axis x or y only");
+		}
+
+		if (fixedDatas != null) {
+			try {
+				buildBar(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	/**
 	 * To update plot's options.<br>
 	 * 
@@ -3,6 +3,7 @@ package plotly.fastCharts;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -18,17 +19,32 @@ import org.eclipse.rap.json.JsonArray;
 import org.eclipse.rap.json.JsonObject;
 import org.eclipse.rap.json.JsonValue;
 import org.eclipse.rap.rwt.RWT;
-import org.eclipse.rap.rwt.client.service.ClientFileLoader;
 import org.eclipse.rap.rwt.remote.AbstractOperationHandler;
 import org.eclipse.rap.rwt.remote.RemoteObject;
 import org.eclipse.rap.rwt.widgets.WidgetUtil;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 
+import plotly.encoding.BlockCache;
+import plotly.encoding.DataBlock;
+import plotly.encoding.DatasetDiff;
+import plotly.encoding.DoubleWriter;
+import plotly.encoding.MatrixPooling;
+import plotly.encoding.PatchRegions;
+import plotly.encoding.Progressive;
+import plotly.encoding.RowRing;
+import plotly.encoding.SparseMatrix;
+import plotly.encoding.StatKernels;
+import plotly.encoding.TilePyramid;
+import plotly.encoding.UniformGrid;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
 /**
  * Invoke this class to build a fast HeatMap chart. <br>
  * Call PlotlyHeatMap(Composite parent, int style, double[][] datas) to obtain
@@ -47,10 +63,26 @@ public class PlotlyHeatMap extends Composite {
 	private final RemoteObject remoteObject;
 
 	// To rebuild
-	private static double[][] fixedDatas;
+	private double[][] fixedDatas;
+	private SparseMatrix sparseDatas;
+
+	// Streaming : last rows kept, and rows appended since the last sending
+	private RowRing rowRing;
+	private final ArrayDeque<double[]> appendedRows = new ArrayDeque<double[]>();
+	private boolean appendScheduled = false;
+
+	// Patches : changed regions not sent yet, and matrix held as it is by the
+	// browser (not pooled, decimated or previewed)
+	private final PatchRegions patches = new PatchRegions();
+	private boolean patchScheduled = false;
+	private boolean patchable = false;
+
+	// Diffing : hash of each row of the matrix held by the browser
+	private long[] rowHashes;
+	private int hashedColumns;
 
-	private static Map<String, List<String>> selectedMap;
-	private static HashMap<String, String> optionsMap = null;
+	private Map<String, List<String>> selectedMap;
+	private HashMap<String, String> optionsMap = null;
 
 	// Keys for optionsMap
 	private static final String chartTitle = "title";
@@ -72,6 +104,36 @@ public class PlotlyHeatMap extends Composite {
 	private static final String displayModeBar = "displayModeBar";
 	private static final String displayLogo = "displaylogo";
 
+	private static final String type = "type";
+
+	// Above this number of cells, the WebGL trace type is used
+	public static final int DEFAULT_GL_THRESHOLD = 1000000;
+	private int glThreshold = DEFAULT_GL_THRESHOLD;
+	private String renderMode = "heatmap";
+
+	// Progressive mode : preview size, and full data not sent yet
+	private int previewValues = 0;
+	private Progressive progressive;
+
+	// Pooling : matrix reduced to the size of the widget, null to send it whole
+	public static final int DEFAULT_POOLING_SIZE = 1024;
+	private MatrixPooling.Aggregator pooling = null;
+	private Point pooledSize;
+
+	// Tile pyramid : pooling of the levels, null to send one matrix
+	private MatrixPooling.Aggregator tiling = null;
+	private TilePyramid pyramid;
+
+	// Significant digits of z sent as text (0 : shortest)
+	private int significantDigits = DoubleWriter.SHORTEST;
+
+	// Quantization : bits of z, 0 to send doubles, and error of the last build
+	private int quantization = 0;
+	private double quantizationError = 0;
+	// Bounds of the last build, shared by every part quantized after it
+	// (chunks, tiles, zoom windows, patches, rows), null if z is not quantized
+	private double[] quantizationRange;
+
 	/**
 	 * Create the composite.</br>
 	 * 
@@ -82,18 +144,33 @@ public class PlotlyHeatMap extends Composite {
 	 * @param datas  double[][]
 	 */
 	public PlotlyHeatMap(Composite parent, int style, double[][] datas) {
-		super(parent, style);
+		this(parent, style, datas, null);
+	}
+
+	/**
+	 * Create the composite from a sparse matrix : only its non-empty cells are
+	 * kept and sent, the browser fills the others.</br>
+	 * Pooling, tile pyramid and progressive modes are not used with a sparse
+	 * matrix.
+	 * 
+	 * @param parent A widget which will be the parent of the new instance (cannot
+	 *               be null)
+	 * @param style  The style of widget to construct
+	 * @param datas  SparseMatrix
+	 */
+	public PlotlyHeatMap(Composite parent, int style, SparseMatrix datas) {
+		this(parent, style, null, datas);
+	}
 
-		// Cleaner
-		optionsMap = null;
-		selectedMap = null;
+	private PlotlyHeatMap(Composite parent, int style, double[][] datas, SparseMatrix sparse) {
+		super(parent, style);
+		sparseDatas = sparse;
 
-		ClientFileLoader loader = RWT.getClient().getService(ClientFileLoader.class);
-		loader.requireJs("js"+File.separator+"d3.min.js");
-		loader.requireJs("js"+File.separator+"plotly.js");
-		loader.requireJs("js"+File.separator+"plotlyFast.js");
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlyFast.js");
 		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlyGraphFast");
 		remoteObject.set("parent", WidgetUtil.getId(this));
+		PlotlyMetrics.chartCreated(this);
 
 		try {
 			buildHeatMap(datas);
@@ -102,12 +179,36 @@ public class PlotlyHeatMap extends Composite {
 			e.printStackTrace();
 		}
 
+		// Pooled matrix follows the size of the widget (Composite listener : the
+		// Selection events are not needed for it)
+		super.addListener(SWT.Resize, new Listener() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void handleEvent(Event event) {
+				if (pooling != null && fixedDatas != null && !poolingSize(fixedDatas).equals(pooledSize)) {
+					try {
+						buildHeatMap(fixedDatas);
+					} catch (FileNotFoundException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+
 		this.addDisposeListener(new DisposeListener() {
 			private static final long serialVersionUID = 7780300831817645309L;
 
 			@Override
 			public void widgetDisposed(DisposeEvent arg0) {
 				remoteObject.destroy();
+				fixedDatas = null;
+				sparseDatas = null;
+				rowRing = null;
+				progressive = null;
+				pyramid = null;
+				selectedMap = null;
+				PlotlyMetrics.chartDisposed(PlotlyHeatMap.this);
 			}
 		});
 
@@ -123,6 +224,37 @@ public class PlotlyHeatMap extends Composite {
 					event.data = data;
 					notifyListeners(SWT.Selection, event);
 				}
+
+				if ("Refine".equals(eventName) && progressive != null) {
+					int index = data.get("chunk").asInt();
+					JsonObject chunk = progressive.chunk(data.get("version").asInt(), index);
+					if (chunk != null) {
+						remoteObject.call("refine", chunk);
+						if (progressive.isLast(index))
+							progressive = null;
+					}
+				}
+
+				if ("Tiles".equals(eventName) && pyramid != null) {
+					JsonObject tiles = pyramid.tiles(data.get("version").asInt(), data.get("level").asInt(),
+							data.get("tiles").asArray());
+					if (tiles != null)
+						remoteObject.call("tiles", tiles);
+				}
+
+				if ("Zoom".equals(eventName) && pooling != null && fixedDatas != null)
+					zoom(data.get("x").asArray(), data.get("y").asArray());
+
+				if ("BlockMiss".equals(eventName)) {
+					BlockCache.getInstance().forget(data.get("hashes").asArray());
+					if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+						try {
+							buildHeatMap(fixedDatas);
+						} catch (FileNotFoundException e) {
+							e.printStackTrace();
+						}
+					}
+				}
 			}
 
 			public void handleSet(JsonObject properties) {
@@ -132,6 +264,9 @@ public class PlotlyHeatMap extends Composite {
 						System.out.println(properties.get("selected"));
 					}
 
+					if (properties.get("cachedBlocks") != null)
+						BlockCache.getInstance().remember(properties.get("cachedBlocks").asArray());
+
 					if (properties.get("ans") != null) {
 
 						JsonValue arrayValue = properties.get("ans");
@@ -165,6 +300,10 @@ public class PlotlyHeatMap extends Composite {
 				System.out.println("--------------------");
 			}
 		});
+		remoteObject.listen("BlockMiss", true);
+		remoteObject.listen("Refine", true);
+		remoteObject.listen("Zoom", true);
+		remoteObject.listen("Tiles", true);
 
 	}
 
@@ -189,13 +328,99 @@ public class PlotlyHeatMap extends Composite {
 	/**
 	 * Update the current chart. <br>
 	 * 
-	 * @param datas double[][]
+	 * @param datas double[][] - Kept, not copied : patch writes into it
 	 * 
 	 */
 	public void updateData(double[][] datas) throws FileNotFoundException {
+		// New values, even in the same array : the levels are pooled again
+		pyramid = null;
+		if (rowRing != null) {
+			// Streaming : the last rows fill the ring
+			rowRing.clear();
+			for (double[] row : datas)
+				rowRing.append(row);
+			buildHeatMap(null);
+			return;
+		}
+
+		// Only the changed rows are sent when the browser holds the matrix
+		int[] changed = patchable ? DatasetDiff.changedRows(rowHashes, hashedColumns, datas) : null;
+		if (changed != null) {
+			fixedDatas = datas;
+			for (int row : changed) {
+				rowHashes[row] = DatasetDiff.hash(datas[row]);
+				patches.add(row, 0, 1, hashedColumns);
+			}
+			schedulePatches();
+			return;
+		}
 		buildHeatMap(datas);
 	}
 
+	/**
+	 * Update the current chart with a sparse matrix. <br>
+	 * 
+	 * @param datas SparseMatrix
+	 * 
+	 */
+	public void updateData(SparseMatrix datas) throws FileNotFoundException {
+		rowRing = null;
+		sparseDatas = datas;
+		buildHeatMap(null);
+	}
+
+	/**
+	 * Write a block of values into the matrix of the chart. Patches of the same
+	 * request are merged and only the changed cells are sent, the browser
+	 * writes them into its matrix (the whole matrix is sent again when the
+	 * chart shows it pooled, as tiles or as a progressive preview).<br>
+	 * The matrix of the chart is the one given to the constructor or to
+	 * updateData (kept, not copied) : the block is written in place into that
+	 * matrix, which the caller sees changed.<br>
+	 * 
+	 * @param rowOffset    int - Row of the first value of the block
+	 * @param columnOffset int - Column of the first value of the block
+	 * @param block        double[][] - Values (copied), rows of the same length
+	 */
+	public void patch(int rowOffset, int columnOffset, double[][] block) {
+
+		if (fixedDatas == null)
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Patch of a matrix only (not sparse or streaming)");
+		if (block == null || block.length == 0)
+			return;
+
+		int columns = block[0] == null ? 0 : block[0].length;
+		if (rowOffset < 0 || columnOffset < 0 || rowOffset + block.length > fixedDatas.length)
+			SWT.error(SWT.ERROR_INVALID_RANGE);
+		for (int i = 0; i < block.length; i++) {
+			if (block[i] == null || block[i].length != columns)
+				SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Rows of the block must have the same length");
+			if (columnOffset + columns > fixedDatas[rowOffset + i].length)
+				SWT.error(SWT.ERROR_INVALID_RANGE);
+		}
+
+		for (int i = 0; i < block.length; i++)
+			System.arraycopy(block[i], 0, fixedDatas[rowOffset + i], columnOffset, columns);
+		pyramid = null;
+		patches.add(rowOffset, columnOffset, block.length, columns);
+		if (rowHashes != null)
+			for (int i = 0; i < block.length; i++)
+				rowHashes[rowOffset + i] = DatasetDiff.hash(fixedDatas[rowOffset + i]);
+
+		schedulePatches();
+	}
+
+	/**
+	 * To free the graph of the chart when it stays hidden (hidden tab, scrolled
+	 * out of view). The chart is drawn again when it becomes visible.<br>
+	 * 
+	 * @param millis int - Hidden time before the graph is freed, 0 to never free
+	 *               it (default)
+	 */
+	public void setReleaseHidden(int millis) {
+		remoteObject.set("releaseHidden", millis);
+	}
+
 	@Override
 	protected void checkSubclass() {
 		// Disable the check that prevents subclassing of SWT components
@@ -206,7 +431,19 @@ public class PlotlyHeatMap extends Composite {
 		// Read JSON file;
 		// All json's value must be string
 
+		// Sparse matrix : only its non-empty cells are kept and sent. Streaming :
+		// the rows of the ring are sent (datas null)
 		fixedDatas = datas;
+		SparseMatrix sparse = null;
+		if (datas == null && rowRing != null) {
+			datas = rowRing.toMatrix();
+			appendedRows.clear();
+		} else if (datas == null) {
+			sparse = sparseDatas;
+			datas = new double[0][0];
+		} else {
+			sparseDatas = null;
+		}
 
 		String directory = System.getProperty("user.dir");
 		String fileName = "json"+File.separator+"plotly"+File.separator+"heatmap.json";
@@ -221,6 +458,73 @@ public class PlotlyHeatMap extends Composite {
 		JSONObject layout = jsonObj.getJSONObject("layout");
 		JSONObject options = jsonObj.getJSONObject("options");
 
+		// Matrix long enough is sent as a block
+		DataBlock block = null;
+		if (datas.length > 0 && datas.length * datas[0].length >= BlockCache.MIN_VALUES)
+			block = DataBlock.of(datas);
+
+		// Tile pyramid : the overview level first, the tiles under the axes
+		// ranges on zoom and pan (axes in indexes only, without coordinates).
+		// Otherwise pooling : matrix reduced to the size of the widget
+		double[][] sent = datas;
+		int overview = 0;
+		pooledSize = null;
+		TilePyramid kept = pyramid;
+		pyramid = null;
+		if (tiling != null && block != null && rowRing == null
+				&& (optionsMap == null || (optionsMap.get(x) == null && optionsMap.get(y) == null))) {
+			// Kept by the rebuilds of the options : the tiles cut stay valid
+			pyramid = kept != null && kept.isOf(datas, tiling) ? kept : new TilePyramid(datas, tiling);
+			Point size = poolingSize(datas);
+			overview = pyramid.overviewLevel(size.x, size.y);
+			sent = pyramid.getLevel(overview);
+			if (sent == datas)
+				pyramid = null;
+			else
+				block = DataBlock.of(sent);
+		} else if (pooling != null && block != null && rowRing == null) {
+			pooledSize = poolingSize(datas);
+			if (pooledSize.x < datas[0].length || pooledSize.y < datas.length) {
+				sent = MatrixPooling.pool(datas, pooledSize.y, pooledSize.x, pooling);
+				block = DataBlock.of(sent);
+			}
+		}
+
+		// SVG or WebGL trace
+		int cells = 0;
+		for (int i = 0; i < sent.length; i++)
+			cells += sent[i].length;
+		if (sparse != null)
+			cells = (int) Math.min(Integer.MAX_VALUE, (long) sparse.getRows() * sparse.getColumns());
+		renderMode = cells > glThreshold ? "heatmapgl" : "heatmap";
+		PlotlyResources.requirePlotly(renderMode);
+		PlotlyMetrics.renderModeChosen(this, renderMode, glThreshold);
+
+		// Progressive mode : pooled matrix first, the full rows after
+		progressive = null;
+		double[][] preview = null;
+		if (previewValues > 0 && cells > previewValues && block != null && sent == datas && rowRing == null) {
+			int factor = Progressive.factor(cells, previewValues, true);
+			preview = Progressive.pool(datas, factor);
+			progressive = new Progressive(factor);
+			progressive.addRows(0, "z", datas);
+			block = DataBlock.of(preview);
+		}
+
+		// Quantization : z sent as 8 or 16 bits indexes
+		// between the finite bounds of the whole matrix, for every part sent
+		quantizationError = 0;
+		quantizationRange = null;
+		if (quantization > 0 && block != null) {
+			quantizationRange = StatKernels.finiteRange(datas);
+			block = block.quantize(quantization, quantizationRange[0], quantizationRange[1]);
+			quantizationError = block.getError();
+			if (progressive != null)
+				progressive.setQuantization(quantization, quantizationRange[0], quantizationRange[1]);
+			if (pyramid != null)
+				pyramid.setQuantization(quantization, quantizationRange[0], quantizationRange[1]);
+		}
+
 		// DATA
 		String str = "{";
 		// TRACES
@@ -228,14 +532,14 @@ public class PlotlyHeatMap extends Composite {
 
 		str += "{";
 
-		// z
-		str += "z: " + Arrays.deepToString(datas) + ",";
-
 		Iterator<String> itTrace = trace.keys();
 		while (itTrace.hasNext()) {
 			String key = itTrace.next();
 			String value = (String) trace.get(key);
 
+			if (key.equals(type))
+				value = "'" + renderMode + "'";
+
 			if (optionsMap != null) {
 				switch (key) {
 
@@ -369,7 +673,63 @@ public class PlotlyHeatMap extends Composite {
 
 		str += "}";
 
-		remoteObject.set("options", JsonObject.readFrom(new JSONObject(str).toString()));
+		JsonObject json = JsonObject.readFrom(new JSONObject(str).toString());
+
+		// z added after the templates are read, its numbers as written
+		json.get("inputs").asArray().get(0).asObject().add("z", block != null
+				? BlockCache.getInstance().encode(block)
+				: DoubleWriter.toJson(datas, significantDigits));
+
+		patches.clear();
+		rowHashes = null;
+		patchable = sparse == null && rowRing == null && sent == datas && progressive == null;
+		if (patchable && datas.length > 0) {
+			rowHashes = DatasetDiff.hashes(datas);
+			hashedColumns = datas[0].length;
+		}
+
+		if (sparse != null) {
+			DataBlock values = sparse.valuesBlock();
+			if (quantization > 0) {
+				values = values.quantize(quantization);
+				quantizationError = values.getError();
+			}
+			json.get("inputs").asArray().get(0).asObject().set("z",
+					sparse.toJson(BlockCache.getInstance(), values));
+		}
+
+		if (progressive != null) {
+			JsonObject first = json.get("inputs").asArray().get(0).asObject();
+			progressive.previewAxis(first, 0, x, datas[0].length, preview[0].length);
+			progressive.previewAxis(first, 0, y, datas.length, preview.length);
+			json.add("progressive", progressive.toJson());
+		}
+
+		if (sent != datas) {
+			JsonObject first = json.get("inputs").asArray().get(0).asObject();
+			if (pyramid != null) {
+				first.set(x, TilePyramid.centers(datas[0].length, overview));
+				first.set(y, TilePyramid.centers(datas.length, overview));
+				json.add("pyramid", pyramid.toJson());
+			} else {
+				first.set(x, MatrixPooling.axis(first.get(x), datas[0].length, sent[0].length));
+				first.set(y, MatrixPooling.axis(first.get(y), datas.length, sent.length));
+				json.add("pooling", true);
+			}
+		}
+
+		// Evenly spaced coordinates : start and step instead of the array
+		// (pooled, tiled and progressive axes are rewritten by plotlyFast.js)
+		if (sent == datas && progressive == null) {
+			JsonObject first = json.get("inputs").asArray().get(0).asObject();
+			for (String axis : new String[] { x, y }) {
+				double[] grid = UniformGrid.detect(first.get(axis), UniformGrid.TOLERANCE);
+				if (grid != null)
+					UniformGrid.apply(first, axis, grid);
+			}
+		}
+
+		remoteObject.set("options", json);
 
 	}
 
@@ -388,7 +748,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(chartTitle, "'" + title + "'");
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -413,7 +773,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(height, String.valueOf(heightChart));
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -438,7 +798,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(width, String.valueOf(widthChart));
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -475,7 +835,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(axisSelected, "title: '" + axisTitle + "', ");
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -500,7 +860,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(legend, "'" + legends + "'");
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -537,7 +897,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(traceColor, str);
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -581,7 +941,7 @@ public class PlotlyHeatMap extends Composite {
 				optionsMap.replace(y, Arrays.toString(coordinates));
 		}
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -606,7 +966,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(showScale, String.valueOf(scale));
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -639,7 +999,7 @@ public class PlotlyHeatMap extends Composite {
 		else
 			optionsMap.replace(hoverinfo, "'" + infos + "'");
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -649,6 +1009,241 @@ public class PlotlyHeatMap extends Composite {
 		}
 	}
 
+	/**
+	 * To update the number of cells above which the chart is drawn with WebGL
+	 * ("heatmapgl" trace type) instead of SVG.<br>
+	 * 
+	 * @param threshold int - Number of cells (default : 1000000)
+	 */
+	public void upGlThreshold(int threshold) {
+
+		glThreshold = threshold;
+
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+			try {
+				buildHeatMap(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Return the trace type used by the last build.
+	 * 
+	 * @return String - "heatmap" or "heatmapgl"
+	 */
+	public String getRenderMode() {
+		return renderMode;
+	}
+
+	/**
+	 * To draw a large chart progressively : a preview of about previewValues cells
+	 * is drawn first, then the full data is sent by chunks and merged into the
+	 * chart, keeping its zoom.<br>
+	 * 
+	 * @param previewValues int - Number of cells of the preview, 0 to send the whole
+	 *                      data at once (default)
+	 */
+	public void upProgressive(int previewValues) {
+
+		this.previewValues = previewValues;
+
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+			try {
+				buildHeatMap(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To reduce the matrix to the size of the widget before it is sent : each
+	 * pixel shows the aggregate of the cells under it. The matrix is kept, and
+	 * the zoomed window is sent again with more details.<br>
+	 * 
+	 * @param aggregator MatrixPooling.Aggregator - MEAN, MAX, MIN or FIRST, null
+	 *                   to send the whole matrix (default)
+	 */
+	public void upPooling(MatrixPooling.Aggregator aggregator) {
+
+		pooling = aggregator;
+
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+			try {
+				buildHeatMap(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To draw a large matrix as a pyramid of tiles : the whole matrix is shown
+	 * pooled to the size of the widget, then zoom and pan ask only the tiles
+	 * under the axes ranges, pooled to the widget size. Tiles are kept in a
+	 * cache by the server and by the browser.<br>
+	 * Not used with x or y coordinates (upCoordinates).
+	 * 
+	 * @param aggregator MatrixPooling.Aggregator - Pooling of the levels (MEAN,
+	 *                   MAX, MIN or FIRST), null to send one matrix (default)
+	 */
+	public void upTilePyramid(MatrixPooling.Aggregator aggregator) {
+
+		tiling = aggregator;
+
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+			try {
+				buildHeatMap(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To limit the significant digits of z when the matrix is sent as text
+	 * (fewer than BlockCache.MIN_VALUES cells, larger ones are sent as binary
+	 * blocks, see upQuantization).<br>
+	 * 
+	 * @param digits int - Significant digits (1 to 17), 0 for the shortest
+	 *               exact form (default)
+	 */
+	public void upSignificantDigits(int digits) {
+
+		if (digits < 0 || digits > 17)
+			SWT.error(SWT.ERROR_INVALID_RANGE);
+
+		significantDigits = digits;
+
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+			try {
+				buildHeatMap(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To send z as 8 or 16 bits indexes between its smallest and largest values
+	 * : 8 or 4 times smaller than doubles. Colors and hover show the values
+	 * read back by the browser, at most getQuantizationError() away from z.<br>
+	 * 
+	 * @param bits int - 8 (255 levels), 16 (65535 levels), 0 to send doubles
+	 *             (default)
+	 */
+	public void upQuantization(int bits) {
+
+		if (bits != 0 && bits != 8 && bits != 16)
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Quantization on 8 or 16 bits only");
+
+		quantization = bits;
+
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+			try {
+				buildHeatMap(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Largest difference between z and the values drawn by the browser : half
+	 * the range of z divided by 254 (8 bits) or 65534 (16 bits), 0 without
+	 * quantization or for a matrix sent inline (too small for a block).
+	 * 
+	 * @return double
+	 */
+	public double getQuantizationError() {
+		return quantizationError;
+	}
+
+	/**
+	 * To stream rows (spectrogram, waterfall) : the chart keeps the last
+	 * capacity rows in a ring, and appendRow sends only the new rows, the
+	 * browser drops its oldest rows. The current rows are kept if they have
+	 * the given length.<br>
+	 * Pooling, tile pyramid and progressive modes are not used while
+	 * streaming.
+	 * 
+	 * @param capacity int - Number of rows shown, 0 to stop streaming
+	 * @param columns  int - Length of the rows
+	 */
+	public void upStreaming(int capacity, int columns) {
+
+		double[][] current = rowRing != null ? rowRing.toMatrix() : fixedDatas;
+
+		if (capacity <= 0) {
+			rowRing = null;
+			fixedDatas = current;
+		} else {
+			rowRing = new RowRing(capacity, columns);
+			sparseDatas = null;
+			if (current != null)
+				for (double[] row : current)
+					if (row.length == columns)
+						rowRing.append(row);
+		}
+
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
+			try {
+				buildHeatMap(rowRing != null ? null : fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Append a row after the last one while streaming (upStreaming). Rows
+	 * appended during the same request are sent together.<br>
+	 * 
+	 * @param row double[] - Values of the row (copied)
+	 */
+	public void appendRow(double[] row) {
+
+		if (rowRing == null)
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Streaming not started (upStreaming)");
+		if (row == null || row.length != rowRing.getColumns())
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Row of " + rowRing.getColumns() + " values expected");
+
+		rowRing.append(row);
+		appendedRows.add(row.clone());
+		if (appendedRows.size() > rowRing.getCapacity())
+			appendedRows.poll();
+
+		if (!appendScheduled) {
+			appendScheduled = true;
+			getDisplay().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					appendScheduled = false;
+					if (!isDisposed())
+						sendRows();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Return a value of the matrix, not pooled (ex : under the hovered or
+	 * selected x, y).
+	 * 
+	 * @param row    int
+	 * @param column int
+	 * @return double
+	 */
+	public double getValue(int row, int column) {
+		if (sparseDatas != null)
+			return sparseDatas.get(row, column);
+		if (rowRing != null)
+			return rowRing.get(row, column);
+		return fixedDatas[row][column];
+	}
+
 	/**
 	 * To update plot's options.<br>
 	 * 
@@ -702,7 +1297,7 @@ public class PlotlyHeatMap extends Composite {
 
 		}
 
-		if (fixedDatas != null) {
+		if (fixedDatas != null || sparseDatas != null || rowRing != null) {
 			try {
 				buildHeatMap(fixedDatas);
 			} catch (FileNotFoundException e) {
@@ -710,4 +1305,125 @@ public class PlotlyHeatMap extends Composite {
 			}
 		}
 	}
+
+	private void schedulePatches() {
+		if (!patchScheduled) {
+			patchScheduled = true;
+			getDisplay().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					patchScheduled = false;
+					if (!isDisposed())
+						sendPatches();
+				}
+			});
+		}
+	}
+
+	// Changed cells since the last sending, or the whole matrix when the
+	// browser does not hold it as it is (or when most of it changed)
+	private void sendPatches() {
+
+		if (patches.isEmpty() || fixedDatas == null) {
+			patches.clear();
+			return;
+		}
+
+		long cells = 0;
+		for (int i = 0; i < fixedDatas.length; i++)
+			cells += fixedDatas[i].length;
+
+		// Values out of the bounds of the quantization : new bounds
+		if (!patchable || patches.getCells() * 2 > cells || (quantizationRange != null
+				&& !patches.within(fixedDatas, quantizationRange[0], quantizationRange[1]))) {
+			try {
+				buildHeatMap(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		JsonArray sent = quantizationRange == null ? patches.toJson(fixedDatas, 0, 0, 0)
+				: patches.toJson(fixedDatas, quantization, quantizationRange[0], quantizationRange[1]);
+		remoteObject.call("patch", new JsonObject().add("patches", sent));
+	}
+
+	// Rows appended since the last sending. Not kept in the BlockCache : a
+	// block by request would evict the blocks of the charts
+	private void sendRows() {
+		if (appendedRows.isEmpty() || rowRing == null)
+			return;
+
+		// Rows out of the bounds of the quantization : the ring is sent again
+		// with new bounds
+		double[][] rows = appendedRows.toArray(new double[appendedRows.size()][]);
+		if (quantizationRange != null)
+			for (double[] row : rows)
+				if (!StatKernels.within(row, 0, row.length, quantizationRange[0], quantizationRange[1])) {
+					try {
+						buildHeatMap(null);
+					} catch (FileNotFoundException e) {
+						e.printStackTrace();
+					}
+					return;
+				}
+
+		DataBlock block = DataBlock.of(rows);
+		appendedRows.clear();
+		if (quantizationRange != null)
+			block = block.quantize(quantization, quantizationRange[0], quantizationRange[1]);
+
+		remoteObject.call("appendRows",
+				new JsonObject().add("rows", block.toDataJson()).add("capacity", rowRing.getCapacity()));
+	}
+
+	// Columns (x) and rows (y) of the pooled matrix
+	private Point poolingSize(double[][] datas) {
+		Point size = getSize();
+		int columns = size.x > 0 ? size.x : DEFAULT_POOLING_SIZE;
+		int rows = size.y > 0 ? size.y : DEFAULT_POOLING_SIZE;
+		return new Point(Math.min(columns, datas[0].length), Math.min(rows, datas.length));
+	}
+
+	// Window of the matrix under the zoomed ranges, pooled to the widget size.
+	// Not kept in the BlockCache : a block by zoom would evict the blocks of
+	// the charts
+	private void zoom(JsonArray xRange, JsonArray yRange) {
+
+		// Ranges are indexes of the matrix only without coordinates
+		if (optionsMap != null && (optionsMap.get(x) != null || optionsMap.get(y) != null))
+			return;
+
+		double[][] datas = fixedDatas;
+		int[] columns = window(xRange, datas[0].length);
+		int[] rows = window(yRange, datas.length);
+		Point size = poolingSize(datas);
+
+		double[][] window = MatrixPooling.pool(datas, rows[0], rows[1], columns[0], columns[1], size.y, size.x,
+				pooling);
+
+		JsonArray xCenters = new JsonArray();
+		for (double center : MatrixPooling.centers(columns[0], columns[1], window[0].length))
+			xCenters.add(center);
+		JsonArray yCenters = new JsonArray();
+		for (double center : MatrixPooling.centers(rows[0], rows[1], window.length))
+			yCenters.add(center);
+
+		DataBlock block = DataBlock.of(window);
+		if (quantizationRange != null)
+			block = block.quantize(quantization, quantizationRange[0], quantizationRange[1]);
+
+		JsonObject properties = new JsonObject().add("z", block.toDataJson()).add("x", xCenters).add("y",
+				yCenters);
+		remoteObject.call("zoom", properties);
+	}
+
+	private static int[] window(JsonArray range, int length) {
+		double from = Math.min(range.get(0).asDouble(), range.get(1).asDouble());
+		double to = Math.max(range.get(0).asDouble(), range.get(1).asDouble());
+		int start = (int) Math.max(0, Math.min(length - 1, Math.floor(from + 0.5)));
+		int end = (int) Math.min(length, Math.ceil(to + 0.5));
+		return new int[] { start, Math.max(end, start + 1) };
+	}
 }
@@ -18,7 +18,6 @@ import org.eclipse.rap.json.JsonArray;
 import org.eclipse.rap.json.JsonObject;
 import org.eclipse.rap.json.JsonValue;
 import org.eclipse.rap.rwt.RWT;
-import org.eclipse.rap.rwt.client.service.ClientFileLoader;
 import org.eclipse.rap.rwt.remote.AbstractOperationHandler;
 import org.eclipse.rap.rwt.remote.RemoteObject;
 import org.eclipse.rap.rwt.widgets.WidgetUtil;
@@ -29,6 +28,15 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 
+import plotly.encoding.BlockCache;
+import plotly.encoding.DataBlock;
+import plotly.encoding.DatasetDiff;
+import plotly.encoding.DoubleWriter;
+import plotly.encoding.ParallelEncoding;
+import plotly.encoding.StringDictionary;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
 /**
  * Invoke this class to build a fast pie chart. <br>
  * Call PlotlyPie(Composite parent, int style, double[][] datas) to obtain this
@@ -47,10 +55,17 @@ public class PlotlyPie extends Composite {
 	private final RemoteObject remoteObject;
 
 	// To rebuild
-	private static double[][] fixedDatas;
+	private double[][] fixedDatas;
+
+	// Diffing : copy of the values sent
+	private double[][] sentDatas;
+
+	// Labels : one table of distinct strings for the chart
+	private final StringDictionary dictionary = new StringDictionary();
+	private String[][] labels;
 
-	private static Map<String, List<String>> selectedMap;
-	private static HashMap<String, String> optionsMap = null;
+	private Map<String, List<String>> selectedMap;
+	private HashMap<String, String> optionsMap = null;
 
 	// Keys for optionsMap
 	private static final String chartTitle = "title";
@@ -85,16 +100,12 @@ public class PlotlyPie extends Composite {
 	public PlotlyPie(Composite parent, int style, double[][] datas) {
 		super(parent, style);
 
-		// Cleaner
-		optionsMap = null;
-		selectedMap = null;
-
-		ClientFileLoader loader = RWT.getClient().getService(ClientFileLoader.class);
-		loader.requireJs("js"+File.separator+"d3.min.js");
-		loader.requireJs("js"+File.separator+"plotly.js");
-		loader.requireJs("js"+File.separator+"plotlyFast.js");
+		PlotlyResources.requirePlotly("pie");
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlyFast.js");
 		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlyGraphFast");
 		remoteObject.set("parent", WidgetUtil.getId(this));
+		PlotlyMetrics.chartCreated(this);
 
 		try {
 			buildPie(datas);
@@ -109,6 +120,9 @@ public class PlotlyPie extends Composite {
 			@Override
 			public void widgetDisposed(DisposeEvent arg0) {
 				remoteObject.destroy();
+				fixedDatas = null;
+				selectedMap = null;
+				PlotlyMetrics.chartDisposed(PlotlyPie.this);
 			}
 		});
 
@@ -124,6 +138,17 @@ public class PlotlyPie extends Composite {
 					event.data = data;
 					notifyListeners(SWT.Selection, event);
 				}
+
+				if ("BlockMiss".equals(eventName)) {
+					BlockCache.getInstance().forget(data.get("hashes").asArray());
+					if (fixedDatas != null) {
+						try {
+							buildPie(fixedDatas);
+						} catch (FileNotFoundException e) {
+							e.printStackTrace();
+						}
+					}
+				}
 			}
 
 			public void handleSet(JsonObject properties) {
@@ -133,6 +158,9 @@ public class PlotlyPie extends Composite {
 						System.out.println(properties.get("selected"));
 					}
 
+					if (properties.get("cachedBlocks") != null)
+						BlockCache.getInstance().remember(properties.get("cachedBlocks").asArray());
+
 					if (properties.get("ans") != null) {
 
 						JsonValue arrayValue = properties.get("ans");
@@ -166,6 +194,7 @@ public class PlotlyPie extends Composite {
 				System.out.println("--------------------");
 			}
 		});
+		remoteObject.listen("BlockMiss", true);
 
 	}
 
@@ -194,7 +223,27 @@ public class PlotlyPie extends Composite {
 	 * 
 	 */
 	public void updateData(double[][] datas) throws FileNotFoundException {
-		buildPie(datas);
+		// Only the changes are sent when the browser holds the previous values
+		JsonArray operations = DatasetDiff.numbers(sentDatas, datas, "values");
+		if (operations == null) {
+			buildPie(datas);
+		} else {
+			fixedDatas = datas;
+			sentDatas = DatasetDiff.copy(datas);
+			if (operations.size() > 0)
+				remoteObject.call("update", new JsonObject().add("operations", operations));
+		}
+	}
+
+	/**
+	 * To free the graph of the chart when it stays hidden (hidden tab, scrolled
+	 * out of view). The chart is drawn again when it becomes visible.<br>
+	 * 
+	 * @param millis int - Hidden time before the graph is freed, 0 to never free
+	 *               it (default)
+	 */
+	public void setReleaseHidden(int millis) {
+		remoteObject.set("releaseHidden", millis);
 	}
 
 	@Override
@@ -241,6 +290,9 @@ public class PlotlyPie extends Composite {
 		JSONObject layout = jsonObj.getJSONObject("layout");
 		JSONObject options = jsonObj.getJSONObject("options");
 
+		// Values long enough are sent as blocks, built in parallel
+		DataBlock[] blocks = ParallelEncoding.of(datas);
+
 		// DATA
 		String str = "{";
 		// TRACES
@@ -249,9 +301,6 @@ public class PlotlyPie extends Composite {
 
 			str += "{";
 
-			// values
-			str += "values: " + Arrays.toString(datas[i]) + ",";
-
 			Iterator<String> itTrace = trace.keys();
 			while (itTrace.hasNext()) {
 				String key = itTrace.next();
@@ -286,11 +335,6 @@ public class PlotlyPie extends Composite {
 							value = optionsMap.get(legend + i);
 						break;
 
-					case label:
-						if (optionsMap.get(label + i) != null)
-							value = optionsMap.get(label + i);
-						break;
-
 					case marker:
 						if (optionsMap.get(traceColor + i) != null)
 							value = value.substring(0, 1) + optionsMap.get(traceColor + i)
@@ -428,7 +472,29 @@ public class PlotlyPie extends Composite {
 		str += "}";
 
 
-		remoteObject.set("options", JsonObject.readFrom(new JSONObject(str).toString()));
+		JsonObject json = JsonObject.readFrom(new JSONObject(str).toString());
+
+		BlockCache cache = BlockCache.getInstance();
+		JsonArray inputs = json.get("inputs").asArray();
+		for (int i = 0; i < datas.length; i++)
+			if (blocks[i] != null)
+				inputs.get(i).asObject().add("values", cache.encode(blocks[i]));
+			else {
+				// Short columns, their numbers as DoubleWriter wrote them
+				inputs.get(i).asObject().add("values", DoubleWriter.toJson(datas[i], DoubleWriter.SHORTEST));
+			}
+
+		// Labels sent as codes of the dictionary, repeated labels once
+		dictionary.clear();
+		if (labels != null) {
+			for (int i = 0; i < labels.length && i < datas.length; i++)
+				inputs.get(i).asObject().set(label, dictionary.column(dictionary.intern(labels[i])));
+			json.add("dictionary", dictionary.toJson());
+		}
+
+		remoteObject.set("options", json);
+
+		sentDatas = DatasetDiff.copy(datas);
 
 	}
 
@@ -538,24 +604,19 @@ public class PlotlyPie extends Composite {
 	/**
 	 * To add/update Labels. [ [trace1 texts, ...], [trace2 texts, ...], ... ]
 	 * 
+	 * Labels repeated between slices or traces are held and sent once (chart
+	 * dictionary).
+	 * 
 	 * @param labels String[][] - Arrays of labels (ex : [ ["jan", "feb"],
 	 *               ["2018","2019"] ]
 	 */
 	public void upLabels(String[][] labels) {
 
-		if (optionsMap == null)
-			optionsMap = new HashMap<String, String>();
-
-		for (int i = 0; i < labels.length; i++) {
-
+		for (int i = 0; i < labels.length; i++)
 			for (int j = 0; j < labels[i].length; j++)
 				labels[i][j] = "'" + labels[i][j] + "'";
 
-			if (optionsMap.containsKey(label + i) == false)
-				optionsMap.put(label + i, Arrays.toString(labels[i]));
-			else
-				optionsMap.replace(label + i, Arrays.toString(labels[i]));
-		}
+		this.labels = labels;
 
 		if (fixedDatas != null) {
 			try {
@@ -13,13 +13,10 @@ import java.util.Map;
 import java.io.InputStream;
 import org.json.JSONObject;
 import org.json.JSONTokener;
-import org.apache.commons.lang3.math.NumberUtils;
-import org.apache.commons.math3.stat.StatUtils;
 import org.eclipse.rap.json.JsonArray;
 import org.eclipse.rap.json.JsonObject;
 import org.eclipse.rap.json.JsonValue;
 import org.eclipse.rap.rwt.RWT;
-import org.eclipse.rap.rwt.client.service.ClientFileLoader;
 import org.eclipse.rap.rwt.remote.AbstractOperationHandler;
 import org.eclipse.rap.rwt.remote.RemoteObject;
 import org.eclipse.rap.rwt.widgets.WidgetUtil;
@@ -30,6 +27,17 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 
+import plotly.encoding.BlockCache;
+import plotly.encoding.DataBlock;
+import plotly.encoding.DatasetDiff;
+import plotly.encoding.DoubleWriter;
+import plotly.encoding.ParallelEncoding;
+import plotly.encoding.Progressive;
+import plotly.encoding.StatKernels;
+import plotly.encoding.UniformGrid;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
 /**
  * Invoke this class to build a fast Scatter chart. <br>
  * Call PlotlyScatter(Composite parent, int style, double[][][] datas) to obtain
@@ -49,10 +57,19 @@ public class PlotlyScatter extends Composite {
 	private final RemoteObject remoteObject;
 
 	// To rebuild
-	private static String[][][] fixedDatas;
+	private String[][][] fixedDatas;
+
+	// Diffing : copy of the dataset sent, grids of its evenly spaced columns
+	// ({ start, step } by trace and column), and its y range
+	private String[][][] sentDatas;
+	private double[][][] sentGrids;
+	private double[] sentRange;
 
-	private static Map<String, List<String>> selectedMap;
-	private static HashMap<String, String> optionsMap = null;
+	// Significant digits of the x and y values sent as text (0 : shortest)
+	private final int[] significantDigits = { DoubleWriter.SHORTEST, DoubleWriter.SHORTEST };
+
+	private Map<String, List<String>> selectedMap;
+	private HashMap<String, String> optionsMap = null;
 
 	// Keys for optionsMap
 	private static final String chartTitle = "title";
@@ -68,6 +85,17 @@ public class PlotlyScatter extends Composite {
 	private static final String displayModeBar = "displayModeBar";
 	private static final String displayLogo = "displaylogo";
 
+	private static final String type = "type";
+
+	// Above this number of points, the WebGL trace type is used
+	public static final int DEFAULT_GL_THRESHOLD = 20000;
+	private int glThreshold = DEFAULT_GL_THRESHOLD;
+	private String renderMode = "scatter";
+
+	// Progressive mode : preview size, and full data not sent yet
+	private int previewValues = 0;
+	private Progressive progressive;
+
 	/**
 	 * Create the composite.</br>
 	 * 
@@ -81,16 +109,11 @@ public class PlotlyScatter extends Composite {
 	public PlotlyScatter(Composite parent, int style, String[][][] datas) {
 		super(parent, style);
 
-		// Cleaner
-		optionsMap = null;
-		selectedMap = null;
-
-		ClientFileLoader loader = RWT.getClient().getService(ClientFileLoader.class);
-		loader.requireJs("js"+File.separator+"d3.min.js");
-		loader.requireJs("js"+File.separator+"plotly.js");
-		loader.requireJs("js"+File.separator+"plotlyFast.js");
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlyFast.js");
 		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlyGraphFast");
 		remoteObject.set("parent", WidgetUtil.getId(this));
+		PlotlyMetrics.chartCreated(this);
 
 		try {
 			buildScatter(datas);
@@ -104,6 +127,10 @@ public class PlotlyScatter extends Composite {
 			@Override
 			public void widgetDisposed(DisposeEvent arg0) {
 				remoteObject.destroy();
+				fixedDatas = null;
+				progressive = null;
+				selectedMap = null;
+				PlotlyMetrics.chartDisposed(PlotlyScatter.this);
 			}
 		});
 
@@ -119,6 +146,27 @@ public class PlotlyScatter extends Composite {
 					event.data = data;
 					notifyListeners(SWT.Selection, event);
 				}
+
+				if ("Refine".equals(eventName) && progressive != null) {
+					int index = data.get("chunk").asInt();
+					JsonObject chunk = progressive.chunk(data.get("version").asInt(), index);
+					if (chunk != null) {
+						remoteObject.call("refine", chunk);
+						if (progressive.isLast(index))
+							progressive = null;
+					}
+				}
+
+				if ("BlockMiss".equals(eventName)) {
+					BlockCache.getInstance().forget(data.get("hashes").asArray());
+					if (fixedDatas != null) {
+						try {
+							buildScatter(fixedDatas);
+						} catch (FileNotFoundException e) {
+							e.printStackTrace();
+						}
+					}
+				}
 			}
 
 			public void handleSet(JsonObject properties) {
@@ -128,6 +176,9 @@ public class PlotlyScatter extends Composite {
 						System.out.println(properties.get("selected"));
 					}
 
+					if (properties.get("cachedBlocks") != null)
+						BlockCache.getInstance().remember(properties.get("cachedBlocks").asArray());
+
 					if (properties.get("ans") != null) {
 
 						JsonValue arrayValue = properties.get("ans");
@@ -161,6 +212,8 @@ public class PlotlyScatter extends Composite {
 				System.out.println("--------------------");
 			}
 		});
+		remoteObject.listen("BlockMiss", true);
+		remoteObject.listen("Refine", true);
 
 	}
 
@@ -189,7 +242,32 @@ public class PlotlyScatter extends Composite {
 	 * 
 	 */
 	public void updateData(String[][][] datas) throws FileNotFoundException {
-		buildScatter(datas);
+		// Only the changes are sent when the browser holds the previous dataset,
+		// with the y range when it moved
+		double[] yRange = yRange(datas);
+		JsonArray operations = delta(datas);
+		if (operations == null)
+			buildScatter(datas);
+		else if (operations.size() > 0 || !Arrays.equals(yRange, sentRange)) {
+			JsonObject properties = new JsonObject().add("operations", operations);
+			if (!Arrays.equals(yRange, sentRange))
+				properties.add("yRange", yRange[0] != 0.0 || yRange[1] != 0.0
+						? new JsonArray().add(yRange[0]).add(yRange[1])
+						: JsonValue.NULL);
+			sentRange = yRange;
+			remoteObject.call("update", properties);
+		}
+	}
+
+	/**
+	 * To free the graph of the chart when it stays hidden (hidden tab, scrolled
+	 * out of view). The chart is drawn again when it becomes visible.<br>
+	 * 
+	 * @param millis int - Hidden time before the graph is freed, 0 to never free
+	 *               it (default)
+	 */
+	public void setReleaseHidden(int millis) {
+		remoteObject.set("releaseHidden", millis);
 	}
 
 	@Override
@@ -216,15 +294,30 @@ public class PlotlyScatter extends Composite {
 		return selectedMap;
 	}
 
-	private double foundZ(double[] values, double value) {
-		double variance = StatUtils.populationVariance(values);
-		double sd = Math.sqrt(variance);
-		double mean = StatUtils.mean(values);
-		double zscore = (value - mean) / sd;
-		return zscore;
+	// Changes from the dataset sent, null to send the chart whole (most of the
+	// values changed)
+	private JsonArray delta(String[][][] datas) {
+
+		if (sentDatas == null || progressive != null)
+			return null;
+
+		int points = 0;
+		for (int i = 0; i < datas.length; i++)
+			points += datas[i][0].length;
+		if (!renderMode.equals(points > glThreshold ? "scattergl" : "scatter"))
+			return null;
+
+		JsonArray operations = DatasetDiff.columns(sentDatas, datas, new String[] { "x", "y" }, sentGrids);
+		if (operations != null) {
+			fixedDatas = datas;
+			sentDatas = DatasetDiff.copy(datas);
+		}
+		return operations;
 	}
 
-	private void buildScatter(String[][][] datas) throws FileNotFoundException {
+	// Min and max y, the values further than 3 standard deviations from the
+	// mean left out (0 and 0 when not found). Quoted y are unquoted
+	private double[] yRange(String[][][] datas) {
 
 		double yMin = 0.0;
 		double yMax = 0.0;
@@ -237,27 +330,45 @@ public class PlotlyScatter extends Composite {
 						&& datas[i][1][j].substring(datas[i][1][j].length() - 1, datas[i][1][j].length()).equals("'"))
 					datas[i][1][j] = datas[i][1][j].substring(1, datas[i][1][j].length() - 1);
 
+			// Mean and standard deviation of the trace, computed once
+			double[] meanVariance = null;
+			double sd = 0;
+
 			for (int j = 0; j < datas[i][1].length; j++) {
 
-				if (NumberUtils.isCreatable(datas[i][1][j])) {
+				if (!Double.isNaN(DataBlock.toNumber(datas[i][1][j]))) {
 
-					double[] yValues = Arrays.stream(datas[i][1]).mapToDouble(Double::parseDouble).toArray();
+					if (meanVariance == null) {
+						double[] yValues = Arrays.stream(datas[i][1]).mapToDouble(DataBlock::toNumber).toArray();
+						meanVariance = StatKernels.meanVariance(yValues);
+						sd = Math.sqrt(meanVariance[1]);
+					}
 
-					double value = Double.valueOf(datas[i][1][j]);
+					double value = DataBlock.toNumber(datas[i][1][j]);
+					boolean inside = Math.abs((value - meanVariance[0]) / sd) < 3;
 
-					if (yMin == 0.0 && Math.abs(foundZ(yValues, value)) < 3)
+					if (yMin == 0.0 && inside)
 						yMin = value;
-					else if (yMin > value && Math.abs(foundZ(yValues, value)) < 3)
+					else if (yMin > value && inside)
 						yMin = value;
 
-					if (yMax == 0.0 && Math.abs(foundZ(yValues, value)) < 3)
+					if (yMax == 0.0 && inside)
 						yMax = value;
-					else if (yMax < value && Math.abs(foundZ(yValues, value)) < 3)
+					else if (yMax < value && inside)
 						yMax = value;
 				}
 			}
 		}
 
+		return new double[] { yMin, yMax };
+	}
+
+	private void buildScatter(String[][][] datas) throws FileNotFoundException {
+
+		double[] yRange = yRange(datas);
+		double yMin = yRange[0];
+		double yMax = yRange[1];
+
 		for (int i = 0; i < datas.length; i++) {
 
 			for (int j = 0; j < datas[i][0].length; j++)
@@ -286,6 +397,34 @@ public class PlotlyScatter extends Composite {
 		JSONObject layout = jsonObj.getJSONObject("layout");
 		JSONObject options = jsonObj.getJSONObject("options");
 
+		// Numeric columns long enough are sent as blocks, parsed in parallel
+		DataBlock[][] blocks = ParallelEncoding.parse(datas);
+
+		// SVG or WebGL traces
+		int points = 0;
+		for (int i = 0; i < datas.length; i++)
+			points += datas[i][0].length;
+		renderMode = points > glThreshold ? "scattergl" : "scatter";
+		PlotlyResources.requirePlotly(renderMode);
+		PlotlyMetrics.renderModeChosen(this, renderMode, glThreshold);
+
+		// Progressive mode : one point out of step first, the full columns after
+		progressive = null;
+		if (previewValues > 0 && points > previewValues) {
+			int step = Progressive.factor(points, previewValues, false);
+			progressive = new Progressive(step);
+			for (int i = 0; i < datas.length; i++) {
+				if (blocks[i][0] != null && blocks[i][1] != null) {
+					double[] xValues = blocks[i][0].toArray();
+					double[] yValues = blocks[i][1].toArray();
+					progressive.addPoints(i, "x", xValues);
+					progressive.addPoints(i, "y", yValues);
+					blocks[i][0] = DataBlock.of(Progressive.stride(xValues, step));
+					blocks[i][1] = DataBlock.of(Progressive.stride(yValues, step));
+				}
+			}
+		}
+
 		// DATA
 		String str = "{";
 		// TRACES
@@ -293,16 +432,15 @@ public class PlotlyScatter extends Composite {
 		for (int i = 0; i < datas.length; i++) {
 
 			str += "{";
-			// x
-			str += "x: " + Arrays.toString(datas[i][0]) + ",";
-			// y
-			str += "y: " + Arrays.toString(datas[i][1]) + ",";
 
 			Iterator<String> itTrace = trace.keys();
 			while (itTrace.hasNext()) {
 				String key = itTrace.next();
 				String value = (String) trace.get(key);
 
+				if (key.equals(type))
+					value = "'" + renderMode + "'";
+
 				if (optionsMap != null) {
 					switch (key) {
 
@@ -364,8 +502,8 @@ public class PlotlyScatter extends Composite {
 			}
 
 			if (key.equals(yAxisTitle) && (yMin != 0.0 || yMax != 0.0))
-				str += key + " : " + value.substring(0, 1) + "range : [" + yMin + "," + yMax + "], "
-						+ value.substring(1, value.length()) + ",";
+				str += key + " : " + value.substring(0, 1) + "range : [" + DoubleWriter.toString(yMin) + ","
+						+ DoubleWriter.toString(yMax) + "], " + value.substring(1, value.length()) + ",";
 			else
 				str += key + " : " + value + ",";
 		}
@@ -415,7 +553,40 @@ public class PlotlyScatter extends Composite {
 
 		str += "}";
 
-		remoteObject.set("options", JsonObject.readFrom(new JSONObject(str).toString()));
+		JsonObject json = JsonObject.readFrom(new JSONObject(str).toString());
+
+		BlockCache cache = BlockCache.getInstance();
+		JsonArray inputs = json.get("inputs").asArray();
+		double[][][] grids = new double[datas.length][2][];
+		for (int i = 0; i < datas.length; i++) {
+			for (int j = 0; j < 2; j++) {
+				String axis = j == 0 ? "x" : "y";
+				// Evenly spaced columns : start and step instead of the values
+				double[] grid = progressive == null && blocks[i][j] != null
+						? UniformGrid.detect(blocks[i][j].toArray(), UniformGrid.TOLERANCE)
+						: null;
+				if (grid != null) {
+					UniformGrid.apply(inputs.get(i).asObject(), axis, grid);
+					grids[i][j] = grid;
+				} else if (blocks[i][j] != null)
+					inputs.get(i).asObject().add(axis, cache.encode(blocks[i][j]));
+				else {
+					// Added after the templates are read : numbers kept as written
+					inputs.get(i).asObject().add(axis, DoubleWriter.toJson(datas[i][j], significantDigits[j]));
+				}
+			}
+		}
+
+		if (progressive != null && progressive.getChunks() > 0)
+			json.add("progressive", progressive.toJson());
+		else
+			progressive = null;
+
+		remoteObject.set("options", json);
+
+		sentDatas = DatasetDiff.copy(datas);
+		sentGrids = grids;
+		sentRange = yRange;
 
 	}
 
@@ -554,6 +725,89 @@ public class PlotlyScatter extends Composite {
 		}
 	}
 
+	/**
+	 * To update the number of points above which the chart is drawn with WebGL
+	 * ("scattergl" trace type) instead of SVG.<br>
+	 * 
+	 * @param threshold int - Number of points (default : 20000)
+	 */
+	public void upGlThreshold(int threshold) {
+
+		glThreshold = threshold;
+
+		if (fixedDatas != null) {
+			try {
+				buildScatter(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Return the trace type used by the last build.
+	 * 
+	 * @return String - "scatter" or "scattergl"
+	 */
+	public String getRenderMode() {
+		return renderMode;
+	}
+
+	/**
+	 * To draw a large chart progressively : a preview of about previewValues points
+	 * is drawn first, then the full data is sent by chunks and merged into the
+	 * chart, keeping its zoom.<br>
+	 * 
+	 * @param previewValues int - Number of points of the preview, 0 to send the whole
+	 *                      data at once (default)
+	 */
+	public void upProgressive(int previewValues) {
+
+		this.previewValues = previewValues;
+
+		if (fixedDatas != null) {
+			try {
+				buildScatter(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To limit the significant digits of the x or y values sent as text
+	 * (columns shorter than BlockCache.MIN_VALUES, longer ones are sent as
+	 * binary blocks).<br>
+	 * 
+	 * @param axis   String - "x" or "y"
+	 * @param digits int - Significant digits (1 to 17), 0 to send the values
+	 *               as given (default)
+	 */
+	public void upSignificantDigits(String axis, int digits) {
+
+		if (digits < 0 || digits > 17)
+			SWT.error(SWT.ERROR_INVALID_RANGE);
+
+		switch (axis) {
+		case "x":
+			significantDigits[0] = digits;
+			break;
+		case "y":
+			significantDigits[1] = digits;
+			break;
+		default:
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Axis x or y only");
+		}
+
+		if (fixedDatas != null) {
+			try {
+				buildScatter(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	/**
 	 * To update plot's options.<br>
 	 * 
@@ -18,17 +18,29 @@ import org.eclipse.rap.json.JsonArray;
 import org.eclipse.rap.json.JsonObject;
 import org.eclipse.rap.json.JsonValue;
 import org.eclipse.rap.rwt.RWT;
-import org.eclipse.rap.rwt.client.service.ClientFileLoader;
 import org.eclipse.rap.rwt.remote.AbstractOperationHandler;
 import org.eclipse.rap.rwt.remote.RemoteObject;
 import org.eclipse.rap.rwt.widgets.WidgetUtil;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 
+import plotly.encoding.BlockCache;
+import plotly.encoding.DataBlock;
+import plotly.encoding.DatasetDiff;
+import plotly.encoding.DoubleWriter;
+import plotly.encoding.MeshDecimation;
+import plotly.encoding.PatchRegions;
+import plotly.encoding.Progressive;
+import plotly.encoding.StatKernels;
+import plotly.encoding.UniformGrid;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
 /**
  * Invoke this class to build a fast Surface chart. <br>
  * Call PlotlySurface(Composite parent, int style, double[][] datas) to obtain
@@ -47,10 +59,10 @@ public class PlotlySurface extends Composite {
 	private final RemoteObject remoteObject;
 
 	// To rebuild
-	private static double[][] fixedDatas;
+	private double[][] fixedDatas;
 
-	private static Map<String, List<String>> selectedMap;
-	private static HashMap<String, String> optionsMap = null;
+	private Map<String, List<String>> selectedMap;
+	private HashMap<String, String> optionsMap = null;
 
 	// Keys for optionsMap
 	private static final String chartTitle = "title";
@@ -75,6 +87,37 @@ public class PlotlySurface extends Composite {
 	private static final String displayModeBar = "displayModeBar";
 	private static final String displayLogo = "displaylogo";
 
+	// Progressive mode : preview size, and full data not sent yet
+	private int previewValues = 0;
+	private Progressive progressive;
+
+	// Decimation : vertices drawn, 0 for one vertex by 2 x 2 pixels
+	private static final int DEFAULT_VERTICES = 250000;
+	private MeshDecimation.Mode decimation = null;
+	private int vertices = 0;
+	private double tolerance = 0;
+	private int decimatedBudget;
+
+	// Patches : changed regions not sent yet, and matrix held as it is by the
+	// browser (not pooled, decimated or previewed)
+	private final PatchRegions patches = new PatchRegions();
+	private boolean patchScheduled = false;
+	private boolean patchable = false;
+
+	// Diffing : hash of each row of the matrix held by the browser
+	private long[] rowHashes;
+	private int hashedColumns;
+
+	// Significant digits of z sent as text (0 : shortest)
+	private int significantDigits = DoubleWriter.SHORTEST;
+
+	// Quantization : bits of z, 0 to send doubles, and error of the last build
+	private int quantization = 0;
+	private double quantizationError = 0;
+	// Bounds of the last build, shared by the progressive chunks and the
+	// patches quantized after it, null if z is not quantized
+	private double[] quantizationRange;
+
 	/**
 	 * Create the composite.</br>
 	 * 
@@ -87,16 +130,12 @@ public class PlotlySurface extends Composite {
 	public PlotlySurface(Composite parent, int style, double[][] datas) {
 		super(parent, style);
 
-		// Cleaner
-		optionsMap = null;
-		selectedMap = null;
-
-		ClientFileLoader loader = RWT.getClient().getService(ClientFileLoader.class);
-		loader.requireJs("js"+File.separator+"d3.min.js");
-		loader.requireJs("js"+File.separator+"plotly.js");
-		loader.requireJs("js"+File.separator+"plotlyFast.js");
+		PlotlyResources.requirePlotly("surface");
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlyFast.js");
 		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlyGraphFast");
 		remoteObject.set("parent", WidgetUtil.getId(this));
+		PlotlyMetrics.chartCreated(this);
 
 		try {
 			buildSurface(datas);
@@ -105,12 +144,34 @@ public class PlotlySurface extends Composite {
 			e.printStackTrace();
 		}
 
+		// Budget of the decimated mesh follows the size of the widget (Composite
+		// listener : the Selection events are not needed for it)
+		super.addListener(SWT.Resize, new Listener() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void handleEvent(Event event) {
+				if (decimation != null && vertices == 0 && fixedDatas != null
+						&& vertexBudget() != decimatedBudget) {
+					try {
+						buildSurface(fixedDatas);
+					} catch (FileNotFoundException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+
 		this.addDisposeListener(new DisposeListener() {
 			private static final long serialVersionUID = 7780300831817645309L;
 
 			@Override
 			public void widgetDisposed(DisposeEvent arg0) {
 				remoteObject.destroy();
+				fixedDatas = null;
+				progressive = null;
+				selectedMap = null;
+				PlotlyMetrics.chartDisposed(PlotlySurface.this);
 			}
 		});
 
@@ -126,6 +187,27 @@ public class PlotlySurface extends Composite {
 					event.data = data;
 					notifyListeners(SWT.Selection, event);
 				}
+
+				if ("Refine".equals(eventName) && progressive != null) {
+					int index = data.get("chunk").asInt();
+					JsonObject chunk = progressive.chunk(data.get("version").asInt(), index);
+					if (chunk != null) {
+						remoteObject.call("refine", chunk);
+						if (progressive.isLast(index))
+							progressive = null;
+					}
+				}
+
+				if ("BlockMiss".equals(eventName)) {
+					BlockCache.getInstance().forget(data.get("hashes").asArray());
+					if (fixedDatas != null) {
+						try {
+							buildSurface(fixedDatas);
+						} catch (FileNotFoundException e) {
+							e.printStackTrace();
+						}
+					}
+				}
 			}
 
 			public void handleSet(JsonObject properties) {
@@ -135,6 +217,9 @@ public class PlotlySurface extends Composite {
 						System.out.println(properties.get("selected"));
 					}
 
+					if (properties.get("cachedBlocks") != null)
+						BlockCache.getInstance().remember(properties.get("cachedBlocks").asArray());
+
 					if (properties.get("ans") != null) {
 
 						JsonValue arrayValue = properties.get("ans");
@@ -168,6 +253,8 @@ public class PlotlySurface extends Composite {
 				System.out.println("--------------------");
 			}
 		});
+		remoteObject.listen("BlockMiss", true);
+		remoteObject.listen("Refine", true);
 
 	}
 
@@ -192,13 +279,75 @@ public class PlotlySurface extends Composite {
 	/**
 	 * Update the current chart. <br>
 	 * 
-	 * @param datas double[][]
+	 * @param datas double[][] - Kept, not copied : patch writes into it
 	 * 
 	 */
 	public void updateData(double[][] datas) throws FileNotFoundException {
+		// Only the changed rows are sent when the browser holds the matrix
+		int[] changed = patchable ? DatasetDiff.changedRows(rowHashes, hashedColumns, datas) : null;
+		if (changed != null) {
+			fixedDatas = datas;
+			for (int row : changed) {
+				rowHashes[row] = DatasetDiff.hash(datas[row]);
+				patches.add(row, 0, 1, hashedColumns);
+			}
+			schedulePatches();
+			return;
+		}
 		buildSurface(datas);
 	}
 
+	/**
+	 * Write a block of values into the matrix of the chart. Patches of the same
+	 * request are merged and only the changed cells are sent, the browser
+	 * writes them into its matrix (the whole matrix is sent again when the
+	 * chart shows it decimated or as a progressive preview).<br>
+	 * The matrix of the chart is the one given to the constructor or to
+	 * updateData (kept, not copied) : the block is written in place into that
+	 * matrix, which the caller sees changed.<br>
+	 * 
+	 * @param rowOffset    int - Row of the first value of the block
+	 * @param columnOffset int - Column of the first value of the block
+	 * @param block        double[][] - Values (copied), rows of the same length
+	 */
+	public void patch(int rowOffset, int columnOffset, double[][] block) {
+
+		if (fixedDatas == null)
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Patch of a matrix only");
+		if (block == null || block.length == 0)
+			return;
+
+		int columns = block[0] == null ? 0 : block[0].length;
+		if (rowOffset < 0 || columnOffset < 0 || rowOffset + block.length > fixedDatas.length)
+			SWT.error(SWT.ERROR_INVALID_RANGE);
+		for (int i = 0; i < block.length; i++) {
+			if (block[i] == null || block[i].length != columns)
+				SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Rows of the block must have the same length");
+			if (columnOffset + columns > fixedDatas[rowOffset + i].length)
+				SWT.error(SWT.ERROR_INVALID_RANGE);
+		}
+
+		for (int i = 0; i < block.length; i++)
+			System.arraycopy(block[i], 0, fixedDatas[rowOffset + i], columnOffset, columns);
+		patches.add(rowOffset, columnOffset, block.length, columns);
+		if (rowHashes != null)
+			for (int i = 0; i < block.length; i++)
+				rowHashes[rowOffset + i] = DatasetDiff.hash(fixedDatas[rowOffset + i]);
+
+		schedulePatches();
+	}
+
+	/**
+	 * To free the graph of the chart when it stays hidden (hidden tab, scrolled
+	 * out of view). The chart is drawn again when it becomes visible.<br>
+	 * 
+	 * @param millis int - Hidden time before the graph is freed, 0 to never free
+	 *               it (default)
+	 */
+	public void setReleaseHidden(int millis) {
+		remoteObject.set("releaseHidden", millis);
+	}
+
 	@Override
 	protected void checkSubclass() {
 		// Disable the check that prevents subclassing of SWT components
@@ -224,6 +373,49 @@ public class PlotlySurface extends Composite {
 		JSONObject layout = jsonObj.getJSONObject("layout");
 		JSONObject options = jsonObj.getJSONObject("options");
 
+		// Matrix long enough is sent as a block
+		DataBlock block = null;
+		if (datas.length > 0 && datas.length * datas[0].length >= BlockCache.MIN_VALUES)
+			block = DataBlock.of(datas);
+
+		int cells = 0;
+		for (int i = 0; i < datas.length; i++)
+			cells += datas[i].length;
+
+		// Decimation : rows and columns kept under the vertex budget
+		int[][] kept = null;
+		if (decimation != null && block != null) {
+			decimatedBudget = vertexBudget();
+			kept = MeshDecimation.select(datas, decimatedBudget, tolerance, decimation);
+			if (kept[0].length == datas.length && kept[1].length == datas[0].length)
+				kept = null;
+			else
+				block = DataBlock.of(MeshDecimation.cut(datas, kept[0], kept[1]));
+		}
+
+		// Progressive mode : pooled matrix first, the full rows after
+		progressive = null;
+		double[][] preview = null;
+		if (previewValues > 0 && cells > previewValues && block != null && kept == null) {
+			int factor = Progressive.factor(cells, previewValues, true);
+			preview = Progressive.pool(datas, factor);
+			progressive = new Progressive(factor);
+			progressive.addRows(0, "z", datas);
+			block = DataBlock.of(preview);
+		}
+
+		// Quantization : z sent as 8 or 16 bits indexes
+		// between the finite bounds of the whole matrix, for every part sent
+		quantizationError = 0;
+		quantizationRange = null;
+		if (quantization > 0 && block != null) {
+			quantizationRange = StatKernels.finiteRange(datas);
+			block = block.quantize(quantization, quantizationRange[0], quantizationRange[1]);
+			quantizationError = block.getError();
+			if (progressive != null)
+				progressive.setQuantization(quantization, quantizationRange[0], quantizationRange[1]);
+		}
+
 		// DATA
 		String str = "{";
 		// TRACES
@@ -231,9 +423,6 @@ public class PlotlySurface extends Composite {
 
 		str += "{";
 
-		// z
-		str += "z: " + Arrays.deepToString(datas) + ",";
-
 		Iterator<String> itTrace = trace.keys();
 		while (itTrace.hasNext()) {
 			String key = itTrace.next();
@@ -375,7 +564,47 @@ public class PlotlySurface extends Composite {
 
 		str += "}";
 
-		remoteObject.set("options", JsonObject.readFrom(new JSONObject(str).toString()));
+		JsonObject json = JsonObject.readFrom(new JSONObject(str).toString());
+
+		// z added after the templates are read, its numbers as written
+		json.get("inputs").asArray().get(0).asObject().add("z", block != null
+				? BlockCache.getInstance().encode(block)
+				: DoubleWriter.toJson(datas, significantDigits));
+
+		patches.clear();
+		rowHashes = null;
+		patchable = kept == null && progressive == null;
+		if (patchable && datas.length > 0) {
+			rowHashes = DatasetDiff.hashes(datas);
+			hashedColumns = datas[0].length;
+		}
+
+		// Coordinates of the kept rows and columns
+		if (kept != null) {
+			JsonObject first = json.get("inputs").asArray().get(0).asObject();
+			first.set(x, MeshDecimation.axis(first.get(x), kept[1]));
+			first.set(y, MeshDecimation.axis(first.get(y), kept[0]));
+		}
+
+		if (progressive != null) {
+			JsonObject first = json.get("inputs").asArray().get(0).asObject();
+			progressive.previewAxis(first, 0, x, datas[0].length, preview[0].length);
+			progressive.previewAxis(first, 0, y, datas.length, preview.length);
+			json.add("progressive", progressive.toJson());
+		}
+
+		// Evenly spaced coordinates : surface traces have no x0 / dx, the grid
+		// is expanded by PlotlyUtils.blocks
+		if (progressive == null) {
+			JsonObject first = json.get("inputs").asArray().get(0).asObject();
+			for (String axis : new String[] { x, y }) {
+				double[] grid = UniformGrid.detect(first.get(axis), UniformGrid.TOLERANCE);
+				if (grid != null)
+					first.set(axis, UniformGrid.toJson(grid, first.get(axis).asArray().size()));
+			}
+		}
+
+		remoteObject.set("options", json);
 
 	}
 
@@ -663,6 +892,114 @@ public class PlotlySurface extends Composite {
 		}
 	}
 
+	/**
+	 * To draw a large chart progressively : a preview of about previewValues cells
+	 * is drawn first, then the full data is sent by chunks and merged into the
+	 * chart, keeping its zoom.<br>
+	 * 
+	 * @param previewValues int - Number of cells of the preview, 0 to send the whole
+	 *                      data at once (default)
+	 */
+	public void upProgressive(int previewValues) {
+
+		this.previewValues = previewValues;
+
+		if (fixedDatas != null) {
+			try {
+				buildSurface(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To draw a large surface with fewer vertices : whole rows and columns are
+	 * kept under the budget, the x and y coordinates (upCoordinates) follow
+	 * them. The matrix is kept by the chart.<br>
+	 * 
+	 * @param mode      MeshDecimation.Mode - STRIDE (evenly spaced) or ADAPTIVE
+	 *                  (more rows and columns where the surface bends), null
+	 *                  to send the whole matrix (default)
+	 * @param vertices  int - Largest number of vertices, 0 for one vertex by 2
+	 *                  x 2 pixels of the widget
+	 * @param tolerance double - ADAPTIVE : largest error in z units under which
+	 *                  the mesh is not refined, 0 to use the whole budget
+	 */
+	public void upDecimation(MeshDecimation.Mode mode, int vertices, double tolerance) {
+
+		decimation = mode;
+		this.vertices = vertices;
+		this.tolerance = tolerance;
+
+		if (fixedDatas != null) {
+			try {
+				buildSurface(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To limit the significant digits of z when the matrix is sent as text
+	 * (fewer than BlockCache.MIN_VALUES cells, larger ones are sent as binary
+	 * blocks, see upQuantization).<br>
+	 * 
+	 * @param digits int - Significant digits (1 to 17), 0 for the shortest
+	 *               exact form (default)
+	 */
+	public void upSignificantDigits(int digits) {
+
+		if (digits < 0 || digits > 17)
+			SWT.error(SWT.ERROR_INVALID_RANGE);
+
+		significantDigits = digits;
+
+		if (fixedDatas != null) {
+			try {
+				buildSurface(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * To send z as 8 or 16 bits indexes between its smallest and largest values
+	 * : 8 or 4 times smaller than doubles. Colors and hover show the values
+	 * read back by the browser, at most getQuantizationError() away from z.<br>
+	 * 
+	 * @param bits int - 8 (255 levels), 16 (65535 levels), 0 to send doubles
+	 *             (default)
+	 */
+	public void upQuantization(int bits) {
+
+		if (bits != 0 && bits != 8 && bits != 16)
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, " Quantization on 8 or 16 bits only");
+
+		quantization = bits;
+
+		if (fixedDatas != null) {
+			try {
+				buildSurface(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Largest difference between z and the values drawn by the browser : half
+	 * the range of z divided by 254 (8 bits) or 65534 (16 bits), 0 without
+	 * quantization or for a matrix sent inline (too small for a block).
+	 * 
+	 * @return double
+	 */
+	public double getQuantizationError() {
+		return quantizationError;
+	}
+
 	/**
 	 * To update plot's options.<br>
 	 * 
@@ -724,4 +1061,57 @@ public class PlotlySurface extends Composite {
 			}
 		}
 	}
-}
+
+	private void schedulePatches() {
+		if (!patchScheduled) {
+			patchScheduled = true;
+			getDisplay().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					patchScheduled = false;
+					if (!isDisposed())
+						sendPatches();
+				}
+			});
+		}
+	}
+
+	// Changed cells since the last sending, or the whole matrix when the
+	// browser does not hold it as it is (or when most of it changed)
+	private void sendPatches() {
+
+		if (patches.isEmpty() || fixedDatas == null) {
+			patches.clear();
+			return;
+		}
+
+		long cells = 0;
+		for (int i = 0; i < fixedDatas.length; i++)
+			cells += fixedDatas[i].length;
+
+		// Values out of the bounds of the quantization : new bounds
+		if (!patchable || patches.getCells() * 2 > cells || (quantizationRange != null
+				&& !patches.within(fixedDatas, quantizationRange[0], quantizationRange[1]))) {
+			try {
+				buildSurface(fixedDatas);
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
+		JsonArray sent = quantizationRange == null ? patches.toJson(fixedDatas, 0, 0, 0)
+				: patches.toJson(fixedDatas, quantization, quantizationRange[0], quantizationRange[1]);
+		remoteObject.call("patch", new JsonObject().add("patches", sent));
+	}
+
+	// Vertices of the decimated mesh
+	private int vertexBudget() {
+		if (vertices > 0)
+			return vertices;
+		Point size = getSize();
+		if (size.x <= 0 || size.y <= 0)
+			return DEFAULT_VERTICES;
+		return Math.max(4, (size.x / 2) * (size.y / 2));
+	}
+}
\ No newline at end of file
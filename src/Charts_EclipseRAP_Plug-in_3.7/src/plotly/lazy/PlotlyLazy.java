@@ -0,0 +1,226 @@
+package plotly.lazy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.ScrollBar;
+import org.eclipse.swt.widgets.Scrollable;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * Invoke this class to create a chart only when it is shown. <br>
+ * At first only this composite is created : the chart (its scripts, remote
+ * object and data) is created by the factory when the bounds of the composite
+ * intersect the visible area of its parents (scrolled composites, table rows,
+ * hidden tabs). When the composite stays out of view for the release delay,
+ * the chart is disposed, and created again when it comes back in view.<br>
+ * The release runs on the first request after the delay, unless a server push
+ * session is active.<br>
+ * <br>
+ * Exemple:<br>
+ * PlotlyLazy pl = new PlotlyLazy(HomeComposite, SWT.NONE, parent -&gt; new
+ * PlotlyScatter(parent, SWT.NONE, datas));<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class PlotlyLazy extends Composite {
+
+	private static final long serialVersionUID = 4173410556573336700L;
+
+	/**
+	 * Create the chart of a PlotlyLazy.
+	 */
+	public interface Factory {
+
+		/**
+		 * @param parent Composite - The PlotlyLazy
+		 * @return Control - The chart, created in parent
+		 */
+		Control create(Composite parent);
+	}
+
+	public static final int DEFAULT_RELEASE_DELAY = 30000;
+
+	private final Factory factory;
+	private Control chart;
+
+	private int releaseDelay = DEFAULT_RELEASE_DELAY;
+	private Runnable release;
+	private boolean checkPending = false;
+
+	// Widgets whose events can move this composite in or out of view
+	private final List<Widget> watched = new ArrayList<Widget>();
+
+	private final Listener listener = new Listener() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void handleEvent(Event event) {
+			scheduleCheck();
+		}
+	};
+
+	/**
+	 * Create the composite.</br>
+	 *
+	 *
+	 * @param parent  A widget which will be the parent of the new instance (cannot
+	 *                be null)
+	 * @param style   The style of widget to construct
+	 * @param factory Factory - Create the chart
+	 */
+	public PlotlyLazy(Composite parent, int style, Factory factory) {
+		super(parent, style);
+
+		this.factory = factory;
+		setLayout(new FillLayout());
+
+		watch(this);
+		for (Composite ancestor = parent; ancestor != null; ancestor = ancestor.getParent()) {
+			watch(ancestor);
+			// Scrolling is sent to the server at once
+			if (ancestor instanceof Scrollable) {
+				watch(((Scrollable) ancestor).getHorizontalBar());
+				watch(((Scrollable) ancestor).getVerticalBar());
+			}
+		}
+
+		this.addDisposeListener(new DisposeListener() {
+			private static final long serialVersionUID = 7780300831817645309L;
+
+			@Override
+			public void widgetDisposed(DisposeEvent arg0) {
+				cancelRelease();
+				for (Widget widget : watched) {
+					if (!widget.isDisposed()) {
+						widget.removeListener(SWT.Resize, listener);
+						widget.removeListener(SWT.Move, listener);
+						widget.removeListener(SWT.Show, listener);
+						widget.removeListener(SWT.Hide, listener);
+						widget.removeListener(SWT.Selection, listener);
+					}
+				}
+				watched.clear();
+				chart = null;
+			}
+		});
+
+		scheduleCheck();
+	}
+
+	/**
+	 * Return the chart, null while it is not created.
+	 *
+	 * @return Control
+	 */
+	public Control getChart() {
+		return chart;
+	}
+
+	/**
+	 * To update the time a chart stays out of view before it is disposed.
+	 *
+	 * @param millis int - Delay (default : 30000), negative to never dispose the
+	 *               chart
+	 */
+	public void setReleaseDelay(int millis) {
+		releaseDelay = millis;
+		cancelRelease();
+		scheduleCheck();
+	}
+
+	@Override
+	protected void checkSubclass() {
+		// Disable the check that prevents subclassing of SWT components
+	}
+
+	private void watch(Widget widget) {
+		if (widget == null)
+			return;
+		if (widget instanceof ScrollBar) {
+			widget.addListener(SWT.Selection, listener);
+		} else {
+			widget.addListener(SWT.Resize, listener);
+			widget.addListener(SWT.Move, listener);
+			widget.addListener(SWT.Show, listener);
+			widget.addListener(SWT.Hide, listener);
+		}
+		watched.add(widget);
+	}
+
+	// Checked once, after the events of the request
+	private void scheduleCheck() {
+		if (checkPending || isDisposed())
+			return;
+		checkPending = true;
+		getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				checkPending = false;
+				check();
+			}
+		});
+	}
+
+	private void check() {
+		if (isDisposed())
+			return;
+
+		if (isInView()) {
+			cancelRelease();
+			if (chart == null) {
+				chart = factory.create(this);
+				layout(true);
+			}
+		} else if (chart != null && release == null && releaseDelay >= 0) {
+			release = new Runnable() {
+				@Override
+				public void run() {
+					release = null;
+					if (!isDisposed() && chart != null && !isInView()) {
+						chart.dispose();
+						chart = null;
+					}
+				}
+			};
+			getDisplay().timerExec(releaseDelay, release);
+		}
+	}
+
+	private void cancelRelease() {
+		if (release != null) {
+			getDisplay().timerExec(-1, release);
+			release = null;
+		}
+	}
+
+	// Bounds of the composite clipped by the client area of every parent
+	private boolean isInView() {
+
+		if (!isVisible())
+			return false;
+
+		Display display = getDisplay();
+		Rectangle bounds = display.map(getParent(), null, getBounds());
+		if (bounds.isEmpty())
+			return false;
+
+		for (Composite ancestor = getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+			bounds = bounds.intersection(display.map(ancestor, null, ancestor.getClientArea()));
+			if (bounds.isEmpty())
+				return false;
+		}
+		return true;
+	}
+}
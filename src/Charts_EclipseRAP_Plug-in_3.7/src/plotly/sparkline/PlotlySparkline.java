@@ -0,0 +1,121 @@
+package plotly.sparkline;
+
+import org.eclipse.rap.json.JsonObject;
+import org.eclipse.rap.rwt.RWT;
+import org.eclipse.rap.rwt.remote.RemoteObject;
+import org.eclipse.rap.rwt.widgets.WidgetUtil;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.widgets.Composite;
+
+import plotly.encoding.DataBlock;
+import plotly.utils.PlotlyMetrics;
+import plotly.utils.PlotlyResources;
+
+/**
+ * Invoke this class to build a sparkline (table cells, KPI tiles). <br>
+ * A sparkline is drawn on a canvas, without Plotly : thousands of them can be
+ * shown on one page. The values are sent as a single precision block.<br>
+ * <br>
+ * Exemple:<br>
+ * double[] values = { 3, 5, 4, 8, 6, 9 };<br>
+ * PlotlySparkline ps = new PlotlySparkline(HomeComposite, SWT.NONE,
+ * values);<br>
+ * ps.upColor("#d62728");<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class PlotlySparkline extends Composite {
+
+	private static final long serialVersionUID = 4173410556573336700L;
+	private final RemoteObject remoteObject;
+
+	/**
+	 * Create the composite.</br>
+	 *
+	 *
+	 * @param parent A widget which will be the parent of the new instance (cannot
+	 *               be null)
+	 * @param style  The style of widget to construct
+	 * @param values double[] - Values of the line
+	 */
+	public PlotlySparkline(Composite parent, int style, double[] values) {
+		super(parent, style);
+
+		PlotlyResources.requireJs("plotlyUtils.js");
+		PlotlyResources.requireJs("plotlySparkline.js");
+		remoteObject = RWT.getUISession().getConnection().createRemoteObject("PlotlySparkline");
+		remoteObject.set("parent", WidgetUtil.getId(this));
+		PlotlyMetrics.chartCreated(this);
+
+		updateData(values);
+
+		this.addDisposeListener(new DisposeListener() {
+			private static final long serialVersionUID = 7780300831817645309L;
+
+			@Override
+			public void widgetDisposed(DisposeEvent arg0) {
+				remoteObject.destroy();
+				PlotlyMetrics.chartDisposed(PlotlySparkline.this);
+			}
+		});
+	}
+
+	/**
+	 * Update the values of the line. <br>
+	 *
+	 * @param values double[] - Values of the line, NaN breaks the line
+	 */
+	public void updateData(double[] values) {
+		// Not kept in the BlockCache : thousands of small blocks would evict the
+		// blocks of the charts. No hash either
+		JsonObject block = DataBlock.ofFloat(values).toDataJson();
+		remoteObject.set("values", block);
+	}
+
+	/**
+	 * To update the color of the line.
+	 *
+	 * @param color String - CSS color (default : "#1f77b4")
+	 */
+	public void upColor(String color) {
+		remoteObject.set("color", color);
+	}
+
+	/**
+	 * To fill the area under the line.
+	 *
+	 * @param color String - CSS color (ex : "rgba(31,119,180,0.2)"), null for no
+	 *              fill (default)
+	 */
+	public void upFill(String color) {
+		if (color == null)
+			remoteObject.set("fill", false);
+		else
+			remoteObject.set("fill", color);
+	}
+
+	/**
+	 * To update the width of the line.
+	 *
+	 * @param width int - Width in pixels (default : 1)
+	 */
+	public void upLineWidth(int width) {
+		remoteObject.set("lineWidth", width);
+	}
+
+	/**
+	 * To show or hide the marker of the last value.
+	 *
+	 * @param show boolean - (default : true)
+	 */
+	public void upLastPoint(boolean show) {
+		remoteObject.set("lastPoint", show);
+	}
+
+	@Override
+	protected void checkSubclass() {
+		// Disable the check that prevents subclassing of SWT components
+	}
+}
@@ -0,0 +1,108 @@
+package plotly.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Debug counters of the charts. <br>
+ * Every chart is counted when created and uncounted when disposed : a number
+ * of live charts which keeps growing in a long-lived session shows a chart
+ * which is never disposed. The client keeps the same counter
+ * (PlotlyUtils.debug.live, plotlyUtils.js).<br>
+ * <br>
+ * Exemple:<br>
+ * System.out.println(PlotlyMetrics.getLiveCharts());<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class PlotlyMetrics {
+
+	private static final Map<String, AtomicInteger> liveCharts = new ConcurrentHashMap<String, AtomicInteger>();
+	private static final Map<String, AtomicInteger> renderModes = new ConcurrentHashMap<String, AtomicInteger>();
+	private static final Map<String, Integer> glThresholds = new ConcurrentHashMap<String, Integer>();
+
+	private PlotlyMetrics() {
+	}
+
+	/**
+	 * To count a new chart.
+	 *
+	 * @param chart Object - The chart
+	 */
+	public static void chartCreated(Object chart) {
+		counter(liveCharts, chart.getClass().getSimpleName()).incrementAndGet();
+	}
+
+	/**
+	 * To uncount a disposed chart.
+	 *
+	 * @param chart Object - The chart
+	 */
+	public static void chartDisposed(Object chart) {
+		counter(liveCharts, chart.getClass().getSimpleName()).decrementAndGet();
+	}
+
+	/**
+	 * @return int - Number of live charts, all types
+	 */
+	public static int getLiveCharts() {
+		int count = 0;
+		for (AtomicInteger counter : liveCharts.values())
+			count += counter.get();
+		return count;
+	}
+
+	/**
+	 * @return Map&ltString, Integer&gt - Number of live charts by class name (ex :
+	 *         "PlotlyScatter")
+	 */
+	public static Map<String, Integer> getLiveChartsByType() {
+		Map<String, Integer> counts = new TreeMap<String, Integer>();
+		for (Map.Entry<String, AtomicInteger> entry : liveCharts.entrySet())
+			counts.put(entry.getKey(), entry.getValue().get());
+		return counts;
+	}
+
+	/**
+	 * To count a build of a chart which chooses its trace type by size.
+	 *
+	 * @param chart     Object - The chart
+	 * @param mode      String - Trace type chosen (ex : "scattergl")
+	 * @param threshold int - Size above which the WebGL trace type is chosen
+	 */
+	public static void renderModeChosen(Object chart, String mode, int threshold) {
+		String type = chart.getClass().getSimpleName();
+		counter(renderModes, type + ":" + mode).incrementAndGet();
+		glThresholds.put(type, threshold);
+	}
+
+	/**
+	 * @return Map&ltString, Integer&gt - Number of builds by chart class and trace
+	 *         type (ex : "PlotlyScatter:scattergl")
+	 */
+	public static Map<String, Integer> getRenderModes() {
+		Map<String, Integer> counts = new TreeMap<String, Integer>();
+		for (Map.Entry<String, AtomicInteger> entry : renderModes.entrySet())
+			counts.put(entry.getKey(), entry.getValue().get());
+		return counts;
+	}
+
+	/**
+	 * @return Map&ltString, Integer&gt - Last WebGL threshold used by chart class
+	 */
+	public static Map<String, Integer> getGlThresholds() {
+		return new TreeMap<String, Integer>(glThresholds);
+	}
+
+	private static AtomicInteger counter(Map<String, AtomicInteger> counters, String key) {
+		AtomicInteger counter = counters.get(key);
+		if (counter == null) {
+			counters.putIfAbsent(key, new AtomicInteger());
+			counter = counters.get(key);
+		}
+		return counter;
+	}
+}
@@ -0,0 +1,253 @@
+package plotly.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.rap.rwt.RWT;
+import org.eclipse.rap.rwt.client.service.ClientFileLoader;
+import org.eclipse.rap.rwt.service.ApplicationContext;
+import org.eclipse.rap.rwt.service.ResourceLoader;
+import org.eclipse.rap.rwt.service.ResourceManager;
+import org.eclipse.rap.rwt.service.UISession;
+
+/**
+ * Load the javaScript files of the charts. <br>
+ * Files found by the resource loader under "js/" (the class path by default :
+ * a "js" folder beside the classes) are registered once per application in
+ * the RAP ResourceManager, under a name containing the hash of their content
+ * ("plotly/plotlyFast.1a2b3c4d5e6f.js"), with a gzip variant (".gz") and the
+ * brotli variant (".br") if one is deployed beside the file. Those names never
+ * change for a given content, so they can be served with immutable cache
+ * headers (see the "plotlyResources" servlet in web.xml). The other files are
+ * loaded from the WebContent "js" folder.<br>
+ * <br>
+ * One Plotly bundle is loaded per UISession : the smallest deployed partial
+ * bundle containing the trace types given to setTraceTypes, the full bundle
+ * by default. A chart asking for a trace type the bundle does not contain is
+ * refused, two Plotly bundles are never loaded in the same page.<br>
+ * <br>
+ * Exemple:<br>
+ * PlotlyResources.setTraceTypes("scatter", "bar", "heatmap");<br>
+ * PlotlyResources.requirePlotly("heatmap");<br>
+ * PlotlyResources.requireJs("plotlyFast.js");<br>
+ *
+ * @author Benoit Boucounaud
+ * @version 1.0
+ */
+public class PlotlyResources {
+
+	// Plotly bundles, from the smallest to the full one
+	public static final String BASIC = "plotly-basic.js";
+	public static final String CARTESIAN = "plotly-cartesian.js";
+	public static final String GL2D = "plotly-gl2d.js";
+	public static final String GL3D = "plotly-gl3d.js";
+	public static final String FULL = "plotly.js";
+
+	private static final List<String> bundles = Arrays.asList(BASIC, CARTESIAN, GL2D, GL3D);
+	private static final Map<String, Set<String>> bundleTypes = new HashMap<String, Set<String>>();
+
+	static {
+		// Trace types of the plotly.js 1.39 partial bundles
+		bundleTypes.put(BASIC, new HashSet<String>(Arrays.asList("scatter", "bar", "pie")));
+		bundleTypes.put(CARTESIAN, new HashSet<String>(Arrays.asList("scatter", "bar", "box", "heatmap", "histogram",
+				"histogram2d", "histogram2dcontour", "pie", "contour", "scatterternary", "violin")));
+		bundleTypes.put(GL2D, new HashSet<String>(
+				Arrays.asList("scatter", "scattergl", "splom", "pointcloud", "heatmapgl", "contourgl", "parcoords")));
+		bundleTypes.put(GL3D, new HashSet<String>(
+				Arrays.asList("scatter", "scatter3d", "surface", "mesh3d", "cone", "streamtube")));
+	}
+
+	private static final String folder = "js";
+	private static final String registered = PlotlyResources.class.getName() + ".registered";
+	private static final String loadedBundle = PlotlyResources.class.getName() + ".bundle";
+
+	// Trace types drawn by the application, null for the full bundle
+	private static volatile Set<String> traceTypes;
+	private static volatile ResourceLoader resourceLoader = new ResourceLoader() {
+		@Override
+		public InputStream getResourceAsStream(String resourceName) {
+			return PlotlyResources.class.getClassLoader().getResourceAsStream(resourceName);
+		}
+	};
+
+	private PlotlyResources() {
+	}
+
+	/**
+	 * Set the trace types drawn by the application, before the first chart :
+	 * the smallest deployed bundle containing them is loaded in each
+	 * UISession.<br>
+	 * Without trace type, the full bundle is loaded.
+	 *
+	 * @param types String... - Plotly trace types (ex : "scatter", "heatmap")
+	 */
+	public static void setTraceTypes(String... types) {
+		traceTypes = types.length == 0 ? null : new HashSet<String>(Arrays.asList(types));
+	}
+
+	/**
+	 * Set the loader of the "js/" files (the class path by default).
+	 *
+	 * @param loader ResourceLoader - Loader of the "js/..." resources
+	 */
+	public static void setResourceLoader(ResourceLoader loader) {
+		resourceLoader = loader;
+	}
+
+	/**
+	 * Load the Plotly bundle of the application (once per UISession).
+	 *
+	 * @param traceTypes String... - Plotly trace types the chart draws (ex :
+	 *            "scatter", "pie")
+	 * @throws IllegalStateException if the bundle does not contain one of the
+	 *             trace types
+	 */
+	public static void requirePlotly(String... traceTypes) {
+
+		UISession session = RWT.getUISession();
+		Set<String> types = new HashSet<String>(Arrays.asList(traceTypes));
+
+		synchronized (session) {
+			String loaded = (String) session.getAttribute(loadedBundle);
+
+			if (loaded == null) {
+				loaded = selectBundle();
+				requireJs(loaded);
+				session.setAttribute(loadedBundle, loaded);
+			}
+
+			if (!loaded.equals(FULL) && !bundleTypes.get(loaded).containsAll(types)) {
+				types.removeAll(bundleTypes.get(loaded));
+				throw new IllegalStateException("Trace types " + types + " are not in " + loaded
+						+ " : add them to PlotlyResources.setTraceTypes");
+			}
+		}
+	}
+
+	// Smallest deployed bundle containing the trace types of the application
+	private static String selectBundle() {
+		Set<String> types = traceTypes;
+		if (types != null)
+			for (String candidate : bundles)
+				if (bundleTypes.get(candidate).containsAll(types) && isDeployed(candidate))
+					return candidate;
+		return FULL;
+	}
+
+	/**
+	 * Load a file of the "js" folder.
+	 *
+	 * @param fileName String - File name (ex : "plotlyFast.js")
+	 */
+	public static void requireJs(String fileName) {
+
+		ClientFileLoader loader = RWT.getClient().getService(ClientFileLoader.class);
+
+		String name = register(fileName);
+		if (name != null)
+			loader.requireJs(RWT.getResourceManager().getLocation(name));
+		else
+			loader.requireJs(folder + "/" + fileName);
+	}
+
+	private static boolean isDeployed(String fileName) {
+		try {
+			InputStream input = resourceLoader.getResourceAsStream(folder + "/" + fileName);
+			if (input == null)
+				return false;
+			input.close();
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	// Return the registered name of the file, null if it can't be read
+	@SuppressWarnings("unchecked")
+	private static String register(String fileName) {
+
+		ApplicationContext context = RWT.getApplicationContext();
+
+		synchronized (context) {
+			Map<String, String> names = (Map<String, String>) context.getAttribute(registered);
+			if (names == null) {
+				names = new HashMap<String, String>();
+				context.setAttribute(registered, names);
+			}
+
+			if (!names.containsKey(fileName)) {
+				String name = null;
+				try {
+					byte[] content = read(folder + "/" + fileName);
+					if (content != null) {
+						int dot = fileName.lastIndexOf('.');
+						name = "plotly/" + fileName.substring(0, dot) + "." + hash(content) + fileName.substring(dot);
+
+						ResourceManager manager = context.getResourceManager();
+						manager.register(name, new ByteArrayInputStream(content));
+						manager.register(name + ".gz", new ByteArrayInputStream(gzip(content)));
+
+						byte[] brotli = read(folder + "/" + fileName + ".br");
+						if (brotli != null)
+							manager.register(name + ".br", new ByteArrayInputStream(brotli));
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+					name = null;
+				}
+				names.put(fileName, name);
+			}
+			return names.get(fileName);
+		}
+	}
+
+	private static byte[] read(String path) throws IOException {
+
+		InputStream input = resourceLoader.getResourceAsStream(path);
+		if (input == null)
+			return null;
+
+		try {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = input.read(buffer)) != -1)
+				output.write(buffer, 0, count);
+			return output.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(output);
+		gzip.write(content);
+		gzip.close();
+		return output.toByteArray();
+	}
+
+	private static String hash(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+			StringBuilder str = new StringBuilder();
+			for (int i = 0; i < 6; i++)
+				str.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+			return str.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}